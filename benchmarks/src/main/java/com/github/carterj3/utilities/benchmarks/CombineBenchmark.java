@@ -0,0 +1,69 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.carterj3.utilities.concurrent.locks.DowngradableWriteLock;
+import com.github.carterj3.utilities.concurrent.locks.ReentreantUpgradeLock;
+
+/**
+ * Tiny writes to one shared value from every benchmark {@link Thread}, each
+ * taking the WriteLock itself versus publishing the write through
+ * {@link ReentreantUpgradeLock#combine(Object, Consumer)}. Only interesting with
+ * more than one Thread.
+ *
+ * @author jeffrey.carter
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CombineBenchmark {
+
+	/**
+	 * Allocated once so the benchmark doesn't measure capturing lambdas
+	 */
+	private static final Consumer<long[]> INCREMENT = value -> value[0]++;
+
+	private ReentreantUpgradeLock lock;
+
+	private DowngradableWriteLock writeLock;
+
+	private long[] value;
+
+	@Setup
+	public void setup() {
+		lock = new ReentreantUpgradeLock();
+		writeLock = lock.writeLock();
+		value = new long[1];
+	}
+
+	@Benchmark
+	public void writeLock() {
+		writeLock.lock();
+		try {
+			value[0]++;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	@Benchmark
+	public void combine() {
+		lock.combine(value, INCREMENT);
+	}
+}
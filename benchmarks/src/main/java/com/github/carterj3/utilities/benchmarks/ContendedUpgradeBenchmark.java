@@ -0,0 +1,114 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.carterj3.utilities.concurrent.locks.DowngradableWriteLock;
+import com.github.carterj3.utilities.concurrent.locks.ReentreantUpgradeLock;
+import com.github.carterj3.utilities.concurrent.locks.UpdateLock;
+import com.github.carterj3.utilities.concurrent.locks.UpgradableReadLock;
+
+/**
+ * The round trips of {@link UpgradeBenchmark} with every benchmark
+ * {@link Thread} sharing one set of locks, so they contend for the upgrade.
+ * Only interesting with more than one Thread.</br>
+ *
+ * NOTE: There is no plain {@link UpgradableReadLock#upgrade()}, readers that
+ * upgrade at the same time could deadlock. Contending upgraders take turns with
+ * the {@link UpdateLock} (or retry the optimistic conversion) instead, the same
+ * as callers of a shared lock have to.
+ *
+ * @author jeffrey.carter
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContendedUpgradeBenchmark {
+
+	private ReentreantUpgradeLock upgradeLock;
+
+	private UpdateLock updateLock;
+
+	private ReentrantReadWriteLock readWriteLock;
+
+	private StampedLock stampedLock;
+
+	private long value;
+
+	@Setup
+	public void setup() {
+		upgradeLock = new ReentreantUpgradeLock();
+		updateLock = upgradeLock.updateLock();
+		readWriteLock = new ReentrantReadWriteLock();
+		stampedLock = new StampedLock();
+	}
+
+	@Benchmark
+	public long updateLock() throws InterruptedException {
+		updateLock.lock();
+		DowngradableWriteLock writeLock = updateLock.upgrade();
+		value++;
+		writeLock.unlock();
+		long result = value;
+		updateLock.unlock();
+		return result;
+	}
+
+	@Benchmark
+	public long upgradeLockOptimistic() throws InterruptedException {
+		/* Falls back to the UpdateLock when the conversion loses a race */
+		long stamp = upgradeLock.tryOptimisticRead();
+		if (!upgradeLock.tryConvertToWriteLock(stamp)) {
+			return updateLock();
+		}
+		value++;
+		UpgradableReadLock readLock = upgradeLock.writeLock().downgrade();
+		long result = value;
+		readLock.unlock();
+		return result;
+	}
+
+	@Benchmark
+	public long readWriteLock() {
+		readWriteLock.readLock().lock();
+		readWriteLock.readLock().unlock();
+		readWriteLock.writeLock().lock();
+		value++;
+		readWriteLock.readLock().lock();
+		readWriteLock.writeLock().unlock();
+		long result = value;
+		readWriteLock.readLock().unlock();
+		return result;
+	}
+
+	@Benchmark
+	public long stampedLock() {
+		long stamp = stampedLock.readLock();
+		long writeStamp = stampedLock.tryConvertToWriteLock(stamp);
+		if (writeStamp == 0L) {
+			stampedLock.unlockRead(stamp);
+			writeStamp = stampedLock.writeLock();
+		}
+		value++;
+		long readStamp = stampedLock.tryConvertToReadLock(writeStamp);
+		long result = value;
+		stampedLock.unlockRead(readStamp);
+		return result;
+	}
+}
@@ -0,0 +1,91 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.github.carterj3.utilities.concurrent.locks.DowngradableWriteLock;
+import com.github.carterj3.utilities.concurrent.locks.FairnessPolicy;
+import com.github.carterj3.utilities.concurrent.locks.ReentreantUpgradeLock;
+import com.github.carterj3.utilities.concurrent.locks.UpgradableReadLock;
+
+/**
+ * Continuous read traffic with a couple of writers mixed in, once per
+ * {@link FairnessPolicy}. JMH reports the readers and the writers of the group
+ * separately, {@link Mode#Throughput} shows what each side gets done and
+ * {@link Mode#SampleTime} shows their tail (the p100 is the worst wait of that
+ * side).</br>
+ *
+ * A group is 6 readers and 2 writers so run it with a multiple of 8 threads,
+ * e.g. `java -jar benchmarks/target/benchmarks.jar Fairness -t 8`.
+ *
+ * @author jeffrey.carter
+ *
+ */
+@State(Scope.Group)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FairnessBenchmark {
+
+	@Param({ "FIFO", "WRITER_PREFERRING", "READER_PREFERRING", "PHASE_FAIR" })
+	public FairnessPolicy fairnessPolicy;
+
+	private UpgradableReadLock readLock;
+
+	private DowngradableWriteLock writeLock;
+
+	/**
+	 * The shared data being guarded, writers mutate it and readers consume it
+	 */
+	private long value;
+
+	@Setup
+	public void setup() {
+		ReentreantUpgradeLock lock = ReentreantUpgradeLock.builder().fairnessPolicy(fairnessPolicy).build();
+
+		readLock = lock.readLock();
+		writeLock = lock.writeLock();
+	}
+
+	@Benchmark
+	@Group("readHeavy")
+	@GroupThreads(6)
+	public void reader(Blackhole blackhole) {
+		readLock.lock();
+		try {
+			/* Long enough that the readers overlap, otherwise there is nothing to be fair about */
+			Blackhole.consumeCPU(64);
+			blackhole.consume(value);
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Benchmark
+	@Group("readHeavy")
+	@GroupThreads(2)
+	public void writer() {
+		writeLock.lock();
+		try {
+			value++;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.carterj3.utilities.FormatTemplate;
+import com.github.carterj3.utilities.StringUtils;
+
+/**
+ * Formatting a typical diagnostic message with {@link String#format(String,
+ * Object...)}, the cached {@link StringUtils#format(String, Object...)} and a
+ * {@link FormatTemplate} appending into a reused {@link StringBuilder} or
+ * encoding UTF-8 into a reused direct {@link ByteBuffer} (with the primitive
+ * overloads so nothing is boxed).
+ *
+ * @author jeffrey.carter
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormatBenchmark {
+
+	private static final String FORMAT = "readers: %d, owner: %x";
+
+	private static final FormatTemplate TEMPLATE = StringUtils.compile(FORMAT);
+
+	private StringBuilder builder = new StringBuilder();
+
+	private ByteBuffer buffer = ByteBuffer.allocateDirect(256);
+
+	private long readers = 12L;
+
+	private long owner = 0xCAFEL;
+
+	@Benchmark
+	public String stringFormat() {
+		return String.format(FORMAT, readers, owner);
+	}
+
+	@Benchmark
+	public String stringUtilsFormat() {
+		return StringUtils.format(FORMAT, readers, owner);
+	}
+
+	@Benchmark
+	public StringBuilder templateAppendTo() {
+		builder.setLength(0);
+		return TEMPLATE.appendLong(builder, readers, owner);
+	}
+
+	@Benchmark
+	public int templateEncodeUtf8() {
+		buffer.clear();
+		return TEMPLATE.appendLong(buffer, readers, owner);
+	}
+
+	@Benchmark
+	public int stringFormatGetBytes() {
+		buffer.clear();
+		byte[] utf8 = String.format(FORMAT, readers, owner).getBytes(StandardCharsets.UTF_8);
+		buffer.put(utf8);
+		return utf8.length;
+	}
+}
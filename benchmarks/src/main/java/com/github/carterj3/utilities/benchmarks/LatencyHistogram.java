@@ -0,0 +1,131 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A fixed size histogram of nanosecond latencies (similar to HdrHistogram but
+ * without the dependency). Values below 64 are exact, above that every power of
+ * two is split into 32 buckets so a percentile is off by at most ~3%.</br>
+ *
+ * NOTE: Not thread safe, every {@link Thread} records into its own and they are
+ * {@link #add(LatencyHistogram)}ed together afterwards.
+ *
+ * @author jeffrey.carter
+ *
+ */
+final class LatencyHistogram {
+
+	/**
+	 * log2 of the number of buckets per power of two
+	 */
+	private static final int SUB_BUCKET_BITS = 5;
+
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+	/**
+	 * Enough buckets for {@link Long#MAX_VALUE}
+	 */
+	private static final int BUCKETS = indexOf(Long.MAX_VALUE) + 1;
+
+	private long[] counts;
+
+	private long count;
+
+	private long max;
+
+	LatencyHistogram() {
+		this.counts = new long[BUCKETS];
+		this.count = 0L;
+		this.max = 0L;
+	}
+
+	/**
+	 * @param nanos
+	 *            the latency, negative values are recorded as 0
+	 */
+	void record(long nanos) {
+		long value = Math.max(0L, nanos);
+		counts[indexOf(value)]++;
+		count++;
+		max = Math.max(max, value);
+	}
+
+	/**
+	 * @param other
+	 *            the histogram to add to this one
+	 */
+	void add(@NotNull LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts[i] += other.counts[i];
+		}
+		count += other.count;
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * @return how many latencies were recorded
+	 */
+	long count() {
+		return count;
+	}
+
+	/**
+	 * @return the largest recorded latency (exact)
+	 */
+	long max() {
+		return max;
+	}
+
+	/**
+	 * @param percentile
+	 *            from 0 to 100
+	 * @return the upper bound of the bucket the percentile falls in, 0 if
+	 *         nothing was recorded
+	 */
+	long percentile(double percentile) {
+		if (count == 0L) {
+			return 0L;
+		}
+
+		long rank = Math.max(1L, (long) Math.ceil(count * percentile / 100.0));
+		long seen = 0L;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= rank) {
+				return Math.min(max, upperBoundOf(i));
+			}
+		}
+
+		return max;
+	}
+
+	/**
+	 * @param value
+	 *            a latency, not negative
+	 * @return the bucket it is counted in
+	 */
+	private static int indexOf(long value) {
+		if (value < 2 * SUB_BUCKETS) {
+			return (int) value;
+		}
+
+		int shift = (63 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+		return shift * SUB_BUCKETS + (int) (value >>> shift);
+	}
+
+	/**
+	 * @param index
+	 *            a bucket
+	 * @return the largest latency counted in it
+	 */
+	private static long upperBoundOf(int index) {
+		if (index < 2 * SUB_BUCKETS) {
+			return index;
+		}
+
+		int shift = index / SUB_BUCKETS - 1;
+		long mantissa = index - shift * SUB_BUCKETS;
+		long upperBound = ((mantissa + 1) << shift) - 1;
+		return (upperBound < 0L) ? Long.MAX_VALUE : upperBound;
+	}
+}
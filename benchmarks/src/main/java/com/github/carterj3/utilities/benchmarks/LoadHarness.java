@@ -0,0 +1,615 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import javax.validation.constraints.NotNull;
+
+import com.github.carterj3.utilities.concurrent.locks.ReentreantUpgradeLock;
+
+/**
+ * A load generator that drives a lock the way an application does rather than
+ * in the tight loops of the JMH benchmarks: every {@link Thread} picks a read,
+ * upgrade or write at random, holds the lock for a critical section (possibly
+ * re-entering it) and then thinks for a while before the next one. It runs
+ * once per thread count and reports the throughput, the p50/p99/p999/max
+ * acquire latency and how evenly the operations were spread over the
+ * {@link Thread}s, per lock and operation, as CSV or JSON.</br>
+ *
+ * Every option is a `name=value` argument, e.g. `java -cp
+ * benchmarks/target/benchmarks.jar
+ * com.github.carterj3.utilities.benchmarks.LoadHarness lockType=UPGRADE,READ_WRITE
+ * threads=1,4,16 readPercent=90 upgradePercent=5 format=json`, see
+ * {@link Options} for all of them.</br>
+ *
+ * NOTE: Only a {@link ReentreantUpgradeLock} upgrades in place, the other
+ * {@link LockType}s release the ReadLock and then take the WriteLock. An
+ * upgrade that is refused (another {@link Thread} is upgrading) or a `tryLock`
+ * that times out is counted as failed and not in the latencies.
+ *
+ * @author jeffrey.carter
+ *
+ */
+public final class LoadHarness {
+
+	private LoadHarness() {
+		super();
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Options options = Options.parse(args);
+
+		List<Result> results = new ArrayList<>();
+		for (LockType lockType : options.lockTypes) {
+			for (int threads : options.threads) {
+				List<Result> run = run(options, lockType, threads);
+				for (Result result : run) {
+					System.out.println(result);
+				}
+				results.addAll(run);
+			}
+		}
+
+		Path output = Paths.get(options.output);
+		if (output.getParent() != null) {
+			Files.createDirectories(output.getParent());
+		}
+		try (PrintWriter writer = new PrintWriter(Files.newBufferedWriter(output, StandardCharsets.UTF_8))) {
+			if (options.format.equals("json")) {
+				writeJson(writer, results);
+			} else {
+				writeCsv(writer, results);
+			}
+		}
+		System.out.println("Report written to " + output.toAbsolutePath());
+	}
+
+	/**
+	 * Runs a single lock at a single thread count
+	 *
+	 * @return one {@link Result} per {@link Operation}
+	 */
+	@NotNull
+	static List<Result> run(@NotNull Options options, @NotNull LockType lockType, int threads)
+			throws InterruptedException {
+
+		ReadWriteLock lock = lockType.newLock();
+		Worker[] workers = new Worker[threads];
+		CountDownLatch started = new CountDownLatch(threads);
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(options, lock, started);
+			workers[i].setName("LoadHarness-" + i);
+			workers[i].start();
+		}
+
+		started.await();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(options.warmupSeconds));
+
+		for (Worker worker : workers) {
+			worker.isMeasuring = true;
+		}
+		long startTime = System.nanoTime();
+		Thread.sleep(TimeUnit.SECONDS.toMillis(options.seconds));
+		for (Worker worker : workers) {
+			worker.isMeasuring = false;
+		}
+		long elapsed = System.nanoTime() - startTime;
+
+		for (Worker worker : workers) {
+			worker.isStopped = true;
+		}
+		for (Worker worker : workers) {
+			worker.join();
+		}
+
+		List<Result> results = new ArrayList<>();
+		for (Operation operation : Operation.values()) {
+			results.add(Result.of(lockType, threads, operation, elapsed, workers));
+		}
+
+		return results;
+	}
+
+	private static void writeCsv(PrintWriter writer, List<Result> results) {
+		writer.println(String.join(",", Result.COLUMNS));
+		for (Result result : results) {
+			StringBuilder line = new StringBuilder();
+			for (Object value : result.values()) {
+				if (line.length() > 0) {
+					line.append(',');
+				}
+				line.append(format(value));
+			}
+			writer.println(line);
+		}
+	}
+
+	private static void writeJson(PrintWriter writer, List<Result> results) {
+		writer.println("[");
+		for (int i = 0; i < results.size(); i++) {
+			Object[] values = results.get(i).values();
+
+			StringBuilder object = new StringBuilder("  {");
+			for (int j = 0; j < values.length; j++) {
+				if (j > 0) {
+					object.append(", ");
+				}
+				object.append('"').append(Result.COLUMNS[j]).append("\": ");
+				object.append((values[j] instanceof String) ? "\"" + values[j] + "\"" : format(values[j]));
+			}
+			object.append((i == results.size() - 1) ? "}" : "},");
+			writer.println(object);
+		}
+		writer.println("]");
+	}
+
+	private static String format(Object value) {
+		return (value instanceof Double) ? String.format(Locale.ROOT, "%.4f", value) : String.valueOf(value);
+	}
+
+	/**
+	 * What a {@link Worker} does with the lock
+	 */
+	enum Operation {
+		READ, UPGRADE, WRITE;
+	}
+
+	/**
+	 * The command line, every option is a `name=value` argument
+	 */
+	static final class Options {
+
+		/**
+		 * `lockType`, comma separated {@link LockType}s (default UPGRADE)
+		 */
+		List<LockType> lockTypes = Arrays.asList(LockType.UPGRADE);
+
+		/**
+		 * `threads`, comma separated (default 1, 2, 4, ... up to the number of
+		 * available processors)
+		 */
+		int[] threads = defaultThreads();
+
+		/**
+		 * `readPercent` (default 90), the rest after `upgradePercent` are writes
+		 */
+		int readPercent = 90;
+
+		/**
+		 * `upgradePercent` (default 5)
+		 */
+		int upgradePercent = 5;
+
+		/**
+		 * `criticalSectionNanos`, how long the lock is held (default 100)
+		 */
+		long criticalSectionNanos = 100L;
+
+		/**
+		 * `thinkNanos`, how long to wait between two operations (default 1000)
+		 */
+		long thinkNanos = 1_000L;
+
+		/**
+		 * `depth`, how many times the lock is held at once (default 1, NOTE:
+		 * STAMPED isn't reentrant)
+		 */
+		int depth = 1;
+
+		/**
+		 * `tryLockMicros`, acquire with `tryLock(timeout)` rather than `lock()`
+		 * (default 0, i.e. `lock()`)
+		 */
+		long tryLockMicros = 0L;
+
+		/**
+		 * `seconds`, how long each thread count is measured (default 5)
+		 */
+		long seconds = 5L;
+
+		/**
+		 * `warmupSeconds`, how long each thread count runs before it is measured
+		 * (default 1)
+		 */
+		long warmupSeconds = 1L;
+
+		/**
+		 * `format`, either csv or json (default csv)
+		 */
+		String format = "csv";
+
+		/**
+		 * `output`, where the report is written (default target/load/report.csv or
+		 * .json)
+		 */
+		String output = null;
+
+		/**
+		 * @param args
+		 *            `name=value` arguments
+		 * @return the options
+		 * @throws IllegalArgumentException
+		 *             if an argument isn't a known option or its value is invalid
+		 */
+		@NotNull
+		static Options parse(@NotNull String[] args) {
+			Options options = new Options();
+			for (String arg : args) {
+				int equals = arg.indexOf('=');
+				if (equals < 0) {
+					throw new IllegalArgumentException("Expected name=value but got " + arg);
+				}
+
+				String value = arg.substring(equals + 1);
+				switch (arg.substring(0, equals)) {
+				case "lockType":
+					options.lockTypes = new ArrayList<>();
+					for (String lockType : value.split(",")) {
+						options.lockTypes.add(LockType.valueOf(lockType.trim()));
+					}
+					break;
+				case "threads":
+					options.threads = Arrays.stream(value.split(",")).map(String::trim).mapToInt(Integer::parseInt)
+							.toArray();
+					break;
+				case "readPercent":
+					options.readPercent = Integer.parseInt(value);
+					break;
+				case "upgradePercent":
+					options.upgradePercent = Integer.parseInt(value);
+					break;
+				case "criticalSectionNanos":
+					options.criticalSectionNanos = Long.parseLong(value);
+					break;
+				case "thinkNanos":
+					options.thinkNanos = Long.parseLong(value);
+					break;
+				case "depth":
+					options.depth = Integer.parseInt(value);
+					break;
+				case "tryLockMicros":
+					options.tryLockMicros = Long.parseLong(value);
+					break;
+				case "seconds":
+					options.seconds = Long.parseLong(value);
+					break;
+				case "warmupSeconds":
+					options.warmupSeconds = Long.parseLong(value);
+					break;
+				case "format":
+					options.format = value.toLowerCase(Locale.ROOT);
+					break;
+				case "output":
+					options.output = value;
+					break;
+				default:
+					throw new IllegalArgumentException("Unknown option " + arg);
+				}
+			}
+
+			if (options.readPercent < 0 || options.upgradePercent < 0
+					|| options.readPercent + options.upgradePercent > 100) {
+				throw new IllegalArgumentException("readPercent + upgradePercent must be between 0 and 100");
+			}
+			if (options.depth < 1) {
+				throw new IllegalArgumentException("depth must be positive");
+			}
+			if (!options.format.equals("csv") && !options.format.equals("json")) {
+				throw new IllegalArgumentException("format must be csv or json");
+			}
+			if (options.output == null) {
+				options.output = "target/load/report." + options.format;
+			}
+
+			return options;
+		}
+
+		private static int[] defaultThreads() {
+			List<Integer> threads = new ArrayList<>();
+			int processors = Runtime.getRuntime().availableProcessors();
+			for (int count = 1; count < processors; count *= 2) {
+				threads.add(count);
+			}
+			threads.add(processors);
+
+			return threads.stream().mapToInt(Integer::intValue).toArray();
+		}
+	}
+
+	/**
+	 * A single {@link Thread} of load, records into its own histograms
+	 */
+	static final class Worker extends Thread {
+
+		private final Options options;
+
+		private final ReadWriteLock lock;
+
+		/**
+		 * Non null if the lock can upgrade in place
+		 */
+		private final ReentreantUpgradeLock upgradeLock;
+
+		private final CountDownLatch started;
+
+		/**
+		 * Indexed by {@link Operation#ordinal()}
+		 */
+		final LatencyHistogram[] latencies;
+
+		/**
+		 * Indexed by {@link Operation#ordinal()}
+		 */
+		final long[] failed;
+
+		volatile boolean isMeasuring;
+
+		volatile boolean isStopped;
+
+		/**
+		 * Keeps the critical sections from being optimized away
+		 */
+		long sink;
+
+		Worker(@NotNull Options options, @NotNull ReadWriteLock lock, @NotNull CountDownLatch started) {
+			this.options = options;
+			this.lock = lock;
+			this.upgradeLock = (lock instanceof ReentreantUpgradeLock) ? (ReentreantUpgradeLock) lock : null;
+			this.started = started;
+			this.latencies = new LatencyHistogram[Operation.values().length];
+			for (int i = 0; i < latencies.length; i++) {
+				latencies[i] = new LatencyHistogram();
+			}
+			this.failed = new long[Operation.values().length];
+			this.setDaemon(true);
+		}
+
+		@Override
+		public void run() {
+			started.countDown();
+
+			ThreadLocalRandom random = ThreadLocalRandom.current();
+			try {
+				while (!isStopped) {
+					int roll = random.nextInt(100);
+					Operation operation = (roll < options.readPercent) ? Operation.READ
+							: (roll < options.readPercent + options.upgradePercent) ? Operation.UPGRADE
+									: Operation.WRITE;
+
+					boolean isMeasured = isMeasuring;
+					long latency;
+					switch (operation) {
+					case READ:
+						latency = hold(lock.readLock());
+						break;
+					case UPGRADE:
+						latency = upgrade();
+						break;
+					default:
+						latency = hold(lock.writeLock());
+						break;
+					}
+
+					if (isMeasured) {
+						if (latency < 0L) {
+							failed[operation.ordinal()]++;
+						} else {
+							latencies[operation.ordinal()].record(latency);
+						}
+					}
+
+					spin(options.thinkNanos);
+				}
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		/**
+		 * Acquires the lock `depth` times, works and releases it
+		 *
+		 * @return how long the first acquisition took, -1 if it failed
+		 */
+		private long hold(Lock held) throws InterruptedException {
+			long startTime = System.nanoTime();
+			if (!acquire(held)) {
+				return -1L;
+			}
+			long latency = System.nanoTime() - startTime;
+
+			try {
+				reenterAndWork(held, options.depth - 1);
+			} finally {
+				held.unlock();
+			}
+
+			return latency;
+		}
+
+		/**
+		 * Reads, then upgrades (or releases the ReadLock and takes the WriteLock if
+		 * the lock can't upgrade) and writes
+		 *
+		 * @return how long acquiring the ReadLock and then the WriteLock took, -1
+		 *         if either failed
+		 */
+		private long upgrade() throws InterruptedException {
+			Lock readLock = lock.readLock();
+			Lock writeLock = lock.writeLock();
+
+			long startTime = System.nanoTime();
+			if (!acquire(readLock)) {
+				return -1L;
+			}
+
+			boolean isReading = true;
+			try {
+				reenterAndWork(readLock, options.depth - 1);
+
+				if (upgradeLock == null) {
+					readLock.unlock();
+					isReading = false;
+				}
+
+				/* An in place upgrade is refused while another Thread is upgrading */
+				boolean isAcquired = (upgradeLock != null)
+						? writeLock.tryLock((options.tryLockMicros > 0L) ? options.tryLockMicros : Long.MAX_VALUE,
+								TimeUnit.MICROSECONDS)
+						: acquire(writeLock);
+				if (!isAcquired) {
+					return -1L;
+				}
+				long latency = System.nanoTime() - startTime;
+
+				try {
+					reenterAndWork(writeLock, options.depth - 1);
+				} finally {
+					writeLock.unlock();
+				}
+
+				return latency;
+			} finally {
+				if (isReading) {
+					readLock.unlock();
+				}
+			}
+		}
+
+		private boolean acquire(Lock held) throws InterruptedException {
+			if (options.tryLockMicros > 0L) {
+				return held.tryLock(options.tryLockMicros, TimeUnit.MICROSECONDS);
+			}
+
+			held.lock();
+			return true;
+		}
+
+		/**
+		 * Re-enters the already held lock `depth` more times, works inside the
+		 * innermost hold and releases the extra holds
+		 */
+		private void reenterAndWork(Lock held, int depth) {
+			for (int i = 0; i < depth; i++) {
+				held.lock();
+			}
+			try {
+				sink += spin(options.criticalSectionNanos);
+			} finally {
+				for (int i = 0; i < depth; i++) {
+					held.unlock();
+				}
+			}
+		}
+
+		/**
+		 * Busy waits rather than sleeping so short pauses are accurate
+		 *
+		 * @return how many times it looped
+		 */
+		private static long spin(long nanos) {
+			long loops = 0L;
+			if (nanos <= 0L) {
+				return loops;
+			}
+
+			long endTime = System.nanoTime() + nanos;
+			while (System.nanoTime() - endTime < 0L) {
+				loops++;
+			}
+
+			return loops;
+		}
+	}
+
+	/**
+	 * One row of the report
+	 */
+	static final class Result {
+
+		static final String[] COLUMNS = { "lockType", "threads", "operation", "operations", "opsPerSecond",
+				"failed", "p50Nanos", "p99Nanos", "p999Nanos", "maxNanos", "minThreadOps", "maxThreadOps",
+				"jainFairness" };
+
+		private final Map<String, Object> values;
+
+		private Result(Map<String, Object> values) {
+			this.values = values;
+		}
+
+		/**
+		 * @param elapsed
+		 *            how long (in nanos) was measured
+		 * @return the merged {@link Worker} measurements of the `operation`
+		 */
+		@NotNull
+		static Result of(@NotNull LockType lockType, int threads, @NotNull Operation operation, long elapsed,
+				@NotNull Worker[] workers) {
+
+			LatencyHistogram merged = new LatencyHistogram();
+			long failed = 0L;
+			long minThreadOps = Long.MAX_VALUE;
+			long maxThreadOps = 0L;
+			double sum = 0.0;
+			double sumOfSquares = 0.0;
+			for (Worker worker : workers) {
+				LatencyHistogram latencies = worker.latencies[operation.ordinal()];
+				merged.add(latencies);
+				failed += worker.failed[operation.ordinal()];
+
+				long operations = latencies.count();
+				minThreadOps = Math.min(minThreadOps, operations);
+				maxThreadOps = Math.max(maxThreadOps, operations);
+				sum += operations;
+				sumOfSquares += (double) operations * operations;
+			}
+
+			/* 1.0 when every Thread got the same share, 1/threads when one got everything */
+			double jainFairness = (sumOfSquares == 0.0) ? 1.0 : (sum * sum) / (workers.length * sumOfSquares);
+
+			Map<String, Object> values = new LinkedHashMap<>();
+			values.put("lockType", lockType.name());
+			values.put("threads", threads);
+			values.put("operation", operation.name());
+			values.put("operations", merged.count());
+			values.put("opsPerSecond", merged.count() * 1e9 / elapsed);
+			values.put("failed", failed);
+			values.put("p50Nanos", merged.percentile(50.0));
+			values.put("p99Nanos", merged.percentile(99.0));
+			values.put("p999Nanos", merged.percentile(99.9));
+			values.put("maxNanos", merged.max());
+			values.put("minThreadOps", minThreadOps);
+			values.put("maxThreadOps", maxThreadOps);
+			values.put("jainFairness", jainFairness);
+
+			return new Result(values);
+		}
+
+		/**
+		 * @return the values in {@link #COLUMNS} order
+		 */
+		@NotNull
+		Object[] values() {
+			return values.values().toArray();
+		}
+
+		@Override
+		public String toString() {
+			return values.toString();
+		}
+	}
+}
@@ -0,0 +1,62 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of `benchmarks.jar`. JMH only accepts a single `-t` so this runs
+ * the selected benchmarks once for every power of two from 1 up to the number
+ * of available processors (plus the processor count itself) and writes one JSON
+ * result file per thread count into `target/jmh`.</br>
+ * 
+ * Any regular JMH command line option is passed through, e.g. `java -jar
+ * target/benchmarks.jar ReadWriteRatio -p readPercent=95`. Passing `-t`
+ * explicitly runs only that thread count.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+public final class LockBenchmarks {
+
+	private LockBenchmarks() {
+		super();
+	}
+
+	public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+		CommandLineOptions commandLine = new CommandLineOptions(args);
+
+		List<Integer> threadCounts = new ArrayList<>();
+		if (commandLine.getThreads().hasValue()) {
+			threadCounts.add(commandLine.getThreads().get());
+		} else {
+			int processors = Runtime.getRuntime().availableProcessors();
+			for (int threads = 1; threads < processors; threads *= 2) {
+				threadCounts.add(threads);
+			}
+			threadCounts.add(processors);
+		}
+
+		File resultDirectory = new File("target", "jmh");
+		resultDirectory.mkdirs();
+
+		for (int threads : threadCounts) {
+			Options options = new OptionsBuilder() //
+					.parent(commandLine) //
+					.threads(threads) //
+					.resultFormat(ResultFormatType.JSON) //
+					.result(new File(resultDirectory, "threads-" + threads + ".json").getPath()) //
+					.build();
+
+			new Runner(options).run();
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+import javax.validation.constraints.NotNull;
+
+import com.github.carterj3.utilities.concurrent.locks.CentralReaderIndicator;
+import com.github.carterj3.utilities.concurrent.locks.ClusterAssignment;
+import com.github.carterj3.utilities.concurrent.locks.CompactUpgradeLock;
+import com.github.carterj3.utilities.concurrent.locks.ReentreantUpgradeLock;
+import com.github.carterj3.utilities.concurrent.locks.SpinningWaitStrategy;
+import com.github.carterj3.utilities.concurrent.locks.StripedReaderIndicator;
+
+/**
+ * The locks that are compared against each other. Every lock is exposed as a
+ * {@link ReadWriteLock} so a benchmark can be written once and parameterized
+ * by the name of the constant (JMH passes `@Param`s as Strings).
+ * 
+ * @author jeffrey.carter
+ *
+ */
+public enum LockType {
+
+	/**
+	 * The lock under test
+	 */
+	UPGRADE {
+		@Override
+		public ReadWriteLock newLock() {
+			return new ReentreantUpgradeLock();
+		}
+	},
+
+	/**
+	 * The lock under test with its readers spread over one counter per core
+	 */
+	UPGRADE_STRIPED {
+		@Override
+		public ReadWriteLock newLock() {
+			return new ReentreantUpgradeLock(new StripedReaderIndicator());
+		}
+	},
+
+	/**
+	 * The lock under test with waiters spinning before they park
+	 */
+	UPGRADE_SPINNING {
+		@Override
+		public ReadWriteLock newLock() {
+			return new ReentreantUpgradeLock(new CentralReaderIndicator(), new SpinningWaitStrategy());
+		}
+	},
+
+	/**
+	 * The lock under test without ThreadLocals of its own
+	 */
+	UPGRADE_VIRTUAL {
+		@Override
+		public ReadWriteLock newLock() {
+			return ReentreantUpgradeLock.forVirtualThreads();
+		}
+	},
+
+	/**
+	 * The lock under test biased towards readers, which publish themselves in a
+	 * table of visible readers until a writer revokes the bias
+	 */
+	UPGRADE_BIASED {
+		@Override
+		public ReadWriteLock newLock() {
+			return ReentreantUpgradeLock.builder().readerBiased().build();
+		}
+	},
+
+	/**
+	 * The lock under test keeping the WriteLock within a NUMA node for up to 8
+	 * handoffs in a row, with its readers counted per node
+	 */
+	UPGRADE_COHORT {
+		@Override
+		public ReadWriteLock newLock() {
+			return ReentreantUpgradeLock.builder().cohort(ClusterAssignment.numaNodes(), 8).build();
+		}
+	},
+
+	/**
+	 * The lock under test as a single state word until it is contended or
+	 * re-entered, after which it stays inflated
+	 */
+	COMPACT {
+		@Override
+		public ReadWriteLock newLock() {
+			return new CompactUpgradeLock();
+		}
+	},
+
+	/**
+	 * The JDK lock that {@link ReentreantUpgradeLock} is modelled after
+	 */
+	READ_WRITE {
+		@Override
+		public ReadWriteLock newLock() {
+			return new ReentrantReadWriteLock();
+		}
+	},
+
+	/**
+	 * {@link StampedLock} is not reentrant, only use it for benchmarks that don't
+	 * nest acquisitions
+	 */
+	STAMPED {
+		@Override
+		public ReadWriteLock newLock() {
+			return new StampedLock().asReadWriteLock();
+		}
+	},
+
+	/**
+	 * Baseline that treats readers and writers identically
+	 */
+	MUTEX {
+		@Override
+		public ReadWriteLock newLock() {
+			ReentrantLock lock = new ReentrantLock();
+			return new ReadWriteLock() {
+
+				@Override
+				public Lock readLock() {
+					return lock;
+				}
+
+				@Override
+				public Lock writeLock() {
+					return lock;
+				}
+			};
+		}
+	};
+
+	@NotNull
+	public abstract ReadWriteLock newLock();
+}
@@ -0,0 +1,92 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cost of a single acquire & release of each side of the lock, both flat
+ * and nested `depth` times on the same {@link Thread}.</br>
+ * 
+ * {@link java.util.concurrent.locks.StampedLock} is left out of the reentrant
+ * benchmarks since nesting its write lock deadlocks. `COMPACT` only stays thin
+ * at a `depth` of 1 (and single-threaded), nesting inflates it.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LockUnlockBenchmark {
+
+	@Param({ "UPGRADE", "UPGRADE_STRIPED", "UPGRADE_SPINNING", "COMPACT", "READ_WRITE", "MUTEX" })
+	public LockType lockType;
+
+	@Param({ "1", "4", "16" })
+	public int depth;
+
+	private Lock readLock;
+
+	private Lock writeLock;
+
+	@Setup
+	public void setup() {
+		ReadWriteLock lock = lockType.newLock();
+
+		readLock = lock.readLock();
+		writeLock = lock.writeLock();
+	}
+
+	@Benchmark
+	public void readLock() {
+		for (int i = 0; i < depth; i++) {
+			readLock.lock();
+		}
+		for (int i = 0; i < depth; i++) {
+			readLock.unlock();
+		}
+	}
+
+	@Benchmark
+	public void writeLock() {
+		for (int i = 0; i < depth; i++) {
+			writeLock.lock();
+		}
+		for (int i = 0; i < depth; i++) {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Write followed by nested reads, the pattern that
+	 * {@link com.github.carterj3.utilities.concurrent.locks.ReentreantUpgradeLock}
+	 * allows on the same {@link Thread}
+	 */
+	@Benchmark
+	public void writeThenRead() {
+		writeLock.lock();
+		for (int i = 0; i < depth; i++) {
+			readLock.lock();
+		}
+		for (int i = 0; i < depth; i++) {
+			readLock.unlock();
+		}
+		writeLock.unlock();
+	}
+}
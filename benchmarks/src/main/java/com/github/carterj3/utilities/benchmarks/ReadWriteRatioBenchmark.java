@@ -0,0 +1,82 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Every thread repeatedly takes either the read or the write lock around a tiny
+ * critical section, choosing randomly according to `readPercent`. Run with
+ * different `-t` values (or through {@link LockBenchmarks}) to see how each
+ * lock scales.</br>
+ * 
+ * {@link Mode#SampleTime} reports the p50/p90/p99/p999 of a single lock, work
+ * & unlock cycle.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadWriteRatioBenchmark {
+
+	@Param({ "UPGRADE", "UPGRADE_STRIPED", "UPGRADE_SPINNING", "UPGRADE_BIASED", "UPGRADE_COHORT", "READ_WRITE", "STAMPED", "MUTEX" })
+	public LockType lockType;
+
+	@Param({ "100", "95", "80", "50" })
+	public int readPercent;
+
+	private Lock readLock;
+
+	private Lock writeLock;
+
+	/**
+	 * The shared data being guarded, writers mutate it and readers consume it
+	 */
+	private long value;
+
+	@Setup
+	public void setup() {
+		ReadWriteLock lock = lockType.newLock();
+
+		readLock = lock.readLock();
+		writeLock = lock.writeLock();
+	}
+
+	@Benchmark
+	public void mixed(Blackhole blackhole) {
+		if (ThreadLocalRandom.current().nextInt(100) < readPercent) {
+			readLock.lock();
+			try {
+				blackhole.consume(value);
+			} finally {
+				readLock.unlock();
+			}
+		} else {
+			writeLock.lock();
+			try {
+				value++;
+			} finally {
+				writeLock.unlock();
+			}
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.carterj3.utilities.NumberUtils;
+
+/**
+ * Summing an array of counters with the varargs
+ * {@link NumberUtils#addWithDefault(long, long...)} versus the bulk
+ * {@link NumberUtils#saturatingSum(long[])}, which splits arrays of 65536 or
+ * more elements over the common {@link java.util.concurrent.ForkJoinPool}. Run
+ * it single-threaded, the parallelism comes from the pool.
+ *
+ * @author jeffrey.carter
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SaturatingSumBenchmark {
+
+	@Param({ "1000", "1000000" })
+	public int size;
+
+	private long[] values;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(0L);
+		values = new long[size];
+		for (int i = 0; i < size; i++) {
+			values[i] = random.nextInt(Integer.MAX_VALUE);
+		}
+	}
+
+	@Benchmark
+	public long addWithDefault() {
+		return NumberUtils.INSTANCE.addWithDefault(Long.MAX_VALUE, values);
+	}
+
+	@Benchmark
+	public long saturatingSum() {
+		return NumberUtils.INSTANCE.saturatingSum(values);
+	}
+}
@@ -0,0 +1,99 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.carterj3.utilities.concurrent.locks.ReentreantUpgradeLock;
+import com.github.carterj3.utilities.concurrent.locks.SequenceLocked;
+import com.github.carterj3.utilities.concurrent.locks.UpgradableReadLock;
+
+/**
+ * Three readers of a timestamp plus a counter against one writer, published
+ * through a {@link SequenceLocked} versus guarded by a
+ * {@link ReentreantUpgradeLock}. Readers of the {@link SequenceLocked} only
+ * read shared memory, so they don't slow each other down.
+ *
+ * @author jeffrey.carter
+ *
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SequenceLockBenchmark {
+
+	/**
+	 * What the writer publishes
+	 */
+	static final class Sample {
+
+		long timestamp;
+
+		long count;
+	}
+
+	private SequenceLocked<Sample> sequenceLocked = new SequenceLocked<>(Sample::new, (from, into) -> {
+		into.timestamp = from.timestamp;
+		into.count = from.count;
+	});
+
+	private ReentreantUpgradeLock lock = new ReentreantUpgradeLock();
+
+	private Sample guarded = new Sample();
+
+	@Benchmark
+	@Group("sequenceLock")
+	@GroupThreads(3)
+	public long sequenceLockRead() {
+		return sequenceLocked.readLong(s -> s.timestamp + s.count);
+	}
+
+	@Benchmark
+	@Group("sequenceLock")
+	@GroupThreads(1)
+	public void sequenceLockWrite() {
+		sequenceLocked.write(s -> {
+			s.timestamp = System.nanoTime();
+			s.count++;
+		});
+	}
+
+	@Benchmark
+	@Group("readLock")
+	@GroupThreads(3)
+	public long readLockRead() {
+		UpgradableReadLock readLock = lock.readLock();
+		readLock.lock();
+		try {
+			return guarded.timestamp + guarded.count;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	@Benchmark
+	@Group("readLock")
+	@GroupThreads(1)
+	public void readLockWrite() {
+		lock.writeLock().lock();
+		try {
+			guarded.timestamp = System.nanoTime();
+			guarded.count++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+}
@@ -0,0 +1,131 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.carterj3.utilities.concurrent.locks.DowngradableWriteLock;
+import com.github.carterj3.utilities.concurrent.locks.ReentreantUpgradeLock;
+import com.github.carterj3.utilities.concurrent.locks.UpdateLock;
+import com.github.carterj3.utilities.concurrent.locks.UpgradableReadLock;
+
+/**
+ * Read -> Write -> Read round trips. {@link ReentrantReadWriteLock} cannot
+ * upgrade so it has to release the read lock first (which is what callers of it
+ * actually do), {@link StampedLock} uses its conversion methods.</br>
+ * 
+ * Each benchmark {@link Thread} gets its own locks, only one Thread can upgrade
+ * the same lock at once (the others would be refused) so this only measures
+ * the uncontended round trip, see {@link ContendedUpgradeBenchmark} for shared
+ * locks.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UpgradeBenchmark {
+
+	private ReentreantUpgradeLock upgradeLock;
+
+	private UpgradableReadLock upgradeReadLock;
+
+	private UpdateLock updateLock;
+
+	private ReentrantReadWriteLock readWriteLock;
+
+	private StampedLock stampedLock;
+
+	private long value;
+
+	@Setup
+	public void setup() {
+		upgradeLock = new ReentreantUpgradeLock();
+		upgradeReadLock = upgradeLock.readLock();
+		updateLock = upgradeLock.updateLock();
+		readWriteLock = new ReentrantReadWriteLock();
+		stampedLock = new StampedLock();
+	}
+
+	@Benchmark
+	public long upgradeLock() throws InterruptedException {
+		upgradeReadLock.lock();
+		DowngradableWriteLock writeLock = upgradeReadLock.upgrade();
+		value++;
+		/* Downgrading takes a second ReadLock before the WriteLock is released */
+		writeLock.downgrade();
+		long result = value;
+		upgradeReadLock.unlock();
+		upgradeReadLock.unlock();
+		return result;
+	}
+
+	@Benchmark
+	public long updateLock() throws InterruptedException {
+		updateLock.lock();
+		DowngradableWriteLock writeLock = updateLock.upgrade();
+		value++;
+		/* Releasing the WriteLock goes back to only holding the UpdateLock */
+		writeLock.unlock();
+		long result = value;
+		updateLock.unlock();
+		return result;
+	}
+
+	@Benchmark
+	public long upgradeLockOptimistic() throws InterruptedException {
+		long stamp = upgradeLock.tryOptimisticRead();
+		long result = value;
+		if (!upgradeLock.tryConvertToWriteLock(stamp)) {
+			return upgradeLock.validate(stamp) ? result : -1L;
+		}
+		value++;
+		UpgradableReadLock readLock = upgradeLock.writeLock().downgrade();
+		result = value;
+		readLock.unlock();
+		return result;
+	}
+
+	@Benchmark
+	public long readWriteLock() {
+		readWriteLock.readLock().lock();
+		readWriteLock.readLock().unlock();
+		readWriteLock.writeLock().lock();
+		value++;
+		readWriteLock.readLock().lock();
+		readWriteLock.writeLock().unlock();
+		long result = value;
+		readWriteLock.readLock().unlock();
+		return result;
+	}
+
+	@Benchmark
+	public long stampedLock() {
+		long stamp = stampedLock.readLock();
+		long writeStamp = stampedLock.tryConvertToWriteLock(stamp);
+		if (writeStamp == 0L) {
+			stampedLock.unlockRead(stamp);
+			writeStamp = stampedLock.writeLock();
+		}
+		value++;
+		long readStamp = stampedLock.tryConvertToReadLock(writeStamp);
+		long result = value;
+		stampedLock.unlockRead(readStamp);
+		return result;
+	}
+}
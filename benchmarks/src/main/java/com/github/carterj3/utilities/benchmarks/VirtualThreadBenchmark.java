@@ -0,0 +1,123 @@
+package com.github.carterj3.utilities.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Starts `virtualThreads` virtual {@link Thread}s that all contend on one lock,
+ * each taking the read or write lock `operations` times according to
+ * `readPercent`, and measures how long it takes all of them to finish.</br>
+ * 
+ * Virtual threads need Java 21+ while the benchmarks are compiled for Java 11,
+ * so the executor is looked up reflectively and the benchmark fails its setup
+ * on older JVMs.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(1)
+@Fork(1)
+public class VirtualThreadBenchmark {
+
+	@Param({ "UPGRADE", "UPGRADE_VIRTUAL", "READ_WRITE" })
+	public LockType lockType;
+
+	@Param({ "100000" })
+	public int virtualThreads;
+
+	@Param({ "10" })
+	public int operations;
+
+	@Param({ "95" })
+	public int readPercent;
+
+	private ExecutorService executorService;
+
+	private Lock readLock;
+
+	private Lock writeLock;
+
+	private long value;
+
+	@Setup(Level.Trial)
+	public void setup() throws ReflectiveOperationException {
+		try {
+			executorService = (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor")
+					.invoke(null);
+		} catch (NoSuchMethodException e) {
+			throw new IllegalStateException("Virtual threads need Java 21+", e);
+		}
+
+		ReadWriteLock lock = lockType.newLock();
+		readLock = lock.readLock();
+		writeLock = lock.writeLock();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		executorService.shutdown();
+	}
+
+	@Benchmark
+	public long contend() throws Exception {
+		List<Future<Long>> futures = new ArrayList<>(virtualThreads);
+		for (int i = 0; i < virtualThreads; i++) {
+			futures.add(executorService.submit(this::work));
+		}
+
+		long sum = 0;
+		for (Future<Long> future : futures) {
+			sum += future.get();
+		}
+		return sum;
+	}
+
+	private long work() {
+		long seen = 0;
+		for (int i = 0; i < operations; i++) {
+			if (ThreadLocalRandom.current().nextInt(100) < readPercent) {
+				readLock.lock();
+				try {
+					seen += value;
+				} finally {
+					readLock.unlock();
+				}
+			} else {
+				writeLock.lock();
+				try {
+					value++;
+				} finally {
+					writeLock.unlock();
+				}
+			}
+		}
+		return seen;
+	}
+}
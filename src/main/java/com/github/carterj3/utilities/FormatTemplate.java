@@ -0,0 +1,655 @@
+package com.github.carterj3.utilities;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormatSymbols;
+import java.util.ArrayList;
+import java.util.Formattable;
+import java.util.Formatter;
+import java.util.List;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+import java.util.Objects;
+import java.util.UnknownFormatConversionException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A format string (see {@link Formatter}) that has been parsed and validated
+ * once, so rendering it doesn't run {@link Formatter}'s regex again. Immutable
+ * and thread safe, get one from {@link StringUtils#compile(String)}.</br>
+ *
+ * The common conversions (`%s`, `%b`, `%d`, `%x` & `%X` with at most a width,
+ * `-` or `0`) are appended straight into the {@link StringBuilder},
+ * {@link Appendable} or UTF-8 encoded {@link ByteBuffer}, anything
+ * else is handed to a {@link Formatter} one specifier at a time so the output
+ * is always the same as {@link String#format(Locale, String, Object...)}.</br>
+ *
+ * NOTE: The `appendLong` methods format their arguments as a `long` (the same
+ * as passing a {@link Long}) and only box them for a conversion that isn't
+ * appended directly. They are named apart from `appendTo` so a boxed
+ * {@link Integer}, {@link Character}, ... is never widened to a `long`, it is
+ * formatted as itself.
+ *
+ * @author jeffrey.carter
+ *
+ */
+public final class FormatTemplate {
+
+	/**
+	 * Same as {@link Formatter}'s, only used while compiling
+	 */
+	private static final Pattern SPECIFIER = Pattern
+			.compile("%(\\d+\\$)?([-#+ 0,(\\<]*)?(\\d+)?(\\.\\d+)?([tT])?([a-zA-Z%])");
+
+	/**
+	 * Guess at how long a converted argument is, to size new
+	 * {@link StringBuilder}s
+	 */
+	private static final int ESTIMATED_ARGUMENT_LENGTH = 16;
+
+	private static final char[] LOWER_HEX = "0123456789abcdef".toCharArray();
+
+	private static final char[] UPPER_HEX = "0123456789ABCDEF".toCharArray();
+
+	private String format;
+
+	private Locale locale;
+
+	private Segment[] segments;
+
+	/**
+	 * Number of arguments the format refers to
+	 */
+	private int argumentCount;
+
+	private int estimatedLength;
+
+	private FormatTemplate(String format, Locale locale, Segment[] segments, int argumentCount, int estimatedLength) {
+		this.format = format;
+		this.locale = locale;
+		this.segments = segments;
+		this.argumentCount = argumentCount;
+		this.estimatedLength = estimatedLength;
+	}
+
+	/**
+	 * @param format
+	 *            see {@link Formatter}
+	 * @param locale
+	 *            used by the conversions that are localized
+	 * @return the compiled `format`
+	 * @throws java.util.IllegalFormatException
+	 *             if `format` isn't valid, the same as {@link Formatter} would
+	 */
+	static FormatTemplate compile(@NotNull String format, @NotNull Locale locale) {
+		Objects.requireNonNull(format, "format");
+		Objects.requireNonNull(locale, "locale");
+
+		/* Localized digits are left to the Formatter */
+		boolean isAsciiDigits = DecimalFormatSymbols.getInstance(locale).getZeroDigit() == '0';
+
+		List<Segment> segments = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int estimatedLength = 0;
+		int ordinaryIndex = -1;
+		int lastIndex = -1;
+		int argumentCount = 0;
+
+		Matcher matcher = SPECIFIER.matcher(format);
+		int i = 0;
+		while (i < format.length()) {
+			char c = format.charAt(i);
+			if (c != '%') {
+				literal.append(c);
+				i++;
+				continue;
+			}
+
+			if (!matcher.find(i) || matcher.start() != i) {
+				throw new UnknownFormatConversionException(
+						String.valueOf((i + 1 < format.length()) ? format.charAt(i + 1) : '%'));
+			}
+			i = matcher.end();
+
+			String flags = (matcher.group(2) == null) ? "" : matcher.group(2);
+			String width = matcher.group(3);
+			String precision = matcher.group(4);
+			char conversion = matcher.group(6).charAt(0);
+			boolean isDate = matcher.group(5) != null;
+
+			/* Plain `%%` and `%n` are just text */
+			if (!isDate && flags.isEmpty() && width == null && precision == null
+					&& (conversion == '%' || conversion == 'n')) {
+				literal.append((conversion == '%') ? "%" : System.lineSeparator());
+				continue;
+			}
+
+			/* The argument index is resolved here, the Formatter only sees the rest */
+			String spec = "%" + flags.replace("<", "") + ((width == null) ? "" : width)
+					+ ((precision == null) ? "" : precision) + (isDate ? matcher.group(5) : "") + conversion;
+
+			int index;
+			if (!isDate && (conversion == '%' || conversion == 'n')) {
+				index = -1;
+				new Formatter(new StringBuilder(), locale).format(spec);
+			} else {
+				if (flags.indexOf('<') >= 0) {
+					if (lastIndex < 0) {
+						throw new MissingFormatArgumentException(matcher.group());
+					}
+					index = lastIndex;
+				} else if (matcher.group(1) != null) {
+					index = parseIndex(matcher.group(1));
+				} else {
+					index = ++ordinaryIndex;
+				}
+				lastIndex = index;
+				argumentCount = Math.max(argumentCount, index + 1);
+
+				/* Throws the same exceptions as it would have while formatting */
+				new Formatter(new StringBuilder(), locale).format(spec, (Object) null);
+			}
+
+			if (literal.length() > 0) {
+				segments.add(new Segment(literal.toString()));
+				estimatedLength += literal.length();
+				literal.setLength(0);
+			}
+
+			Segment segment = new Segment(spec, matcher.group(), index);
+			boolean isSimple = !isDate && precision == null && (flags.isEmpty() || flags.equals("-")
+					|| (flags.equals("0") && conversion != 's' && conversion != 'b'));
+			if (isSimple && (conversion == 's' || conversion == 'b' || (conversion == 'd' && isAsciiDigits)
+					|| conversion == 'x' || conversion == 'X')) {
+				segment.conversion = conversion;
+				segment.width = (width == null) ? 0 : Integer.parseInt(width);
+				segment.isLeftJustified = flags.equals("-");
+				segment.isZeroPadded = flags.equals("0");
+			}
+			segments.add(segment);
+			estimatedLength += ESTIMATED_ARGUMENT_LENGTH;
+		}
+
+		if (literal.length() > 0) {
+			segments.add(new Segment(literal.toString()));
+			estimatedLength += literal.length();
+		}
+
+		return new FormatTemplate(format, locale, segments.toArray(new Segment[0]), argumentCount, estimatedLength);
+	}
+
+	/**
+	 * @return the format string this was compiled from
+	 */
+	public String getFormat() {
+		return format;
+	}
+
+	/**
+	 * @return the {@link Locale} it formats with
+	 */
+	public Locale getLocale() {
+		return locale;
+	}
+
+	/**
+	 * @return how many arguments the format refers to, extra arguments are
+	 *         ignored
+	 */
+	public int getArgumentCount() {
+		return argumentCount;
+	}
+
+	/**
+	 * Same as {@link String#format(Locale, String, Object...)}
+	 */
+	public String format(Object... args) {
+		return appendTo(new StringBuilder(estimatedLength), args).toString();
+	}
+
+	/**
+	 * @param builder
+	 *            where to append the formatted string (i.e. a reused one)
+	 * @param args
+	 *            the arguments the format refers to
+	 * @return `builder`
+	 * @throws MissingFormatArgumentException
+	 *             if there are fewer `args` than the format refers to (what was
+	 *             formatted up to that point is left in `builder`)
+	 * @throws java.util.IllegalFormatException
+	 *             if an argument doesn't suit its conversion
+	 */
+	public StringBuilder appendTo(@NotNull StringBuilder builder, Object... args) {
+		try {
+			return render(builder, args);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * {@link #appendTo(StringBuilder, Object...)} without boxing `arg`
+	 */
+	public StringBuilder appendLong(@NotNull StringBuilder builder, long arg) {
+		try {
+			return render(builder, 1, arg, 0L);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * {@link #appendTo(StringBuilder, Object...)} without boxing `first` or
+	 * `second`
+	 */
+	public StringBuilder appendLong(@NotNull StringBuilder builder, long first, long second) {
+		try {
+			return render(builder, 2, first, second);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Same as {@link #appendTo(StringBuilder, Object...)} for any
+	 * {@link Appendable} (a {@link java.io.Writer}, a
+	 * {@link java.nio.CharBuffer}, ...). Numbers are appended a digit at a time,
+	 * without an intermediate {@link String}.
+	 *
+	 * @throws IOException
+	 *             if `appendable` throws one
+	 */
+	public <A extends Appendable> A appendTo(@NotNull A appendable, Object... args) throws IOException {
+		return render(appendable, args);
+	}
+
+	/**
+	 * {@link #appendTo(Appendable, Object...)} without boxing `arg`
+	 */
+	public <A extends Appendable> A appendLong(@NotNull A appendable, long arg) throws IOException {
+		return render(appendable, 1, arg, 0L);
+	}
+
+	/**
+	 * {@link #appendTo(Appendable, Object...)} without boxing `first` or `second`
+	 */
+	public <A extends Appendable> A appendLong(@NotNull A appendable, long first, long second) throws IOException {
+		return render(appendable, 2, first, second);
+	}
+
+	/**
+	 * Encodes the formatted string as UTF-8 straight into `buffer` (heap or
+	 * direct) from its position, the same bytes as
+	 * `format(args).getBytes(StandardCharsets.UTF_8)`.</br>
+	 *
+	 * NOTE: If it doesn't fit, {@link BufferOverflowException} is thrown and the
+	 * position is left where it was, the bytes after it may have been overwritten.
+	 * Either make room and try again or use
+	 * {@link #appendToGrowing(ByteBuffer, Object...)}.
+	 *
+	 * @param buffer
+	 *            where to write the encoded string, its position is moved past it
+	 * @return how many bytes were written
+	 * @throws BufferOverflowException
+	 *             if it doesn't fit in the remaining bytes of `buffer`
+	 */
+	public int appendTo(@NotNull ByteBuffer buffer, Object... args) {
+		int start = buffer.position();
+		Utf8Appendable out = Utf8Appendable.acquire(buffer);
+		try {
+			render(out, args).flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (RuntimeException e) {
+			/* Nothing is left half written, i.e. on BufferOverflowException */
+			buffer.position(start);
+			throw e;
+		} finally {
+			out.release();
+		}
+
+		return buffer.position() - start;
+	}
+
+	/**
+	 * {@link #appendTo(ByteBuffer, Object...)} without boxing `arg`
+	 */
+	public int appendLong(@NotNull ByteBuffer buffer, long arg) {
+		return appendTo(buffer, 1, arg, 0L);
+	}
+
+	/**
+	 * {@link #appendTo(ByteBuffer, Object...)} without boxing `first` or `second`
+	 */
+	public int appendLong(@NotNull ByteBuffer buffer, long first, long second) {
+		return appendTo(buffer, 2, first, second);
+	}
+
+	/**
+	 * Same as {@link #appendTo(ByteBuffer, Object...)} but if it doesn't fit the
+	 * bytes before the position are copied into a new buffer (direct if `buffer`
+	 * is, with the same {@link java.nio.ByteOrder}) at least twice as large and it
+	 * is written to that one instead
+	 *
+	 * @return the buffer it was written to, `buffer` unless it had to grow
+	 */
+	@NotNull
+	public ByteBuffer appendToGrowing(@NotNull ByteBuffer buffer, Object... args) {
+		ByteBuffer target = buffer;
+		for (;;) {
+			try {
+				appendTo(target, args);
+				return target;
+			} catch (BufferOverflowException e) {
+				int capacity = Math.max(target.capacity(), estimatedLength);
+				if (capacity > Integer.MAX_VALUE / 2) {
+					throw e;
+				}
+
+				ByteBuffer grown = target.isDirect() ? ByteBuffer.allocateDirect(capacity * 2)
+						: ByteBuffer.allocate(capacity * 2);
+				grown.order(target.order());
+
+				ByteBuffer written = target.duplicate();
+				written.flip();
+				grown.put(written);
+				target = grown;
+			}
+		}
+	}
+
+	@Override
+	public String toString() {
+		return format;
+	}
+
+	private int appendTo(ByteBuffer buffer, int count, long first, long second) {
+		int start = buffer.position();
+		Utf8Appendable out = Utf8Appendable.acquire(buffer);
+		try {
+			render(out, count, first, second).flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		} catch (RuntimeException e) {
+			/* Nothing is left half written, i.e. on BufferOverflowException */
+			buffer.position(start);
+			throw e;
+		} finally {
+			out.release();
+		}
+
+		return buffer.position() - start;
+	}
+
+	private <A extends Appendable> A render(A out, Object[] args) throws IOException {
+		for (Segment segment : segments) {
+			if (segment.index < 0) {
+				segment.appendTo(out, null, locale);
+				continue;
+			}
+
+			/* Formatter treats a null array as every argument being null */
+			if (args != null && segment.index >= args.length) {
+				throw new MissingFormatArgumentException(segment.specifier);
+			}
+			segment.appendTo(out, (args == null) ? null : args[segment.index], locale);
+		}
+
+		return out;
+	}
+
+	/**
+	 * @param count
+	 *            how many of `first` and `second` were passed
+	 */
+	private <A extends Appendable> A render(A out, int count, long first, long second) throws IOException {
+		for (Segment segment : segments) {
+			if (segment.index < 0) {
+				segment.appendTo(out, null, locale);
+				continue;
+			}
+
+			if (segment.index >= count) {
+				throw new MissingFormatArgumentException(segment.specifier);
+			}
+			segment.appendTo(out, (segment.index == 0) ? first : second, locale);
+		}
+
+		return out;
+	}
+
+	/**
+	 * @param index
+	 *            an explicit index, i.e. `2$`
+	 * @return the index of the argument (from 0)
+	 */
+	private static int parseIndex(String index) {
+		try {
+			int parsed = Integer.parseInt(index.substring(0, index.length() - 1));
+			if (parsed > 0) {
+				return parsed - 1;
+			}
+		} catch (NumberFormatException e) {
+			/* Too large to ever be passed */
+		}
+
+		throw new IllegalArgumentException(String.format("Illegal format argument index: %s", index));
+	}
+
+	/**
+	 * Either literal text or a single format specifier
+	 */
+	private static final class Segment {
+
+		/**
+		 * The text to append, null for a specifier
+		 */
+		private String literal;
+
+		/**
+		 * {@link #literal} encoded as UTF-8
+		 */
+		private byte[] utf8;
+
+		/**
+		 * The specifier without its argument index, for the {@link Formatter}
+		 */
+		private String spec;
+
+		/**
+		 * The specifier as it was written, for exceptions
+		 */
+		private String specifier;
+
+		/**
+		 * Index of the argument, -1 if it doesn't take one
+		 */
+		private int index;
+
+		/**
+		 * The conversion that is appended directly, 0 to use a {@link Formatter}
+		 */
+		private char conversion;
+
+		private int width;
+
+		private boolean isLeftJustified;
+
+		private boolean isZeroPadded;
+
+		Segment(String literal) {
+			this.literal = literal;
+			this.utf8 = literal.getBytes(StandardCharsets.UTF_8);
+			this.spec = null;
+			this.specifier = null;
+			this.index = -1;
+			this.conversion = 0;
+		}
+
+		Segment(String spec, String specifier, int index) {
+			this.literal = null;
+			this.utf8 = null;
+			this.spec = spec;
+			this.specifier = specifier;
+			this.index = index;
+			this.conversion = 0;
+		}
+
+		void appendTo(Appendable out, Object arg, Locale locale) throws IOException {
+			if (literal != null) {
+				if (out instanceof Utf8Appendable) {
+					((Utf8Appendable) out).write(utf8);
+				} else {
+					out.append(literal);
+				}
+				return;
+			}
+
+			switch (conversion) {
+			case 's':
+				if (arg instanceof Formattable) {
+					break;
+				}
+				String string = String.valueOf(arg);
+				padBefore(out, string.length(), false);
+				out.append(string);
+				padAfter(out, string.length());
+				return;
+			case 'b':
+				boolean value = (arg instanceof Boolean) ? ((Boolean) arg).booleanValue() : (arg != null);
+				int length = value ? 4 : 5;
+				padBefore(out, length, false);
+				out.append(value ? "true" : "false");
+				padAfter(out, length);
+				return;
+			case 'd':
+				if (arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte) {
+					appendTo(out, ((Number) arg).longValue(), locale);
+					return;
+				}
+				break;
+			case 'x':
+			case 'X':
+				if (arg instanceof Long) {
+					appendHex(out, (Long) arg);
+					return;
+				} else if (arg instanceof Integer) {
+					appendHex(out, ((Integer) arg) & 0xFFFF_FFFFL);
+					return;
+				}
+				break;
+			default:
+				break;
+			}
+
+			Formatter formatter = new Formatter(out, locale);
+			if (index < 0) {
+				formatter.format(spec);
+			} else {
+				formatter.format(spec, arg);
+			}
+
+			/* Formatter keeps the exceptions of its Appendable to itself */
+			if (formatter.ioException() != null) {
+				throw formatter.ioException();
+			}
+		}
+
+		void appendTo(Appendable out, long arg, Locale locale) throws IOException {
+			switch (conversion) {
+			case 'd':
+				appendDecimal(out, arg);
+				return;
+			case 'x':
+			case 'X':
+				appendHex(out, arg);
+				return;
+			default:
+				appendTo(out, Long.valueOf(arg), locale);
+				return;
+			}
+		}
+
+		/**
+		 * Appends `value` in decimal, a digit at a time unless `out` can append a
+		 * `long` itself
+		 */
+		private void appendDecimal(Appendable out, long value) throws IOException {
+			/* Works with the negative value so Long.MIN_VALUE has a magnitude */
+			long negative = (value < 0L) ? value : -value;
+			long power = 1L;
+			int length = (value < 0L) ? 2 : 1;
+			while (negative / power <= -10L) {
+				power *= 10L;
+				length++;
+			}
+
+			padBefore(out, length, value < 0L);
+			if (out instanceof StringBuilder && !(isZeroPadded && value < 0L)) {
+				((StringBuilder) out).append(value);
+			} else {
+				if (value < 0L && !isZeroPadded) {
+					out.append('-');
+				}
+				for (; power > 0L; power /= 10L) {
+					out.append((char) ('0' - (negative / power) % 10L));
+				}
+			}
+			padAfter(out, length);
+		}
+
+		/**
+		 * Appends `value` as unsigned hexadecimal digits
+		 */
+		private void appendHex(Appendable out, long value) throws IOException {
+			char[] digits = (conversion == 'X') ? UPPER_HEX : LOWER_HEX;
+			int length = Math.max(1, (67 - Long.numberOfLeadingZeros(value)) / 4);
+
+			padBefore(out, length, false);
+			for (int shift = (length - 1) * 4; shift >= 0; shift -= 4) {
+				out.append(digits[(int) (value >>> shift) & 0xF]);
+			}
+			padAfter(out, length);
+		}
+
+		/**
+		 * Pads a right justified value of `length` characters out to the
+		 * {@link #width}
+		 *
+		 * @param isNegative
+		 *            if it starts with a '-', which goes before zeros
+		 */
+		private void padBefore(Appendable out, int length, boolean isNegative) throws IOException {
+			if (isLeftJustified) {
+				return;
+			}
+
+			if (isZeroPadded && isNegative) {
+				out.append('-');
+			}
+			for (int i = length; i < width; i++) {
+				out.append(isZeroPadded ? '0' : ' ');
+			}
+		}
+
+		/**
+		 * Pads a left justified value of `length` characters out to the
+		 * {@link #width}
+		 */
+		private void padAfter(Appendable out, int length) throws IOException {
+			if (!isLeftJustified) {
+				return;
+			}
+
+			for (int i = length; i < width; i++) {
+				out.append(' ');
+			}
+		}
+	}
+}
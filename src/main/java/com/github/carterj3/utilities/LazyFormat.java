@@ -0,0 +1,123 @@
+package com.github.carterj3.utilities;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A formatted message that isn't formatted until it is first used (i.e. a log
+ * statement that is filtered out never formats it), then the result is kept
+ * and reused. Get one from {@link StringUtils#lazy(String, Object)} and the
+ * like.</br>
+ *
+ * NOTE: The arguments are only referenced, a mutable argument that changes
+ * before the message is first used is formatted as it is at that point. Two
+ * {@link Thread}s that use it at the same time may both format it, they get
+ * the same result.
+ *
+ * @author jeffrey.carter
+ *
+ */
+public final class LazyFormat implements CharSequence, Supplier<String> {
+
+	private String format;
+
+	/**
+	 * Number of arguments passed
+	 */
+	private int count;
+
+	/**
+	 * The arguments if they were passed as an array
+	 */
+	private Object[] args;
+
+	private Object first;
+
+	private Object second;
+
+	private Object third;
+
+	private volatile String formatted;
+
+	private LazyFormat(String format, int count, Object[] args, Object first, Object second, Object third) {
+		this.format = Objects.requireNonNull(format, "format");
+		this.count = count;
+		this.args = args;
+		this.first = first;
+		this.second = second;
+		this.third = third;
+		this.formatted = null;
+	}
+
+	static LazyFormat of(String format, Object[] args) {
+		return new LazyFormat(format, -1, args, null, null, null);
+	}
+
+	static LazyFormat of(String format, int count, Object first, Object second, Object third) {
+		return new LazyFormat(format, count, null, first, second, third);
+	}
+
+	/**
+	 * @return the formatted message, formatting it if this is the first use
+	 * @throws java.util.IllegalFormatException
+	 *             if the format isn't valid or the arguments don't suit it
+	 */
+	@NotNull
+	@Override
+	public String get() {
+		String result = formatted;
+		if (result == null) {
+			result = format();
+			formatted = result;
+		}
+
+		return result;
+	}
+
+	/**
+	 * @return true if it has been formatted
+	 */
+	public boolean isFormatted() {
+		return formatted != null;
+	}
+
+	@Override
+	public int length() {
+		return get().length();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return get().charAt(index);
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return get().subSequence(start, end);
+	}
+
+	@Override
+	public String toString() {
+		return get();
+	}
+
+	private String format() {
+		FormatTemplate template = StringUtils.cached(format);
+		if (count < 0) {
+			return template.format(args);
+		}
+
+		switch (count) {
+		case 0:
+			return template.format();
+		case 1:
+			return template.format(first);
+		case 2:
+			return template.format(first, second);
+		default:
+			return template.format(first, second, third);
+		}
+	}
+}
@@ -1,5 +1,10 @@
 package com.github.carterj3.utilities;
 
+import java.nio.LongBuffer;
+import java.util.Objects;
+
+import javax.validation.constraints.NotNull;
+
 public class NumberUtils {
 
 	public static final NumberUtils INSTANCE = new NumberUtils();
@@ -35,4 +40,244 @@ public class NumberUtils {
 		return sum;
 	}
 
+	/**
+	 * @return `x + y`, or the closest of {@link Long#MIN_VALUE} and
+	 *         {@link Long#MAX_VALUE} if it overflows (without branching)
+	 */
+	public long saturatingAdd(long x, long y) {
+		return SaturatingKernels.add(x, y);
+	}
+
+	/**
+	 * @return `x + y`, or the closest of {@link Integer#MIN_VALUE} and
+	 *         {@link Integer#MAX_VALUE} if it overflows (without branching)
+	 */
+	public int saturatingAdd(int x, int y) {
+		return SaturatingKernels.add(x, y);
+	}
+
+	/**
+	 * Same as {@link #saturatingSum(long[], int, int)} over the whole array
+	 */
+	public long saturatingSum(@NotNull long[] values) {
+		return saturatingSum(values, 0, values.length);
+	}
+
+	/**
+	 * Sums a range of counters. Unlike {@link #addWithDefault(long, long...)} the
+	 * sum is exact, only the final result is clamped, so a range that overflows
+	 * part way but comes back (e.g. `MAX_VALUE, 1, -1`) still sums correctly and
+	 * the order the elements are added in doesn't matter.</br>
+	 *
+	 * NOTE: Ranges of {@value SaturatingKernels#PARALLEL_THRESHOLD} or more
+	 * elements are summed in parallel on the common
+	 * {@link java.util.concurrent.ForkJoinPool}.
+	 *
+	 * @param values
+	 *            the counters
+	 * @param from
+	 *            the first index to sum (inclusive)
+	 * @param to
+	 *            the last index to sum (exclusive)
+	 * @return the sum, or the closest of {@link Long#MIN_VALUE} and
+	 *         {@link Long#MAX_VALUE} if it doesn't fit
+	 * @throws IndexOutOfBoundsException
+	 *             if the range is out of bounds
+	 */
+	public long saturatingSum(@NotNull long[] values, int from, int to) {
+		Objects.checkFromToIndex(from, to, values.length);
+
+		long[] sum = SaturatingKernels.sum(values, from, to);
+		return SaturatingKernels.clamp(sum[0], sum[1]);
+	}
+
+	/**
+	 * Same as {@link #saturatingSum(int[], int, int)} over the whole array
+	 */
+	public int saturatingSum(@NotNull int[] values) {
+		return saturatingSum(values, 0, values.length);
+	}
+
+	/**
+	 * Same as {@link #saturatingSum(long[], int, int)} for `int`s
+	 *
+	 * @return the sum, or the closest of {@link Integer#MIN_VALUE} and
+	 *         {@link Integer#MAX_VALUE} if it doesn't fit
+	 */
+	public int saturatingSum(@NotNull int[] values, int from, int to) {
+		Objects.checkFromToIndex(from, to, values.length);
+
+		return SaturatingKernels.clamp(SaturatingKernels.sum(values, from, to));
+	}
+
+	/**
+	 * Same as {@link #saturatingSum(long[], int, int)} over the remaining
+	 * elements of the buffer (NOTE: its position is left as is, a direct buffer is
+	 * copied in chunks onto the heap first)
+	 */
+	public long saturatingSum(@NotNull LongBuffer values) {
+		if (values.hasArray()) {
+			int from = values.arrayOffset() + values.position();
+			return saturatingSum(values.array(), from, from + values.remaining());
+		}
+
+		long high = 0L;
+		long low = 0L;
+		long[] chunk = new long[Math.min(values.remaining(), SaturatingKernels.PARALLEL_THRESHOLD)];
+		LongBuffer remaining = values.duplicate();
+		while (remaining.hasRemaining()) {
+			int length = Math.min(chunk.length, remaining.remaining());
+			remaining.get(chunk, 0, length);
+
+			long[] sum = SaturatingKernels.sum(chunk, 0, length);
+			long[] total = SaturatingKernels.add128(high, low, sum[0], sum[1]);
+			high = total[0];
+			low = total[1];
+		}
+
+		return SaturatingKernels.clamp(high, low);
+	}
+
+	/**
+	 * Element-wise saturating add (see {@link #saturatingAdd(long, long)}) of two
+	 * arrays of the same length. Arrays of
+	 * {@value SaturatingKernels#PARALLEL_THRESHOLD} or more elements are split
+	 * over the common {@link java.util.concurrent.ForkJoinPool}.
+	 *
+	 * @param x
+	 *            one of the arrays to add
+	 * @param y
+	 *            one of the arrays to add
+	 * @param result
+	 *            where the sums are written, may be `x` or `y`
+	 * @throws IllegalArgumentException
+	 *             if the arrays aren't all the same length
+	 */
+	public void saturatingAdd(@NotNull long[] x, @NotNull long[] y, @NotNull long[] result) {
+		checkLengths(x.length, y.length, result.length);
+
+		SaturatingKernels.add(x, 0, y, 0, result, 0, x.length);
+	}
+
+	/**
+	 * Same as {@link #saturatingAdd(long[], long[], long[])} for `int`s
+	 */
+	public void saturatingAdd(@NotNull int[] x, @NotNull int[] y, @NotNull int[] result) {
+		checkLengths(x.length, y.length, result.length);
+
+		SaturatingKernels.add(x, 0, y, 0, result, 0, x.length);
+	}
+
+	/**
+	 * Same as {@link #saturatingAdd(long[], long[], long[])} over the remaining
+	 * elements of the buffers (NOTE: their positions are left as is)
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the buffers don't all have the same number of elements
+	 *             remaining
+	 * @throws java.nio.ReadOnlyBufferException
+	 *             if `result` is read only
+	 */
+	public void saturatingAdd(@NotNull LongBuffer x, @NotNull LongBuffer y, @NotNull LongBuffer result) {
+		checkLengths(x.remaining(), y.remaining(), result.remaining());
+
+		if (x.hasArray() && y.hasArray() && result.hasArray()) {
+			SaturatingKernels.add(x.array(), x.arrayOffset() + x.position(), y.array(),
+					y.arrayOffset() + y.position(), result.array(), result.arrayOffset() + result.position(),
+					x.remaining());
+			return;
+		}
+
+		int length = x.remaining();
+		for (int i = 0; i < length; i++) {
+			result.put(result.position() + i,
+					SaturatingKernels.add(x.get(x.position() + i), y.get(y.position() + i)));
+		}
+	}
+
+	/**
+	 * Replaces `result` with the running sums of `values`, e.g. `[1, 2, 3]` becomes
+	 * `[1, 3, 6]`. Like {@link #saturatingSum(long[], int, int)} every running sum
+	 * is exact and only clamped when it is written, so one that doesn't fit
+	 * doesn't affect the ones after it.</br>
+	 *
+	 * NOTE: Arrays of {@value SaturatingKernels#PARALLEL_THRESHOLD} or more
+	 * elements are split into chunks over the common
+	 * {@link java.util.concurrent.ForkJoinPool}, each chunk is summed and then
+	 * its running sums are written starting from the sum of the chunks before it.
+	 *
+	 * @param values
+	 *            the numbers to sum
+	 * @param result
+	 *            where the running sums are written, may be `values`
+	 * @return the index of the first running sum that didn't fit and was clamped,
+	 *         or -1 if none overflowed
+	 * @throws IllegalArgumentException
+	 *             if the arrays aren't the same length
+	 */
+	public int prefixSum(@NotNull long[] values, @NotNull long[] result) {
+		checkLengths(values.length, result.length, result.length);
+
+		return SaturatingKernels.prefixSum(values, 0, result, 0, values.length);
+	}
+
+	/**
+	 * Same as {@link #prefixSum(long[], long[])} for `int`s
+	 */
+	public int prefixSum(@NotNull int[] values, @NotNull int[] result) {
+		checkLengths(values.length, result.length, result.length);
+
+		return SaturatingKernels.prefixSum(values, 0, result, 0, values.length);
+	}
+
+	/**
+	 * Same as {@link #prefixSum(long[], long[])} over the remaining elements of
+	 * the buffers (NOTE: their positions are left as is, direct buffers are copied
+	 * in chunks onto the heap and run sequentially)
+	 *
+	 * @throws IllegalArgumentException
+	 *             if the buffers don't have the same number of elements remaining
+	 * @throws java.nio.ReadOnlyBufferException
+	 *             if `result` is read only
+	 */
+	public int prefixSum(@NotNull LongBuffer values, @NotNull LongBuffer result) {
+		checkLengths(values.remaining(), result.remaining(), result.remaining());
+
+		if (values.hasArray() && result.hasArray()) {
+			return SaturatingKernels.prefixSum(values.array(), values.arrayOffset() + values.position(),
+					result.array(), result.arrayOffset() + result.position(), values.remaining());
+		}
+
+		long high = 0L;
+		long low = 0L;
+		int firstOverflow = -1;
+		long[] chunk = new long[Math.min(values.remaining(), SaturatingKernels.PARALLEL_THRESHOLD)];
+		LongBuffer remaining = values.duplicate();
+		LongBuffer written = result.duplicate();
+		for (int start = 0; remaining.hasRemaining(); start += chunk.length) {
+			int length = Math.min(chunk.length, remaining.remaining());
+			remaining.get(chunk, 0, length);
+
+			long[] sum = SaturatingKernels.sum(chunk, 0, length);
+			long[] total = SaturatingKernels.add128(high, low, sum[0], sum[1]);
+
+			int first = SaturatingKernels.prefixSum(chunk, 0, chunk, 0, length, high, low);
+			if (firstOverflow < 0 && first >= 0) {
+				firstOverflow = start + first;
+			}
+			written.put(chunk, 0, length);
+
+			high = total[0];
+			low = total[1];
+		}
+
+		return firstOverflow;
+	}
+
+	private static void checkLengths(int x, int y, int result) {
+		if (x != y || x != result) {
+			throw new IllegalArgumentException(String.format("Lengths differ: %d, %d, %d", x, y, result));
+		}
+	}
+
 }
@@ -0,0 +1,493 @@
+package com.github.carterj3.utilities;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * The loops behind the bulk methods of {@link NumberUtils}. Every loop body is
+ * straight line code (shifts, masks and {@link Math#min(long, long)} /
+ * {@link Math#max(long, long)}, which compile to conditional moves) so C2 can
+ * unroll and, for the element-wise ones, vectorize them.</br>
+ *
+ * Sums are exact and only clamped at the very end: a `long` sum is kept as a
+ * 128 bit pair (see {@link #sum(long[], int, int)}) so it doesn't depend on the
+ * order the elements are added in, which is what lets a range larger than
+ * {@link #PARALLEL_THRESHOLD} be split into chunks that are summed on the
+ * common {@link java.util.concurrent.ForkJoinPool} and combined
+ * afterwards.</br>
+ *
+ * NOTE: The ranges are already checked by {@link NumberUtils}.
+ *
+ * @author jeffrey.carter
+ *
+ */
+final class SaturatingKernels {
+
+	/**
+	 * Ranges with fewer elements than this are never split, below it the cost of
+	 * forking is more than the loop itself
+	 */
+	static final int PARALLEL_THRESHOLD = 1 << 16;
+
+	private SaturatingKernels() {
+		super();
+	}
+
+	/**
+	 * @return `x + y`, or the closest of {@link Long#MIN_VALUE} and
+	 *         {@link Long#MAX_VALUE} if it overflows
+	 */
+	static long add(long x, long y) {
+		long sum = x + y;
+		/* All ones if x and y have the same sign but the sum doesn't */
+		long overflow = ((x ^ sum) & (y ^ sum)) >> 63;
+		long saturated = (x >> 63) ^ Long.MAX_VALUE;
+		return (sum & ~overflow) | (saturated & overflow);
+	}
+
+	/**
+	 * @return `x + y`, or the closest of {@link Integer#MIN_VALUE} and
+	 *         {@link Integer#MAX_VALUE} if it overflows
+	 */
+	static int add(int x, int y) {
+		return clamp((long) x + y);
+	}
+
+	/**
+	 * @return the `int` closest to `value`
+	 */
+	static int clamp(long value) {
+		return (int) Math.min(Integer.MAX_VALUE, Math.max(Integer.MIN_VALUE, value));
+	}
+
+	/**
+	 * @param high
+	 *            the upper 64 bits of a 128 bit number
+	 * @param low
+	 *            the lower 64 bits
+	 * @return the `long` closest to the number
+	 */
+	static long clamp(long high, long low) {
+		/* All ones if the high half is more than the sign extension of the low half */
+		long difference = high ^ (low >> 63);
+		long overflow = (difference | -difference) >> 63;
+		long saturated = (high >> 63) ^ Long.MAX_VALUE;
+		return (low & ~overflow) | (saturated & overflow);
+	}
+
+	/**
+	 * @return the exact sum of the range as a 128 bit number, `{ high, low }`
+	 */
+	@NotNull
+	static long[] sum(@NotNull long[] values, int from, int to) {
+		if (to - from >= PARALLEL_THRESHOLD) {
+			return new SumTask(values, from, to).invoke();
+		}
+
+		/*
+		 * Summing the signed upper and unsigned lower halves separately can't
+		 * overflow for any array Java can allocate, and both loops vectorize
+		 */
+		long upper = 0L;
+		long lower = 0L;
+		for (int i = from; i < to; i++) {
+			upper += values[i] >> 32;
+			lower += values[i] & 0xFFFFFFFFL;
+		}
+
+		return add128(upper >> 32, upper << 32, 0L, lower);
+	}
+
+	/**
+	 * @return the exact sum of the range, which always fits in a `long`
+	 */
+	static long sum(@NotNull int[] values, int from, int to) {
+		if (to - from >= PARALLEL_THRESHOLD) {
+			return new IntSumTask(values, from, to).invoke();
+		}
+
+		long sum = 0L;
+		for (int i = from; i < to; i++) {
+			sum += values[i];
+		}
+
+		return sum;
+	}
+
+	/**
+	 * Element-wise saturating `x + y` into `result` (which may be `x` or `y`)
+	 */
+	static void add(@NotNull long[] x, int xFrom, @NotNull long[] y, int yFrom, @NotNull long[] result,
+			int resultFrom, int length) {
+
+		if (length >= PARALLEL_THRESHOLD) {
+			new AddTask(x, xFrom, y, yFrom, result, resultFrom, length).invoke();
+			return;
+		}
+
+		for (int i = 0; i < length; i++) {
+			result[resultFrom + i] = add(x[xFrom + i], y[yFrom + i]);
+		}
+	}
+
+	/**
+	 * Element-wise saturating `x + y` into `result` (which may be `x` or `y`)
+	 */
+	static void add(@NotNull int[] x, int xFrom, @NotNull int[] y, int yFrom, @NotNull int[] result, int resultFrom,
+			int length) {
+
+		if (length >= PARALLEL_THRESHOLD) {
+			new IntAddTask(x, xFrom, y, yFrom, result, resultFrom, length).invoke();
+			return;
+		}
+
+		for (int i = 0; i < length; i++) {
+			result[resultFrom + i] = clamp((long) x[xFrom + i] + y[yFrom + i]);
+		}
+	}
+
+	/**
+	 * Running sums of `values` into `result` (which may be `values`), each one
+	 * exact and then clamped
+	 *
+	 * @return the index (relative to `from`) of the first running sum that had to
+	 *         be clamped, or -1
+	 */
+	static int prefixSum(@NotNull long[] values, int from, @NotNull long[] result, int resultFrom, int length) {
+		if (length < PARALLEL_THRESHOLD) {
+			return prefixSum(values, from, result, resultFrom, length, 0L, 0L);
+		}
+
+		/* Sum every chunk, then run every chunk again starting from the sum of the ones before it */
+		int chunks = chunks(length);
+		long[][] totals = new long[chunks][];
+		ForkJoinTask.invokeAll(tasks(chunks, length, (chunk, start, end) -> {
+			totals[chunk] = sum(values, from + start, from + end);
+		}));
+
+		long[] offsets = new long[chunks * 2];
+		for (int chunk = 1; chunk < chunks; chunk++) {
+			long[] offset = add128(offsets[(chunk - 1) * 2], offsets[(chunk - 1) * 2 + 1], totals[chunk - 1][0],
+					totals[chunk - 1][1]);
+			offsets[chunk * 2] = offset[0];
+			offsets[chunk * 2 + 1] = offset[1];
+		}
+
+		int[] firstOverflows = new int[chunks];
+		ForkJoinTask.invokeAll(tasks(chunks, length, (chunk, start, end) -> {
+			int first = prefixSum(values, from + start, result, resultFrom + start, end - start,
+					offsets[chunk * 2], offsets[chunk * 2 + 1]);
+			firstOverflows[chunk] = (first < 0) ? -1 : start + first;
+		}));
+
+		return firstOf(firstOverflows);
+	}
+
+	/**
+	 * Running sums of `values` into `result` (which may be `values`), each one
+	 * exact and then clamped
+	 *
+	 * @return the index (relative to `from`) of the first running sum that had to
+	 *         be clamped, or -1
+	 */
+	static int prefixSum(@NotNull int[] values, int from, @NotNull int[] result, int resultFrom, int length) {
+		if (length < PARALLEL_THRESHOLD) {
+			return prefixSum(values, from, result, resultFrom, length, 0L);
+		}
+
+		int chunks = chunks(length);
+		long[] totals = new long[chunks];
+		ForkJoinTask.invokeAll(tasks(chunks, length, (chunk, start, end) -> {
+			totals[chunk] = sum(values, from + start, from + end);
+		}));
+
+		long[] offsets = new long[chunks];
+		for (int chunk = 1; chunk < chunks; chunk++) {
+			offsets[chunk] = offsets[chunk - 1] + totals[chunk - 1];
+		}
+
+		int[] firstOverflows = new int[chunks];
+		ForkJoinTask.invokeAll(tasks(chunks, length, (chunk, start, end) -> {
+			int first = prefixSum(values, from + start, result, resultFrom + start, end - start, offsets[chunk]);
+			firstOverflows[chunk] = (first < 0) ? -1 : start + first;
+		}));
+
+		return firstOf(firstOverflows);
+	}
+
+	/**
+	 * @return `{ high, low }` of the 128 bit sum of the two 128 bit numbers
+	 */
+	@NotNull
+	static long[] add128(long xHigh, long xLow, long yHigh, long yLow) {
+		long low = xLow + yLow;
+		long carry = ((xLow & yLow) | ((xLow | yLow) & ~low)) >>> 63;
+		return new long[] { xHigh + yHigh + carry, low };
+	}
+
+	/**
+	 * A single sequential run of {@link #prefixSum(long[], int, long[], int, int)}
+	 * starting from the 128 bit `offset`
+	 */
+	static int prefixSum(long[] values, int from, long[] result, int resultFrom, int length,
+			long offsetHigh, long offsetLow) {
+
+		long high = offsetHigh;
+		long low = offsetLow;
+		int firstOverflow = Integer.MAX_VALUE;
+		for (int i = 0; i < length; i++) {
+			long value = values[from + i];
+			long sum = low + value;
+			high += (value >> 63) + (((low & value) | ((low | value) & ~sum)) >>> 63);
+			low = sum;
+
+			/* Same as clamp(high, low), but the overflow mask is needed as well */
+			long difference = high ^ (low >> 63);
+			long overflow = (difference | -difference) >> 63;
+			long saturated = (high >> 63) ^ Long.MAX_VALUE;
+			result[resultFrom + i] = (low & ~overflow) | (saturated & overflow);
+
+			/* i if it was clamped, otherwise Integer.MAX_VALUE */
+			firstOverflow = Math.min(firstOverflow, (int) (i | (~overflow & Integer.MAX_VALUE)));
+		}
+
+		return (firstOverflow == Integer.MAX_VALUE) ? -1 : firstOverflow;
+	}
+
+	/**
+	 * A single sequential run of {@link #prefixSum(int[], int, int[], int, int)}
+	 * starting from `offset`
+	 */
+	private static int prefixSum(int[] values, int from, int[] result, int resultFrom, int length, long offset) {
+		long sum = offset;
+		int firstOverflow = Integer.MAX_VALUE;
+		for (int i = 0; i < length; i++) {
+			sum += values[from + i];
+
+			int clamped = clamp(sum);
+			result[resultFrom + i] = clamped;
+
+			long difference = clamped - sum;
+			long overflow = (difference | -difference) >> 63;
+			firstOverflow = Math.min(firstOverflow, (int) (i | (~overflow & Integer.MAX_VALUE)));
+		}
+
+		return (firstOverflow == Integer.MAX_VALUE) ? -1 : firstOverflow;
+	}
+
+	/**
+	 * @return how many chunks to split `length` elements into, a few per worker
+	 *         of the common pool so they stay balanced
+	 */
+	private static int chunks(int length) {
+		int workers = Math.max(1, ForkJoinPool.getCommonPoolParallelism());
+		return Math.max(1, Math.min(workers * 4, length / (PARALLEL_THRESHOLD / 2)));
+	}
+
+	/**
+	 * @return one task per chunk running `body` with the chunk and its `[start,
+	 *         end)`
+	 */
+	@NotNull
+	private static RecursiveAction[] tasks(int chunks, int length, @NotNull ChunkBody body) {
+		int size = (length + chunks - 1) / chunks;
+
+		RecursiveAction[] tasks = new RecursiveAction[chunks];
+		for (int i = 0; i < chunks; i++) {
+			int chunk = i;
+			int start = Math.min(length, chunk * size);
+			int end = Math.min(length, start + size);
+			tasks[chunk] = new RecursiveAction() {
+
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					body.run(chunk, start, end);
+				}
+			};
+		}
+
+		return tasks;
+	}
+
+	/**
+	 * @return the first index that isn't -1, or -1
+	 */
+	private static int firstOf(int[] firstOverflows) {
+		for (int first : firstOverflows) {
+			if (first >= 0) {
+				return first;
+			}
+		}
+
+		return -1;
+	}
+
+	@FunctionalInterface
+	private interface ChunkBody {
+
+		void run(int chunk, int start, int end);
+	}
+
+	/**
+	 * Splits the range in half until it is below {@link #PARALLEL_THRESHOLD}
+	 */
+	private static final class SumTask extends RecursiveTask<long[]> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long[] values;
+
+		private final int from;
+
+		private final int to;
+
+		SumTask(long[] values, int from, int to) {
+			this.values = values;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected long[] compute() {
+			if (to - from < PARALLEL_THRESHOLD) {
+				return sum(values, from, to);
+			}
+
+			int middle = (from + to) >>> 1;
+			SumTask left = new SumTask(values, from, middle);
+			left.fork();
+			long[] right = new SumTask(values, middle, to).compute();
+			long[] sum = left.join();
+
+			return add128(sum[0], sum[1], right[0], right[1]);
+		}
+	}
+
+	/**
+	 * Splits the range in half until it is below {@link #PARALLEL_THRESHOLD}
+	 */
+	private static final class IntSumTask extends RecursiveTask<Long> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] values;
+
+		private final int from;
+
+		private final int to;
+
+		IntSumTask(int[] values, int from, int to) {
+			this.values = values;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected Long compute() {
+			if (to - from < PARALLEL_THRESHOLD) {
+				return sum(values, from, to);
+			}
+
+			int middle = (from + to) >>> 1;
+			IntSumTask left = new IntSumTask(values, from, middle);
+			left.fork();
+			long right = new IntSumTask(values, middle, to).compute();
+
+			return left.join() + right;
+		}
+	}
+
+	/**
+	 * Splits the range in half until it is below {@link #PARALLEL_THRESHOLD}
+	 */
+	private static final class AddTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long[] x;
+
+		private final int xFrom;
+
+		private final long[] y;
+
+		private final int yFrom;
+
+		private final long[] result;
+
+		private final int resultFrom;
+
+		private final int length;
+
+		AddTask(long[] x, int xFrom, long[] y, int yFrom, long[] result, int resultFrom, int length) {
+			this.x = x;
+			this.xFrom = xFrom;
+			this.y = y;
+			this.yFrom = yFrom;
+			this.result = result;
+			this.resultFrom = resultFrom;
+			this.length = length;
+		}
+
+		@Override
+		protected void compute() {
+			if (length < PARALLEL_THRESHOLD) {
+				add(x, xFrom, y, yFrom, result, resultFrom, length);
+				return;
+			}
+
+			int half = length >>> 1;
+			invokeAll(new AddTask(x, xFrom, y, yFrom, result, resultFrom, half),
+					new AddTask(x, xFrom + half, y, yFrom + half, result, resultFrom + half, length - half));
+		}
+	}
+
+	/**
+	 * Splits the range in half until it is below {@link #PARALLEL_THRESHOLD}
+	 */
+	private static final class IntAddTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int[] x;
+
+		private final int xFrom;
+
+		private final int[] y;
+
+		private final int yFrom;
+
+		private final int[] result;
+
+		private final int resultFrom;
+
+		private final int length;
+
+		IntAddTask(int[] x, int xFrom, int[] y, int yFrom, int[] result, int resultFrom, int length) {
+			this.x = x;
+			this.xFrom = xFrom;
+			this.y = y;
+			this.yFrom = yFrom;
+			this.result = result;
+			this.resultFrom = resultFrom;
+			this.length = length;
+		}
+
+		@Override
+		protected void compute() {
+			if (length < PARALLEL_THRESHOLD) {
+				add(x, xFrom, y, yFrom, result, resultFrom, length);
+				return;
+			}
+
+			int half = length >>> 1;
+			invokeAll(new IntAddTask(x, xFrom, y, yFrom, result, resultFrom, half),
+					new IntAddTask(x, xFrom + half, y, yFrom + half, result, resultFrom + half, length - half));
+		}
+	}
+}
@@ -1,14 +1,154 @@
 package com.github.carterj3.utilities;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.validation.constraints.NotNull;
+
 public final class StringUtils {
 
+	/**
+	 * Number of compiled formats {@link #format(String, Object...)} keeps (a power
+	 * of two)
+	 */
+	private static final int CACHE_SIZE = 256;
+
+	/**
+	 * Direct mapped by the hash of the format, a format that collides simply
+	 * replaces the one that was there
+	 */
+	private static final AtomicReferenceArray<FormatTemplate> CACHE = new AtomicReferenceArray<>(CACHE_SIZE);
+
 	private StringUtils() {
 		super();
 	}
 
-	public static final String format(String formatString, Object... formatArgs) {
-		// TODO: Validate the formatString & args
+	/**
+	 * Same as {@link String#format(String, Object...)}, the format is only parsed
+	 * the first time (as long as it stays in a small cache) and the common
+	 * conversions skip the {@link java.util.Formatter}
+	 *
+	 * @throws java.util.IllegalFormatException
+	 *             if `formatString` isn't valid or `formatArgs` don't suit it
+	 */
+	public static final String format(@NotNull String formatString, Object... formatArgs) {
+		return cached(formatString).format(formatArgs);
+	}
+
+	/**
+	 * Same as {@link #format(String, Object...)} but appended straight to
+	 * `appendable`, see {@link FormatTemplate#appendTo(Appendable, Object...)}
+	 *
+	 * @throws IOException
+	 *             if `appendable` throws one
+	 */
+	public static final <A extends Appendable> A formatTo(@NotNull A appendable, @NotNull String formatString,
+			Object... formatArgs) throws IOException {
+		return cached(formatString).appendTo(appendable, formatArgs);
+	}
+
+	/**
+	 * Same as {@link #format(String, Object...)} but encoded as UTF-8 straight
+	 * into `buffer`, see {@link FormatTemplate#appendTo(ByteBuffer, Object...)}
+	 *
+	 * @return how many bytes were written
+	 * @throws java.nio.BufferOverflowException
+	 *             if it doesn't fit, the position of `buffer` is left where it was
+	 */
+	public static final int formatTo(@NotNull ByteBuffer buffer, @NotNull String formatString,
+			Object... formatArgs) {
+		return cached(formatString).appendTo(buffer, formatArgs);
+	}
+
+	/**
+	 * Parses and validates a format once, for formats that are used over and over
+	 * (i.e. kept in a static field)
+	 *
+	 * @param formatString
+	 *            see {@link java.util.Formatter}, formatted with the default
+	 *            {@link Locale.Category#FORMAT} {@link Locale}
+	 * @return the compiled format
+	 * @throws java.util.IllegalFormatException
+	 *             if `formatString` isn't valid
+	 */
+	public static final FormatTemplate compile(@NotNull String formatString) {
+		return FormatTemplate.compile(formatString, Locale.getDefault(Locale.Category.FORMAT));
+	}
+
+	/**
+	 * Same as {@link #compile(String)} but with the given {@link Locale}
+	 */
+	public static final FormatTemplate compile(@NotNull String formatString, @NotNull Locale locale) {
+		return FormatTemplate.compile(formatString, locale);
+	}
+
+	/**
+	 * Same as {@link #format(String, Object...)} but only formatted the first time
+	 * the result is used (see {@link LazyFormat}), for messages that are usually
+	 * dropped (i.e. debug logging)
+	 */
+	@NotNull
+	public static final LazyFormat lazy(@NotNull String formatString) {
+		return LazyFormat.of(formatString, 0, null, null, null);
+	}
+
+	/**
+	 * {@link #lazy(String, Object...)} without the varargs array
+	 */
+	@NotNull
+	public static final LazyFormat lazy(@NotNull String formatString, Object arg) {
+		return LazyFormat.of(formatString, 1, arg, null, null);
+	}
+
+	/**
+	 * {@link #lazy(String, Object...)} without the varargs array
+	 */
+	@NotNull
+	public static final LazyFormat lazy(@NotNull String formatString, Object first, Object second) {
+		return LazyFormat.of(formatString, 2, first, second, null);
+	}
+
+	/**
+	 * {@link #lazy(String, Object...)} without the varargs array
+	 */
+	@NotNull
+	public static final LazyFormat lazy(@NotNull String formatString, Object first, Object second, Object third) {
+		return LazyFormat.of(formatString, 3, first, second, third);
+	}
+
+	/**
+	 * Same as {@link #format(String, Object...)} but only formatted the first time
+	 * the result is used (see {@link LazyFormat})
+	 *
+	 * @throws java.util.IllegalFormatException
+	 *             (when it is used) if `formatString` isn't valid or `formatArgs`
+	 *             don't suit it
+	 */
+	@NotNull
+	public static final LazyFormat lazy(@NotNull String formatString, Object... formatArgs) {
+		return LazyFormat.of(formatString, formatArgs);
+	}
+
+	/**
+	 * @param formatString
+	 *            the format
+	 * @return the compiled `formatString` from the cache, compiling (and caching)
+	 *         it if it isn't there
+	 */
+	static FormatTemplate cached(@NotNull String formatString) {
+		Locale locale = Locale.getDefault(Locale.Category.FORMAT);
+
+		int hash = formatString.hashCode();
+		int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+
+		FormatTemplate template = CACHE.get(index);
+		if (template == null || !template.getFormat().equals(formatString) || !template.getLocale().equals(locale)) {
+			template = FormatTemplate.compile(formatString, locale);
+			CACHE.lazySet(index, template);
+		}
 
-		return String.format(formatString, formatArgs);
+		return template;
 	}
 }
@@ -0,0 +1,130 @@
+package com.github.carterj3.utilities;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes what is appended to it as UTF-8 straight into a {@link ByteBuffer},
+ * without a {@link java.nio.charset.CharsetEncoder} or an intermediate
+ * {@link String}. Unpaired surrogates are written as '?', the same as
+ * {@link String#getBytes(java.nio.charset.Charset)}.</br>
+ *
+ * NOTE: A high surrogate is held back until the next character, call
+ * {@link #flush()} once done. Running out of room throws
+ * {@link java.nio.BufferOverflowException} part way through a character.
+ * Every {@link Thread} reuses one, see {@link #acquire(ByteBuffer)}.
+ *
+ * @author jeffrey.carter
+ *
+ */
+final class Utf8Appendable implements Appendable {
+
+	private static final ThreadLocal<Utf8Appendable> REUSABLE = ThreadLocal.withInitial(() -> new Utf8Appendable(null));
+
+	/**
+	 * Where to write, null while a reusable one isn't in use
+	 */
+	private ByteBuffer buffer;
+
+	/**
+	 * A high surrogate waiting for its low surrogate, 0 if there isn't one
+	 */
+	private char highSurrogate;
+
+	Utf8Appendable(ByteBuffer buffer) {
+		this.buffer = buffer;
+		this.highSurrogate = 0;
+	}
+
+	/**
+	 * @param buffer
+	 *            where to write
+	 * @return this {@link Thread}'s reusable one, or a new one if it is already
+	 *         in use (an argument's `toString()` formatting into a
+	 *         {@link ByteBuffer} too)
+	 */
+	static Utf8Appendable acquire(ByteBuffer buffer) {
+		Utf8Appendable reusable = REUSABLE.get();
+		if (reusable.buffer != null) {
+			return new Utf8Appendable(buffer);
+		}
+
+		reusable.buffer = buffer;
+		reusable.highSurrogate = 0;
+		return reusable;
+	}
+
+	/**
+	 * Done writing, it may be {@link #acquire(ByteBuffer)}d again
+	 */
+	void release() {
+		buffer = null;
+	}
+
+	@Override
+	public Utf8Appendable append(CharSequence csq) {
+		return append(csq, 0, csq.length());
+	}
+
+	@Override
+	public Utf8Appendable append(CharSequence csq, int start, int end) {
+		CharSequence chars = (csq == null) ? "null" : csq;
+		for (int i = start; i < end; i++) {
+			append(chars.charAt(i));
+		}
+
+		return this;
+	}
+
+	@Override
+	public Utf8Appendable append(char c) {
+		if (highSurrogate != 0) {
+			char high = highSurrogate;
+			highSurrogate = 0;
+			if (Character.isLowSurrogate(c)) {
+				int codePoint = Character.toCodePoint(high, c);
+				buffer.put((byte) (0xF0 | (codePoint >>> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >>> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((codePoint >>> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+				return this;
+			}
+			buffer.put((byte) '?');
+		}
+
+		if (c < 0x80) {
+			buffer.put((byte) c);
+		} else if (c < 0x800) {
+			buffer.put((byte) (0xC0 | (c >>> 6)));
+			buffer.put((byte) (0x80 | (c & 0x3F)));
+		} else if (Character.isHighSurrogate(c)) {
+			highSurrogate = c;
+		} else if (Character.isLowSurrogate(c)) {
+			buffer.put((byte) '?');
+		} else {
+			buffer.put((byte) (0xE0 | (c >>> 12)));
+			buffer.put((byte) (0x80 | ((c >>> 6) & 0x3F)));
+			buffer.put((byte) (0x80 | (c & 0x3F)));
+		}
+
+		return this;
+	}
+
+	/**
+	 * @param utf8
+	 *            bytes that are already encoded
+	 */
+	void write(byte[] utf8) {
+		flush();
+		buffer.put(utf8);
+	}
+
+	/**
+	 * Writes a high surrogate that never got its low surrogate
+	 */
+	void flush() {
+		if (highSurrogate != 0) {
+			highSurrogate = 0;
+			buffer.put((byte) '?');
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A single ReadLock or WriteLock hold granted by
+ * {@link ReentreantUpgradeLock#readLockAsync(Executor)} or
+ * {@link ReentreantUpgradeLock#writeLockAsync(Executor)}. Unlike the
+ * {@link UpgradableReadLock} and {@link DowngradableWriteLock} holds it
+ * belongs to the handle rather than a {@link Thread}, so it can be released
+ * from whichever {@link Thread} the work continues on.</br>
+ *
+ * NOTE: Not reentrant, a {@link Thread} holding a handle that blocks on the
+ * same Lock (or asks for a second handle) waits on itself like any other
+ * waiter would.
+ *
+ * @author jeffrey.carter
+ *
+ */
+public final class AsyncLockHandle implements AutoCloseable {
+
+	private ReentreantUpgradeLock parent;
+
+	/**
+	 * The WriteLock owner of the hold, {@link AsyncWaiters#WRITER} or
+	 * {@link AsyncWaiters#UPGRADER}, null for a ReadLock hold
+	 */
+	private Thread owner;
+
+	private AtomicBoolean isReleased;
+
+	AsyncLockHandle(@NotNull ReentreantUpgradeLock parent, Thread owner) {
+		this.parent = parent;
+		this.owner = owner;
+		this.isReleased = new AtomicBoolean(false);
+	}
+
+	/**
+	 * @return true if this is a WriteLock hold
+	 */
+	public boolean isWrite() {
+		return owner != null;
+	}
+
+	/**
+	 * Releases the hold, an upgraded WriteLock hold leaves the ReadLock hold it
+	 * was upgraded from held
+	 *
+	 * @throws IllegalStateException
+	 *             if the hold was already released
+	 */
+	public void unlock() {
+		release();
+		parent.unlockAsync(owner);
+	}
+
+	/**
+	 * Acquires the WriteLock while this ReadLock hold is held (same as
+	 * {@link UpgradableReadLock#upgrade()}), release both afterwards
+	 *
+	 * @param executor
+	 *            where the returned future is completed
+	 * @return the WriteLock hold, completed exceptionally with an
+	 *         {@link IllegalStateException} if another {@link Thread} holds the
+	 *         {@link UpdateLock}
+	 * @throws IllegalStateException
+	 *             if this is not a ReadLock hold or it was already released
+	 */
+	@NotNull
+	public CompletableFuture<AsyncLockHandle> upgradeAsync(@NotNull Executor executor) {
+		return upgradeAsync(Long.MAX_VALUE, TimeUnit.NANOSECONDS, executor);
+	}
+
+	/**
+	 * Same as {@link #upgradeAsync(Executor)} but completed exceptionally with a
+	 * {@link java.util.concurrent.TimeoutException} if the WriteLock isn't
+	 * granted in time
+	 */
+	@NotNull
+	public CompletableFuture<AsyncLockHandle> upgradeAsync(long duration, @NotNull TimeUnit unit,
+			@NotNull Executor executor) {
+
+		if (isWrite() || isReleased.get()) {
+			throw new IllegalStateException("Cannot upgrade a handle that is not a held ReadLock");
+		}
+
+		return parent.upgradeAsync(duration, unit, executor);
+	}
+
+	/**
+	 * Acquires a ReadLock hold and then releases this WriteLock hold (same as
+	 * {@link DowngradableWriteLock#downgrade()}), never waits
+	 *
+	 * @return the new ReadLock hold
+	 * @throws IllegalStateException
+	 *             if this is not a WriteLock hold or it was already released
+	 */
+	@NotNull
+	public AsyncLockHandle downgrade() {
+		if (!isWrite()) {
+			throw new IllegalStateException("Cannot downgrade a handle that is not a held WriteLock");
+		}
+
+		release();
+		return parent.downgradeAsync(owner);
+	}
+
+	@Override
+	public void close() {
+		this.unlock();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s, released: %s", isWrite() ? "write" : "read", isReleased.get());
+	}
+
+	private void release() {
+		if (!isReleased.compareAndSet(false, true)) {
+			throw new IllegalStateException("Cannot release Lock that is not owned by the handle");
+		}
+	}
+}
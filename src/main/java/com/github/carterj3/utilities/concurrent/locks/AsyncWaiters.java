@@ -0,0 +1,107 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * The asynchronous acquisitions of a single {@link ReentreantUpgradeLock}
+ * (see {@link ReentreantUpgradeLock#readLockAsync(java.util.concurrent.Executor)}),
+ * created the first time one is made so Locks that are never used
+ * asynchronously don't pay for it.</br>
+ *
+ * Nothing parks, whenever the Lock may have become available (a release, a
+ * cancelled request, ...) the releasing {@link Thread} runs
+ * {@link ReentreantUpgradeLock}'s granting loop, which is serialized by
+ * {@link #work} so only one {@link Thread} grants at a time and a signal that
+ * arrives while granting makes it go around again.</br>
+ *
+ * An asynchronous hold isn't tied to a {@link Thread} (it may be released from
+ * anywhere), so the readers are counted in {@link #readers} rather than the
+ * ReaderIndicator and a writer owns the WriteLock as one of two marker
+ * {@link Thread}s that are never started.
+ *
+ * @author jeffrey.carter
+ *
+ */
+final class AsyncWaiters {
+
+	/**
+	 * The WriteLock owner while an asynchronous writer drains the readers or
+	 * holds the WriteLock
+	 */
+	static final Thread WRITER = new Thread("ReentreantUpgradeLock-async-writer");
+
+	/**
+	 * The WriteLock owner (and UpdateLock owner) while an asynchronous ReadLock
+	 * holder upgrades or holds the WriteLock it upgraded to
+	 */
+	static final Thread UPGRADER = new Thread("ReentreantUpgradeLock-async-upgrader");
+
+	/**
+	 * Waiting for a ReadLock or WriteLock, in the order they arrived
+	 */
+	final ConcurrentLinkedQueue<Request> queue;
+
+	/**
+	 * How many asynchronous ReadLock holds there are
+	 */
+	final AtomicLong readers;
+
+	/**
+	 * How many times granting was asked for since the granting {@link Thread}
+	 * last looked, 0 while nobody is granting
+	 */
+	final AtomicInteger work;
+
+	/**
+	 * The head of the {@link #queue} while it owns the WriteLock as
+	 * {@link #WRITER} but the readers haven't drained yet (NOTE: only touched by
+	 * the granting {@link Thread})
+	 */
+	Request draining;
+
+	/**
+	 * The waiting upgrade, if any. Never queued since the upgrader holds a
+	 * ReadLock that anything queued for the WriteLock could be waiting on.
+	 */
+	volatile Request upgrade;
+
+	AsyncWaiters() {
+		this.queue = new ConcurrentLinkedQueue<>();
+		this.readers = new AtomicLong();
+		this.work = new AtomicInteger();
+		this.draining = null;
+		this.upgrade = null;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("readers: %d, queued: %d, upgrading: %s", readers.get(), queue.size(), upgrade != null);
+	}
+
+	/**
+	 * A single asynchronous acquisition
+	 */
+	static final class Request {
+
+		final boolean isRead;
+
+		/**
+		 * Where the {@link #future} is completed
+		 */
+		final Executor executor;
+
+		final CompletableFuture<AsyncLockHandle> future;
+
+		Request(boolean isRead, @NotNull Executor executor) {
+			this.isRead = isRead;
+			this.executor = executor;
+			this.future = new CompletableFuture<>();
+		}
+	}
+}
@@ -0,0 +1,282 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A {@link ReaderIndicator} for Locks that are read constantly and written
+ * rarely (configuration, routing tables, ...), modelled after BRAVO. While the
+ * Lock is biased towards readers each reader claims a slot of a table of
+ * visible readers picked by hashing its {@link Thread}, which nobody else
+ * writes to, so reading costs about as much as an uncontended volatile write
+ * to a cache line the core already owns. A reader whose slot is taken, or that
+ * arrives while the bias is revoked, is counted by the wrapped
+ * {@link ReaderIndicator} instead.</br>
+ *
+ * The first writer to check for readers revokes the bias and then scans the
+ * whole table until every slot has drained, which is far slower than checking
+ * a single counter. So the bias isn't restored until
+ * {@value #INHIBIT_MULTIPLIER} times as long as the revocation took has
+ * passed, after which the next reader that has to use the wrapped
+ * {@link ReaderIndicator} restores it.</br>
+ *
+ * NOTE: A reader may publish itself in the table just as the bias is revoked,
+ * it notices when it checks the bias again and moves to the wrapped
+ * {@link ReaderIndicator}. The bias is only restored once the table was seen
+ * empty after the revocation, so a writer never skips the scan while a reader
+ * could still be in it.
+ *
+ * @author jeffrey.carter
+ *
+ */
+public class BiasedReaderIndicator implements ReaderIndicator {
+
+	/**
+	 * Readers use the table
+	 */
+	private static final int BIASED = 0;
+
+	/**
+	 * Readers use the wrapped {@link ReaderIndicator}, but readers that arrived
+	 * while the Lock was biased may still be in the table
+	 */
+	private static final int REVOKED = 1;
+
+	/**
+	 * Readers use the wrapped {@link ReaderIndicator} and the table is empty
+	 */
+	private static final int UNBIASED = 2;
+
+	/**
+	 * How many times as long as a revocation took the bias stays off
+	 */
+	private static final int INHIBIT_MULTIPLIER = 9;
+
+	/**
+	 * Number of references between two used slots
+	 */
+	private static final int PADDING = 16;
+
+	/**
+	 * Upper bound on the number of slots, a writer scans all of them
+	 */
+	private static final int MAXIMUM_SLOTS = 256;
+
+	/**
+	 * {@link #mode}, so it can be compare-and-set without an extra object per
+	 * Lock
+	 */
+	private static final VarHandle MODE;
+	static {
+		try {
+			MODE = MethodHandles.lookup().findVarHandle(BiasedReaderIndicator.class, "mode", int.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * Counts the readers that don't use the table
+	 */
+	private ReaderIndicator fallback;
+
+	/**
+	 * The visible readers, only every {@link #PADDING}th index is used and a slot
+	 * is only ever set to the {@link Thread} that hashes to it
+	 */
+	private AtomicReferenceArray<Thread> slots;
+
+	/**
+	 * Number of slots minus one, used to mask a hash into an index
+	 */
+	private int mask;
+
+	private volatile int mode;
+
+	/**
+	 * When (in nanos) the bias was last revoked
+	 */
+	private volatile long revokedAt;
+
+	/**
+	 * When (in nanos) the bias may be restored
+	 */
+	private volatile long inhibitedUntil;
+
+	/**
+	 * Counts the readers that don't use the table with a
+	 * {@link CentralReaderIndicator}
+	 */
+	public BiasedReaderIndicator() {
+		this(new CentralReaderIndicator());
+	}
+
+	/**
+	 * @param fallback
+	 *            counts the readers while the bias is revoked (NOTE: must not be
+	 *            shared with another Lock)
+	 */
+	public BiasedReaderIndicator(@NotNull ReaderIndicator fallback) {
+		this.fallback = Objects.requireNonNull(fallback, "fallback");
+
+		/* A few slots per core so readers rarely collide, rounded up to a power of two */
+		int wanted = Math.min(MAXIMUM_SLOTS, Runtime.getRuntime().availableProcessors() * 4);
+		int size = Integer.highestOneBit(wanted - 1) << 1;
+		this.slots = new AtomicReferenceArray<>(size * PADDING);
+		this.mask = size - 1;
+
+		/* System.nanoTime() may be negative, so 0 could be far in the future */
+		long now = System.nanoTime();
+		this.mode = BIASED;
+		this.revokedAt = now;
+		this.inhibitedUntil = now;
+	}
+
+	/**
+	 * @return the index of its slot in the table, or the complement (so it is
+	 *         negative) of where the wrapped {@link ReaderIndicator} counted it
+	 */
+	@Override
+	public int arrive() {
+		Thread currentThread = Thread.currentThread();
+
+		if (mode == BIASED) {
+			int index = indexOf(currentThread);
+			if (slots.compareAndSet(index, null, currentThread)) {
+				if (mode == BIASED) {
+					return index;
+				}
+
+				/* Revoked in between, the writer may already have scanned past the slot */
+				slots.set(index, null);
+			}
+		} else if (System.nanoTime() - inhibitedUntil >= 0L) {
+			rebias();
+		}
+
+		return ~fallback.arrive();
+	}
+
+	@Override
+	public void depart(int slot) {
+		if (slot >= 0) {
+			slots.set(slot, null);
+		} else {
+			fallback.depart(~slot);
+		}
+	}
+
+	/**
+	 * Revokes the bias (if it is still set) and then looks for readers in the
+	 * table before asking the wrapped {@link ReaderIndicator}
+	 */
+	@Override
+	public boolean hasOtherReaders(long ownReaders) {
+		int current = mode;
+		if (current == UNBIASED) {
+			return fallback.hasOtherReaders(ownReaders);
+		}
+
+		if (current == BIASED && MODE.compareAndSet(this, BIASED, REVOKED)) {
+			revokedAt = System.nanoTime();
+		}
+
+		Thread currentThread = Thread.currentThread();
+		long ownInTable = 0L;
+		for (int i = 0; i < slots.length(); i += PADDING) {
+			Thread reader = slots.get(i);
+			if (reader == null) {
+				continue;
+			}
+
+			if (reader != currentThread || ownReaders == 0L) {
+				return true;
+			}
+			ownInTable = 1L;
+		}
+
+		/* Drained, readers that arrive from here on see the writer */
+		if (ownInTable == 0L && MODE.compareAndSet(this, REVOKED, UNBIASED)) {
+			inhibit();
+		}
+
+		return fallback.hasOtherReaders(ownReaders - ownInTable);
+	}
+
+	@Override
+	public long sum() {
+		long sum = fallback.sum();
+		for (int i = 0; i < slots.length(); i += PADDING) {
+			if (slots.get(i) != null) {
+				sum++;
+			}
+		}
+
+		return sum;
+	}
+
+	/**
+	 * @return true if readers currently use the table
+	 */
+	public boolean isBiased() {
+		return mode == BIASED;
+	}
+
+	/**
+	 * @return how long until the bias may be restored, 0 if it already may be
+	 */
+	public long getInhibitedNanos() {
+		return Math.max(0L, inhibitedUntil - System.nanoTime());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d, biased: %s (inhibited for %dms)", sum(), isBiased(),
+				TimeUnit.NANOSECONDS.toMillis(getInhibitedNanos()));
+	}
+
+	/**
+	 * Restores the bias. If the last writer left readers in the table (it upgraded
+	 * from a ReadLock, timed out, ...) they have to be gone first, otherwise it
+	 * waits for another revocation's worth of time before looking again.
+	 */
+	private void rebias() {
+		if (mode == REVOKED) {
+			for (int i = 0; i < slots.length(); i += PADDING) {
+				if (slots.get(i) != null) {
+					inhibit();
+					return;
+				}
+			}
+
+			MODE.compareAndSet(this, REVOKED, UNBIASED);
+		}
+
+		MODE.compareAndSet(this, UNBIASED, BIASED);
+	}
+
+	/**
+	 * Keeps the bias off for {@value #INHIBIT_MULTIPLIER} times as long as it has
+	 * been since it was revoked
+	 */
+	private void inhibit() {
+		long now = System.nanoTime();
+		inhibitedUntil = now + Math.max(1L, now - revokedAt) * INHIBIT_MULTIPLIER;
+	}
+
+	/**
+	 * @param thread
+	 *            the reader
+	 * @return the index of the slot the {@link Thread} always uses
+	 */
+	private int indexOf(Thread thread) {
+		/* Fibonacci hashing so sequential Thread ids land on different slots */
+		long hash = thread.getId() * 0x9E3779B97F4A7C15L;
+		return ((int) (hash >>> 32) & mask) * PADDING;
+	}
+}
@@ -0,0 +1,50 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ReaderIndicator} backed by a single counter. It is the smallest
+ * option but every reader on every core updates the same cache line, prefer
+ * {@link StripedReaderIndicator} for read heavy locks on machines with many
+ * cores.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+public class CentralReaderIndicator implements ReaderIndicator {
+
+	/**
+	 * The total number of {@link Thread}s holding the ReadLock
+	 */
+	private AtomicLong numberOfReadLockOwners;
+
+	public CentralReaderIndicator() {
+		this.numberOfReadLockOwners = new AtomicLong(0L);
+	}
+
+	@Override
+	public int arrive() {
+		numberOfReadLockOwners.incrementAndGet();
+		return 0;
+	}
+
+	@Override
+	public void depart(int slot) {
+		numberOfReadLockOwners.decrementAndGet();
+	}
+
+	@Override
+	public boolean hasOtherReaders(long ownReaders) {
+		return numberOfReadLockOwners.get() != ownReaders;
+	}
+
+	@Override
+	public long sum() {
+		return numberOfReadLockOwners.get();
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(sum());
+	}
+}
@@ -0,0 +1,80 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.Objects;
+import java.util.function.ToIntFunction;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Groups {@link Thread}s into clusters that are cheap to hand a Lock between,
+ * typically the cores of one socket (NUMA node), for a cohort Lock (see
+ * {@link ReentreantUpgradeLock.Builder#cohort(ClusterAssignment, int)}) and
+ * the {@link ClusteredReaderIndicator}.</br>
+ *
+ * NOTE: Called on every contended acquisition and release, so it should be
+ * about as cheap as a {@link ThreadLocal} lookup. A {@link Thread} may move to
+ * another cluster at any time, it only costs locality (a reader leaves the
+ * {@link ClusteredReaderIndicator} counter it arrived at).
+ *
+ * @author jeffrey.carter
+ *
+ */
+public interface ClusterAssignment {
+
+	/**
+	 * @return how many clusters there are, at least 1
+	 */
+	int clusters();
+
+	/**
+	 * @return the cluster of the current {@link Thread}, from 0 to
+	 *         {@link #clusters()} - 1
+	 */
+	int currentCluster();
+
+	/**
+	 * @param clusters
+	 *            how many clusters there are
+	 * @param clusterOf
+	 *            picks the cluster of a {@link Thread}, wrapped into range if it
+	 *            returns anything outside 0 to `clusters` - 1
+	 * @return clusters configured by the caller
+	 * @throws IllegalArgumentException
+	 *             if `clusters` is not positive
+	 */
+	@NotNull
+	static ClusterAssignment of(int clusters, @NotNull ToIntFunction<Thread> clusterOf) {
+		if (clusters < 1) {
+			throw new IllegalArgumentException("clusters must be positive");
+		}
+		Objects.requireNonNull(clusterOf, "clusterOf");
+
+		return new ClusterAssignment() {
+
+			@Override
+			public int clusters() {
+				return clusters;
+			}
+
+			@Override
+			public int currentCluster() {
+				return Math.floorMod(clusterOf.applyAsInt(Thread.currentThread()), clusters);
+			}
+
+			@Override
+			public String toString() {
+				return String.format("clusters: %d", clusters);
+			}
+		};
+	}
+
+	/**
+	 * @return one cluster per NUMA node, derived from the CPU each {@link Thread}
+	 *         first asks from (Linux only, a single cluster anywhere else), see
+	 *         {@link NumaClusterAssignment}
+	 */
+	@NotNull
+	static ClusterAssignment numaNodes() {
+		return NumaClusterAssignment.INSTANCE;
+	}
+}
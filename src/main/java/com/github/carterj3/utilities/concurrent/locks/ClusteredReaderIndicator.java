@@ -0,0 +1,93 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A {@link ReaderIndicator} with one counter per cluster of a
+ * {@link ClusterAssignment} (e.g. per socket) so readers only ever write to a
+ * cache line that stays on their own socket. Each counter is padded out to its
+ * own 128 bytes like the {@link StripedReaderIndicator}'s.</br>
+ *
+ * NOTE: A {@link Thread} that changes clusters while it reads still departs
+ * from the counter it arrived at, so no counter ever goes negative. Writers
+ * add up every counter all the same.
+ *
+ * @author jeffrey.carter
+ *
+ */
+public class ClusteredReaderIndicator implements ReaderIndicator {
+
+	/**
+	 * Number of longs between two used counters
+	 */
+	private static final int PADDING = 16;
+
+	private ClusterAssignment clusters;
+
+	/**
+	 * The counters, only every {@link #PADDING}th index is used
+	 */
+	private AtomicLongArray cells;
+
+	/**
+	 * @param clusters
+	 *            which counter each {@link Thread} uses
+	 */
+	public ClusteredReaderIndicator(@NotNull ClusterAssignment clusters) {
+		this.clusters = clusters;
+		this.cells = new AtomicLongArray(Math.max(1, clusters.clusters()) * PADDING);
+	}
+
+	@Override
+	public int arrive() {
+		int index = indexOf(clusters.currentCluster());
+		cells.getAndIncrement(index);
+		return index;
+	}
+
+	@Override
+	public void depart(int slot) {
+		cells.getAndDecrement(slot);
+	}
+
+	@Override
+	public boolean hasOtherReaders(long ownReaders) {
+		return sum() != ownReaders;
+	}
+
+	@Override
+	public long sum() {
+		long sum = 0;
+		for (int i = 0; i < cells.length(); i += PADDING) {
+			sum += cells.get(i);
+		}
+
+		return sum;
+	}
+
+	/**
+	 * @param cluster
+	 *            a cluster, from 0 to {@link ClusterAssignment#clusters()} - 1
+	 * @return the number of readers counted by that cluster's counter, only meant
+	 *         for diagnostics
+	 */
+	public long sum(int cluster) {
+		return cells.get(indexOf(cluster));
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(sum());
+	}
+
+	/**
+	 * @param cluster
+	 *            the cluster of a reader
+	 * @return the index of that cluster's counter
+	 */
+	private int indexOf(int cluster) {
+		return Math.floorMod(cluster, cells.length() / PADDING) * PADDING;
+	}
+}
@@ -0,0 +1,199 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * The mutations published to a single {@link ReentreantUpgradeLock} by
+ * {@link ReentreantUpgradeLock#combine(Object, Consumer)}, waiting for whoever
+ * holds the WriteLock to apply them.</br>
+ *
+ * Publishing is a single push onto a stack. The {@link Thread} that pushes onto
+ * an empty stack is responsible for making sure someone applies it (it takes
+ * the WriteLock itself), everyone else only parks until their mutation has been
+ * applied, so a burst of small writes costs one WriteLock handoff rather than
+ * one each.</br>
+ *
+ * A {@link Thread} only has one mutation in flight at a time so every
+ * {@link Thread} reuses the same {@link Request} for every Lock, publishing
+ * doesn't allocate.
+ *
+ * @author jeffrey.carter
+ *
+ */
+final class CombiningQueue {
+
+	/**
+	 * The {@link Request} of every {@link Thread}, shared by all queues
+	 */
+	private static final ThreadLocal<Request> REQUESTS = ThreadLocal.withInitial(Request::new);
+
+	/**
+	 * The most recently published {@link Request}, linked to the ones published
+	 * before it
+	 */
+	private AtomicReference<Request> pending;
+
+	CombiningQueue() {
+		this.pending = new AtomicReference<>();
+	}
+
+	/**
+	 * @return true if nothing is waiting to be applied
+	 */
+	boolean isEmpty() {
+		return pending.get() == null;
+	}
+
+	/**
+	 * Publishes a mutation to be applied by the holder of the WriteLock
+	 *
+	 * @return the published {@link Request}, hand it to {@link #await(Request)}
+	 */
+	@NotNull
+	<S> Request publish(@NotNull S target, @NotNull Consumer<? super S> mutation) {
+		Request request = REQUESTS.get();
+
+		/* Only busy when published while applying another queue's batch */
+		if (request.isBusy) {
+			request = new Request();
+		}
+
+		@SuppressWarnings("unchecked")
+		Consumer<Object> erased = (Consumer<Object>) mutation;
+		request.isBusy = true;
+		request.isDone = false;
+		request.target = target;
+		request.mutation = erased;
+		request.failure = null;
+
+		Request head;
+		do {
+			head = pending.get();
+			request.next = head;
+		} while (!pending.compareAndSet(head, request));
+
+		request.isLeading = (head == null);
+		return request;
+	}
+
+	/**
+	 * Parks until the `request` has been applied
+	 *
+	 * @throws RuntimeException
+	 *             whatever the mutation threw
+	 */
+	void await(@NotNull Request request) {
+		boolean isInterrupted = false;
+		while (!request.isDone) {
+			LockSupport.park(this);
+			if (Thread.interrupted()) {
+				isInterrupted = true;
+			}
+		}
+
+		if (isInterrupted) {
+			Thread.currentThread().interrupt();
+		}
+
+		Throwable failure = request.failure;
+		request.target = null;
+		request.mutation = null;
+		request.failure = null;
+		request.isBusy = false;
+
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		if (failure != null) {
+			throw new IllegalStateException("Mutation failed", failure);
+		}
+	}
+
+	/**
+	 * Applies every published mutation, oldest first, and wakes their
+	 * {@link Thread}s. Must only be called by the holder of the WriteLock.
+	 *
+	 * @return how many mutations were applied
+	 */
+	int applyAll() {
+		Request batch = pending.getAndSet(null);
+		if (batch == null) {
+			return 0;
+		}
+
+		/* Published newest first, reverse it while the links are still ours */
+		Request oldest = null;
+		while (batch != null) {
+			Request next = batch.next;
+			batch.next = oldest;
+			oldest = batch;
+			batch = next;
+		}
+
+		int applied = 0;
+		for (Request request = oldest; request != null; applied++) {
+			Request next = request.next;
+			Thread thread = request.thread;
+
+			try {
+				request.mutation.accept(request.target);
+			} catch (Throwable t) {
+				request.failure = t;
+			}
+
+			/* The Request may be published again as soon as it is done */
+			request.next = null;
+			request.isDone = true;
+			if (thread != Thread.currentThread()) {
+				LockSupport.unpark(thread);
+			}
+
+			request = next;
+		}
+
+		return applied;
+	}
+
+	/**
+	 * A published mutation, reused by its {@link Thread}
+	 */
+	static final class Request {
+
+		private final Thread thread = Thread.currentThread();
+
+		/**
+		 * Set by the applying {@link Thread} after the mutation (and its
+		 * {@link #failure}) so the publisher sees both
+		 */
+		private volatile boolean isDone;
+
+		/**
+		 * True while published, only touched by the publishing {@link Thread}
+		 */
+		private boolean isBusy;
+
+		/**
+		 * True if this was published onto an empty stack
+		 */
+		boolean isLeading;
+
+		private Object target;
+
+		private Consumer<Object> mutation;
+
+		private Throwable failure;
+
+		private Request next;
+
+		boolean isDone() {
+			return isDone;
+		}
+	}
+}
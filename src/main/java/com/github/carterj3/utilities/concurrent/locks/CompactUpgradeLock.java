@@ -0,0 +1,666 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReadWriteLock;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A {@link ReentreantUpgradeLock} for embedding in very large numbers of
+ * objects. It starts out "thin", a single state word (plus the holder and a
+ * pointer that stays null) that a single holder locks and unlocks with one
+ * compare-and-set, and only "inflates" into a {@link ReentreantUpgradeLock}
+ * (for good) the first time a second {@link Thread} has to wait for it or its
+ * holder re-enters it.</br>
+ *
+ * Upgrading and downgrading a thin hold never waits since there is nobody else
+ * to wait for. Once inflated it behaves exactly like
+ * {@link ReentreantUpgradeLock#forVirtualThreads()}, holds taken while thin
+ * carry over.</br>
+ *
+ * NOTE: {@link #readLock()} and {@link #writeLock()} create a new view on every
+ * call (caching them would cost every instance two more fields), prefer the
+ * `...Read()` & `...Write()` methods. There is no UpdateLock or optimistic
+ * read, use a {@link ReentreantUpgradeLock} for those.
+ *
+ * @author jeffrey.carter
+ *
+ */
+public class CompactUpgradeLock implements ReadWriteLock {
+
+	/**
+	 * Held by a single reader
+	 */
+	private static final int READ = 1;
+
+	/**
+	 * Held by a single writer
+	 */
+	private static final int WRITE = 2;
+
+	private static final int HELD = READ | WRITE;
+
+	/**
+	 * Another {@link Thread} is waiting for the holder, releasing the thin hold
+	 * inflates the Lock
+	 */
+	private static final int WAITING = 4;
+
+	/**
+	 * Everything goes through {@link Inflation#lock}
+	 */
+	private static final int INFLATED = 8;
+
+	private static final VarHandle STATE;
+	private static final VarHandle INFLATION;
+	static {
+		try {
+			MethodHandles.Lookup lookup = MethodHandles.lookup();
+			STATE = lookup.findVarHandle(CompactUpgradeLock.class, "state", int.class);
+			INFLATION = lookup.findVarHandle(CompactUpgradeLock.class, "inflation", Inflation.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * 0 when free, otherwise {@link #READ} or {@link #WRITE} (maybe with
+	 * {@link #WAITING}) or {@link #INFLATED}
+	 */
+	private volatile int state;
+
+	/**
+	 * The {@link Thread} holding the thin Lock.</br>
+	 *
+	 * NOTE: Only ever compared against the current {@link Thread}, which only
+	 * finds itself here while it really is the holder (it clears it before
+	 * releasing), so it doesn't need to be volatile.
+	 */
+	private Thread owner;
+
+	/**
+	 * Created by the first {@link Thread} that has to wait (or re-enter), null
+	 * for a Lock that never had to
+	 */
+	private volatile Inflation inflation;
+
+	public CompactUpgradeLock() {
+		/* Every field starts out zero */
+	}
+
+	/**
+	 * @return true if the Lock has inflated into a {@link ReentreantUpgradeLock}
+	 */
+	public boolean isInflated() {
+		return (state & INFLATED) != 0;
+	}
+
+	@Override
+	public String toString() {
+		int state = this.state;
+		if ((state & INFLATED) != 0) {
+			return "inflated: " + inflation.lock;
+		}
+
+		return String.format("thin: %s, waiting: %s", ((state & WRITE) != 0) ? "write" : ((state & READ) != 0) ? "read"
+				: "free", (state & WAITING) != 0);
+	}
+
+	/**
+	 * @return a new view of the ReadLock, see {@link #lockRead()} etc.
+	 */
+	@NotNull
+	@Override
+	public Lock readLock() {
+		return new ReadLock(this);
+	}
+
+	/**
+	 * @return a new view of the WriteLock, see {@link #lockWrite()} etc.
+	 */
+	@NotNull
+	@Override
+	public Lock writeLock() {
+		return new WriteLock(this);
+	}
+
+	public void lockRead() {
+		try {
+			tryLock(READ, Long.MAX_VALUE, TimeUnit.NANOSECONDS, false);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException("Unable to reach as tryLock does not throw when !isInterruptable", e);
+		}
+	}
+
+	public void lockReadInterruptibly() throws InterruptedException {
+		tryLock(READ, Long.MAX_VALUE, TimeUnit.NANOSECONDS, true);
+	}
+
+	public boolean tryLockRead() {
+		try {
+			return tryLock(READ, 0L, TimeUnit.NANOSECONDS, true);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	public boolean tryLockRead(long duration, @NotNull TimeUnit unit) throws InterruptedException {
+		return tryLock(READ, duration, unit, true);
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold the ReadLock
+	 */
+	public void unlockRead() {
+		unlock(READ);
+	}
+
+	public void lockWrite() {
+		try {
+			tryLock(WRITE, Long.MAX_VALUE, TimeUnit.NANOSECONDS, false);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException("Unable to reach as tryLock does not throw when !isInterruptable", e);
+		}
+	}
+
+	public void lockWriteInterruptibly() throws InterruptedException {
+		tryLock(WRITE, Long.MAX_VALUE, TimeUnit.NANOSECONDS, true);
+	}
+
+	public boolean tryLockWrite() {
+		try {
+			return tryLock(WRITE, 0L, TimeUnit.NANOSECONDS, true);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	public boolean tryLockWrite(long duration, @NotNull TimeUnit unit) throws InterruptedException {
+		return tryLock(WRITE, duration, unit, true);
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold the WriteLock
+	 */
+	public void unlockWrite() {
+		unlock(WRITE);
+	}
+
+	/**
+	 * Acquires the WriteLock while holding the ReadLock (same as
+	 * {@link UpgradableReadLock#upgrade()}), release both afterwards
+	 *
+	 * @throws IllegalStateException
+	 *             if the Lock is inflated and another {@link Thread} is upgrading
+	 * @throws InterruptedException
+	 *             if the current {@link Thread} is interrupted
+	 */
+	public void upgrade() throws InterruptedException {
+		if (!convert(READ, WRITE)) {
+			inflation.lock.readLock().upgrade();
+		}
+	}
+
+	/**
+	 * Acquires the ReadLock and then releases the WriteLock (same as
+	 * {@link DowngradableWriteLock#downgrade()})
+	 *
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold the WriteLock
+	 * @throws InterruptedException
+	 *             if the current {@link Thread} is interrupted
+	 */
+	public void downgrade() throws InterruptedException {
+		if (!convert(WRITE, READ)) {
+			inflation.lock.downgradeWriteLock();
+		}
+	}
+
+	/**
+	 * @param mode
+	 *            {@link #READ} or {@link #WRITE}
+	 * @return true if the Lock was acquired and false if time expired
+	 * @throws InterruptedException
+	 *             if `isInterruptable` was true and the current {@link Thread} was
+	 *             interrupted
+	 */
+	private boolean tryLock(int mode, long duration, TimeUnit unit, boolean isInterruptable)
+			throws InterruptedException {
+
+		Thread currentThread = Thread.currentThread();
+
+		/* Fast path, nobody holds it */
+		if (STATE.compareAndSet(this, 0, mode)) {
+			owner = currentThread;
+			return true;
+		}
+
+		long deadline = Deadline.after(duration, unit);
+
+		for (;;) {
+			int state = this.state;
+
+			if ((state & INFLATED) != 0) {
+				long remaining = Math.max(Deadline.remaining(deadline), 0L);
+				ReentreantUpgradeLock lock = inflation.lock;
+				return (mode == READ) ? lock.tryLockReadLock(remaining, TimeUnit.NANOSECONDS, isInterruptable)
+						: lock.tryLockWriteLock(remaining, TimeUnit.NANOSECONDS, isInterruptable);
+			}
+
+			if (state == 0) {
+				if (STATE.compareAndSet(this, 0, mode)) {
+					owner = currentThread;
+					return true;
+				}
+			} else if (owner == currentThread) {
+				/* Re-entering needs hold counts, which only the inflated Lock has */
+				inflate(currentThread);
+			} else if (!awaitInflation(currentThread, isInterruptable, deadline)) {
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * @param mode
+	 *            {@link #READ} or {@link #WRITE}
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold the Lock in that
+	 *             mode
+	 */
+	private void unlock(int mode) {
+		int state = this.state;
+
+		if ((state & INFLATED) != 0) {
+			if (mode == READ) {
+				inflation.lock.unlockReadLock();
+			} else {
+				inflation.lock.unlockWriteLock();
+			}
+			return;
+		}
+
+		if ((state & mode) == 0 || owner != Thread.currentThread()) {
+			throw new IllegalStateException("Cannot release Lock that is not owned by the thread");
+		}
+
+		/* Upgraded, only one of the two holds goes */
+		if ((state & HELD) == HELD) {
+			while (!STATE.compareAndSet(this, state, state & ~mode)) {
+				state = this.state;
+			}
+			return;
+		}
+
+		owner = null;
+		if (STATE.compareAndSet(this, mode, 0)) {
+			return;
+		}
+
+		/*
+		 * Someone is waiting (which is the only other change a thin hold allows), hand
+		 * everything over to the inflated Lock
+		 */
+		STATE.setVolatile(this, INFLATED);
+		inflation.wakeAll();
+	}
+
+	/**
+	 * Upgrades (adds {@link #WRITE}) or downgrades (swaps {@link #WRITE} for
+	 * {@link #READ}) a thin hold of the current {@link Thread}, inflating the Lock
+	 * if that would take a second hold of the same mode
+	 *
+	 * @return true if the hold was thin and has been converted, false if the Lock
+	 *         is inflated
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold the Lock in mode
+	 *             `from`
+	 */
+	private boolean convert(int from, int to) {
+		Thread currentThread = Thread.currentThread();
+
+		for (;;) {
+			int state = this.state;
+
+			if ((state & INFLATED) != 0) {
+				return false;
+			}
+
+			if ((state & from) == 0 || owner != currentThread) {
+				throw new IllegalStateException("Cannot convert Lock that is not owned by the thread");
+			}
+
+			if ((state & to) != 0) {
+				inflate(currentThread);
+				return false;
+			}
+
+			/* Only a waiter setting WAITING can race with the holder */
+			int converted = (from == READ) ? (state | to) : ((state & ~from) | to);
+			if (STATE.compareAndSet(this, state, converted)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Inflates the Lock on behalf of its thin holder, carrying its holds over to
+	 * the inflated Lock
+	 *
+	 * @param currentThread
+	 *            the thin holder
+	 */
+	private void inflate(Thread currentThread) {
+		Inflation inflation = inflation();
+		ReentreantUpgradeLock lock = inflation.lock;
+		int state = this.state;
+
+		/* Nobody else can use the inflated Lock before it is marked as such */
+		try {
+			if ((state & WRITE) != 0) {
+				lock.tryLockWriteLock(0L, TimeUnit.NANOSECONDS, false);
+			}
+			if ((state & READ) != 0) {
+				lock.tryLockReadLock(0L, TimeUnit.NANOSECONDS, false);
+			}
+		} catch (InterruptedException e) {
+			throw new IllegalStateException("Unable to reach as tryLock does not throw when !isInterruptable", e);
+		}
+
+		owner = null;
+		STATE.setVolatile(this, INFLATED);
+		inflation.wakeAll();
+	}
+
+	/**
+	 * Waits for the thin holder to release the Lock (which inflates it)
+	 *
+	 * @return true to try again, false if `deadline` passed
+	 * @throws InterruptedException
+	 *             if `isInterruptable` was true and the current {@link Thread} was
+	 *             interrupted
+	 */
+	private boolean awaitInflation(Thread currentThread, boolean isInterruptable, long deadline)
+			throws InterruptedException {
+
+		if (Deadline.isExpired(deadline)) {
+			return false;
+		}
+
+		Inflation inflation = inflation();
+		Waiter waiter = inflation.push(currentThread);
+
+		/* Pushed before WAITING is set, so a holder that sees it also wakes us */
+		for (;;) {
+			int state = this.state;
+			if ((state & INFLATED) != 0 || (state & HELD) == 0) {
+				/* Inflated or released in between, nothing to wait for */
+				cancel(inflation, waiter);
+				return true;
+			}
+
+			if ((state & WAITING) != 0 || STATE.compareAndSet(this, state, state | WAITING)) {
+				break;
+			}
+		}
+
+		boolean isInterrupted = false;
+		try {
+			while (!waiter.isWoken && (this.state & INFLATED) == 0) {
+				long remaining = Deadline.remaining(deadline);
+				if (remaining <= 0) {
+					cancel(inflation, waiter);
+					return false;
+				}
+
+				LockSupport.parkNanos(this, remaining);
+
+				if (Thread.interrupted()) {
+					if (isInterruptable) {
+						cancel(inflation, waiter);
+						throw new InterruptedException();
+					}
+					isInterrupted = true;
+				}
+			}
+		} finally {
+			if (isInterrupted) {
+				currentThread.interrupt();
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * Takes back a {@link Waiter} that gave up. If it was the last one the thin
+	 * holder is no longer asked to inflate the Lock, otherwise a timed out
+	 * {@link #tryLockWrite(long, TimeUnit)} etc. would inflate it for good with
+	 * nobody waiting.
+	 */
+	private void cancel(Inflation inflation, Waiter waiter) {
+		if (inflation.cancel(waiter)) {
+			return;
+		}
+
+		for (;;) {
+			int state = this.state;
+			if ((state & (INFLATED | WAITING)) != WAITING) {
+				return;
+			}
+
+			if (STATE.compareAndSet(this, state, state & ~WAITING)) {
+				break;
+			}
+		}
+
+		/*
+		 * Waiters pushed since may have seen WAITING before it was cleared, they have
+		 * to set it again
+		 */
+		if (inflation.hasWaiters()) {
+			inflation.wakeAll();
+		}
+	}
+
+	/**
+	 * @return the {@link #inflation}, created if there is none yet
+	 */
+	private Inflation inflation() {
+		Inflation inflation = this.inflation;
+		if (inflation != null) {
+			return inflation;
+		}
+
+		Inflation created = new Inflation();
+		Inflation witness = (Inflation) INFLATION.compareAndExchange(this, null, created);
+		return (witness == null) ? created : witness;
+	}
+
+	/**
+	 * Everything a Lock needs once more than one {@link Thread} uses it
+	 */
+	private static final class Inflation {
+
+		private final ReentreantUpgradeLock lock = ReentreantUpgradeLock.forVirtualThreads();
+
+		/**
+		 * The {@link Thread}s waiting for the thin holder, a stack since they are
+		 * all woken at once
+		 */
+		private final AtomicReference<Waiter> waiters = new AtomicReference<>();
+
+		private Waiter push(Thread thread) {
+			Waiter waiter = new Waiter(thread);
+			do {
+				waiter.next = waiters.get();
+			} while (!waiters.compareAndSet(waiter.next, waiter));
+
+			return waiter;
+		}
+
+		private void wakeAll() {
+			for (Waiter waiter = waiters.getAndSet(null); waiter != null; waiter = waiter.next) {
+				waiter.isWoken = true;
+				LockSupport.unpark(waiter.thread);
+			}
+		}
+
+		/**
+		 * Marks `waiter` as cancelled and pops the cancelled ones off the top
+		 *
+		 * @return true if any other {@link Waiter} is still waiting
+		 */
+		private boolean cancel(Waiter waiter) {
+			waiter.isCancelled = true;
+
+			Waiter head;
+			while ((head = waiters.get()) != null && head.isCancelled) {
+				waiters.compareAndSet(head, head.next);
+			}
+
+			return hasWaiters();
+		}
+
+		/**
+		 * @return true if any {@link Waiter} that hasn't been cancelled is on the
+		 *         stack
+		 */
+		private boolean hasWaiters() {
+			for (Waiter waiter = waiters.get(); waiter != null; waiter = waiter.next) {
+				if (!waiter.isCancelled) {
+					return true;
+				}
+			}
+
+			return false;
+		}
+	}
+
+	private static final class Waiter {
+
+		private final Thread thread;
+
+		private Waiter next;
+
+		/**
+		 * Set by {@link Inflation#wakeAll()}, the {@link Thread} has to try again
+		 */
+		private volatile boolean isWoken;
+
+		/**
+		 * The {@link Thread} gave up waiting
+		 */
+		private volatile boolean isCancelled;
+
+		private Waiter(Thread thread) {
+			this.thread = thread;
+		}
+	}
+
+	/**
+	 * A view of {@link CompactUpgradeLock#lockRead()} etc.
+	 */
+	private static final class ReadLock implements Lock {
+
+		private final CompactUpgradeLock parent;
+
+		private ReadLock(CompactUpgradeLock parent) {
+			this.parent = parent;
+		}
+
+		@Override
+		public void lock() {
+			parent.lockRead();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			parent.lockReadInterruptibly();
+		}
+
+		@Override
+		public boolean tryLock() {
+			return parent.tryLockRead();
+		}
+
+		@Override
+		public boolean tryLock(long arg0, @NotNull TimeUnit arg1) throws InterruptedException {
+			return parent.tryLockRead(arg0, arg1);
+		}
+
+		@Override
+		public void unlock() {
+			parent.unlockRead();
+		}
+
+		/**
+		 * Not supported, wait on a {@link Condition} of another Lock instead.
+		 * 
+		 * @throws UnsupportedOperationException
+		 *             always
+		 */
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported by a CompactUpgradeLock");
+		}
+	}
+
+	/**
+	 * A view of {@link CompactUpgradeLock#lockWrite()} etc.
+	 */
+	private static final class WriteLock implements Lock {
+
+		private final CompactUpgradeLock parent;
+
+		private WriteLock(CompactUpgradeLock parent) {
+			this.parent = parent;
+		}
+
+		@Override
+		public void lock() {
+			parent.lockWrite();
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			parent.lockWriteInterruptibly();
+		}
+
+		@Override
+		public boolean tryLock() {
+			return parent.tryLockWrite();
+		}
+
+		@Override
+		public boolean tryLock(long arg0, @NotNull TimeUnit arg1) throws InterruptedException {
+			return parent.tryLockWrite(arg0, arg1);
+		}
+
+		@Override
+		public void unlock() {
+			parent.unlockWrite();
+		}
+
+		/**
+		 * Not supported, wait on a {@link Condition} of another Lock instead.
+		 * 
+		 * @throws UnsupportedOperationException
+		 *             always
+		 */
+		@Override
+		public Condition newCondition() {
+			throw new UnsupportedOperationException("Conditions are not supported by a CompactUpgradeLock");
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Deadlines of timed Lock acquisitions, kept as a plain `long` (a
+ * {@link System#nanoTime()} value) so waiting never allocates.</br>
+ *
+ * Two values are reserved so the common cases never read the clock:
+ * {@link #NOW} for a single attempt (`tryLock()`, a zero or negative timeout)
+ * and {@link #NEVER} for `lock()` (or any timeout too long to ever pass). A
+ * real deadline that happens to land on one of them is moved by a
+ * nanosecond.</br>
+ *
+ * NOTE: {@link System#nanoTime()} may wrap, deadlines are only ever compared by
+ * subtracting the current time from them, never with `<` or `>`.
+ *
+ * @author jeffrey.carter
+ *
+ */
+final class Deadline {
+
+	/**
+	 * Never passes
+	 */
+	static final long NEVER = Long.MAX_VALUE;
+
+	/**
+	 * Has already passed, the Lock is only tried once
+	 */
+	static final long NOW = Long.MIN_VALUE;
+
+	/**
+	 * Longest timeout that is kept as an actual deadline (~146 years), anything
+	 * longer is {@link #NEVER}. Keeps `deadline - now` from overflowing.
+	 */
+	private static final long MAXIMUM_WAIT = Long.MAX_VALUE >>> 1;
+
+	private Deadline() {
+		super();
+	}
+
+	/**
+	 * @param duration
+	 *            how long to wait, saturated like {@link TimeUnit#toNanos(long)}
+	 * @param unit
+	 *            the {@link TimeUnit} of `duration`
+	 * @return the deadline `duration` from now, only reads the clock for a
+	 *         timeout that is neither {@link #NOW} nor {@link #NEVER}
+	 */
+	static long after(long duration, @NotNull TimeUnit unit) {
+		if (duration <= 0L) {
+			return NOW;
+		}
+
+		long nanos = unit.toNanos(duration);
+		if (nanos >= MAXIMUM_WAIT) {
+			return NEVER;
+		}
+
+		long deadline = System.nanoTime() + nanos;
+		return (deadline == NEVER || deadline == NOW) ? deadline ^ 1L : deadline;
+	}
+
+	/**
+	 * @param deadline
+	 *            from {@link #after(long, TimeUnit)}
+	 * @return how many nanos are left, 0 (or less) once it has passed and
+	 *         {@link Long#MAX_VALUE} for {@link #NEVER}
+	 */
+	static long remaining(long deadline) {
+		if (deadline == NEVER) {
+			return Long.MAX_VALUE;
+		}
+		if (deadline == NOW) {
+			return 0L;
+		}
+
+		return deadline - System.nanoTime();
+	}
+
+	/**
+	 * @param deadline
+	 *            from {@link #after(long, TimeUnit)}
+	 * @return true if it has passed
+	 */
+	static boolean isExpired(long deadline) {
+		return remaining(deadline) <= 0L;
+	}
+}
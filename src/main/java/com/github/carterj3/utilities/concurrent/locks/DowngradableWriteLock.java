@@ -56,8 +56,7 @@ public class DowngradableWriteLock implements Lock, AutoCloseable {
 	
 	@NotNull
 	public UpgradableReadLock downgrade() throws InterruptedException {
-		parent.tryLockReadLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS, true);
-		this.unlock();
+		parent.downgradeWriteLock();
 		return parent.readLock();
 		
 	}
@@ -0,0 +1,80 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+/**
+ * Decides who goes next when readers and writers are both waiting on a
+ * {@link ReentreantUpgradeLock}, see
+ * {@link ReentreantUpgradeLock.Builder#fairnessPolicy(FairnessPolicy)}.</br>
+ *
+ * NOTE: An upgrading {@link UpdateLock} owner always goes ahead of a waiting
+ * writer no matter the policy, the writer would otherwise wait on it forever.
+ *
+ * @author jeffrey.carter
+ *
+ */
+public enum FairnessPolicy {
+
+	/**
+	 * Readers and writers are served in the order they arrived, a run of waiting
+	 * readers is admitted together. New readers don't pass a waiting writer and
+	 * new writers don't pass waiting readers.
+	 */
+	FIFO,
+
+	/**
+	 * A waiting writer always goes before waiting readers and a new writer takes
+	 * the Lock whenever it is free. Bounds the wait of writers but readers can
+	 * starve under continuous writes.
+	 */
+	WRITER_PREFERRING,
+
+	/**
+	 * New readers are admitted as long as no write is in progress, even while a
+	 * writer is waiting for the readers to drain, and releasing the WriteLock
+	 * wakes every waiting reader. Best read throughput but writers can starve
+	 * under continuous reads.
+	 */
+	READER_PREFERRING,
+
+	/**
+	 * Readers and writers alternate. Releasing the WriteLock admits every reader
+	 * that was waiting for it while the next writer waits for that batch to
+	 * finish, and readers arriving after a writer started waiting go in the batch
+	 * after it. Neither side waits for more than one phase of the other.
+	 */
+	PHASE_FAIR;
+
+	/**
+	 * @return true if a new reader may take the ReadLock while others are
+	 *         waiting in line
+	 */
+	boolean isReaderBarging() {
+		return this == READER_PREFERRING;
+	}
+
+	/**
+	 * @return true if a new writer may take the WriteLock while others are
+	 *         waiting in line
+	 */
+	boolean isWriterBarging() {
+		return this == WRITER_PREFERRING;
+	}
+
+	/**
+	 * @param isQueued
+	 *            true if the reader waited in line for its turn
+	 * @return true if the reader may take the ReadLock while a writer owns the
+	 *         WriteLock but is still waiting for the readers to drain
+	 */
+	boolean isAdmittedWhileDraining(boolean isQueued) {
+		return (this == READER_PREFERRING) || (this == PHASE_FAIR && isQueued);
+	}
+
+	/**
+	 * @return true if any reader may be admitted while a writer is waiting for
+	 *         the readers to drain, so the writer has to check again once it
+	 *         starts writing
+	 */
+	boolean isAdmittingWhileDraining() {
+		return (this == READER_PREFERRING) || (this == PHASE_FAIR);
+	}
+}
@@ -0,0 +1,150 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A thread safe histogram of non-negative values (e.g. nanos) with power of two
+ * buckets, so recording is a single atomic increment and the memory used is
+ * fixed no matter how many values are recorded. Bucket `i` counts the values
+ * whose highest set bit is bit `i - 1` (bucket 0 only counts 0), percentiles
+ * are therefore only accurate to within a factor of two.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+public final class Histogram {
+
+	/**
+	 * One bucket for 0 and one for every bit of a positive long
+	 */
+	private static final int BUCKETS = Long.SIZE;
+
+	private AtomicLongArray counts;
+
+	public Histogram() {
+		this.counts = new AtomicLongArray(BUCKETS);
+	}
+
+	/**
+	 * @param value
+	 *            the value to count, negative values are counted as 0
+	 */
+	public void record(long value) {
+		counts.getAndIncrement(bucketOf(value));
+	}
+
+	/**
+	 * @return a copy of the current counts (NOTE: values recorded while copying
+	 *         may or may not be included)
+	 */
+	@NotNull
+	public Snapshot snapshot() {
+		long[] copy = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			copy[i] = counts.get(i);
+		}
+
+		return new Snapshot(copy);
+	}
+
+	@Override
+	public String toString() {
+		return snapshot().toString();
+	}
+
+	/**
+	 * @param value
+	 *            the value being counted
+	 * @return the index of the bucket that counts it
+	 */
+	private static int bucketOf(long value) {
+		return (value <= 0L) ? 0 : BUCKETS - Long.numberOfLeadingZeros(value);
+	}
+
+	/**
+	 * An immutable copy of a {@link Histogram}
+	 */
+	public static final class Snapshot {
+
+		private final long[] counts;
+
+		private final long count;
+
+		private Snapshot(long[] counts) {
+			this.counts = counts;
+
+			long count = 0L;
+			for (long bucket : counts) {
+				count += bucket;
+			}
+			this.count = count;
+		}
+
+		/**
+		 * @return how many values were recorded
+		 */
+		public long getCount() {
+			return count;
+		}
+
+		/**
+		 * @param percentile
+		 *            between 0 and 100 (inclusive)
+		 * @return the upper bound of the bucket containing the percentile, or 0 if
+		 *         nothing was recorded
+		 * @throws IllegalArgumentException
+		 *             if `percentile` is out of range
+		 */
+		public long getPercentile(double percentile) {
+			if (!(percentile >= 0.0 && percentile <= 100.0)) {
+				throw new IllegalArgumentException("percentile must be between 0 and 100");
+			}
+
+			long rank = (long) Math.ceil(count * (percentile / 100.0));
+			long seen = 0L;
+			for (int i = 0; i < counts.length; i++) {
+				seen += counts[i];
+				if (seen >= rank && seen > 0) {
+					return upperBoundOf(i);
+				}
+			}
+
+			return 0L;
+		}
+
+		/**
+		 * @return the upper bound of the highest non-empty bucket, or 0 if nothing
+		 *         was recorded
+		 */
+		public long getMaximum() {
+			for (int i = counts.length - 1; i > 0; i--) {
+				if (counts[i] > 0) {
+					return upperBoundOf(i);
+				}
+			}
+
+			return 0L;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("count: %d, p50: %d, p99: %d, p999: %d, max: %d", count, getPercentile(50.0),
+					getPercentile(99.0), getPercentile(99.9), getMaximum());
+		}
+
+		/**
+		 * @param bucket
+		 *            the index of a bucket
+		 * @return the largest value the bucket counts
+		 */
+		private static long upperBoundOf(int bucket) {
+			if (bucket == 0) {
+				return 0L;
+			}
+
+			return (bucket == BUCKETS - 1) ? Long.MAX_VALUE : (1L << bucket) - 1L;
+		}
+	}
+}
@@ -0,0 +1,49 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Fine-grained locking per key (e.g. per entity id) without a
+ * {@link ReentreantUpgradeLock} per key. Every key gets the same
+ * {@link UpgradableReadLock}, {@link DowngradableWriteLock} and
+ * {@link UpdateLock} semantics as a single Lock, including upgrading and
+ * downgrading.</br>
+ *
+ * Either hashes keys onto a fixed number of Locks
+ * ({@link StripedKeyedUpgradeLocks}, unrelated keys occasionally share a Lock)
+ * or creates a Lock per key on demand and reclaims it once it is idle
+ * ({@link PooledKeyedUpgradeLocks}, memory bounded by the keys currently in
+ * use).
+ *
+ * @author jeffrey.carter
+ *
+ * @param <K>
+ *            the type of the keys, with a consistent
+ *            {@link Object#hashCode()} & {@link Object#equals(Object)}
+ */
+public interface KeyedUpgradeLocks<K> {
+
+	/**
+	 * @param key
+	 *            what to lock
+	 * @return the {@link UpgradableReadLock} of the key
+	 */
+	@NotNull
+	UpgradableReadLock readLock(@NotNull K key);
+
+	/**
+	 * @param key
+	 *            what to lock
+	 * @return the {@link DowngradableWriteLock} of the key
+	 */
+	@NotNull
+	DowngradableWriteLock writeLock(@NotNull K key);
+
+	/**
+	 * @param key
+	 *            what to lock
+	 * @return the {@link UpdateLock} of the key
+	 */
+	@NotNull
+	UpdateLock updateLock(@NotNull K key);
+}
@@ -0,0 +1,101 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+/**
+ * The JFR events emitted by {@link LockMetrics}. Kept in their own class, only
+ * loaded once JFR is known to exist, so the library still runs on JVMs without
+ * JFR.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+final class LockEvents {
+
+	private LockEvents() {
+		super();
+	}
+
+	/**
+	 * @param lock
+	 *            the name of the Lock
+	 * @param mode
+	 *            how the Lock was being acquired
+	 * @param waited
+	 *            nanos spent waiting
+	 * @param isAcquired
+	 *            false if the wait timed out or was interrupted
+	 */
+	static void waited(String lock, LockMetrics.Mode mode, long waited, boolean isAcquired) {
+		WaitEvent event = new WaitEvent();
+		if (event.isEnabled()) {
+			event.lock = lock;
+			event.mode = mode.name();
+			event.waited = waited;
+			event.isAcquired = isAcquired;
+			event.commit();
+		}
+	}
+
+	/**
+	 * @param lock
+	 *            the name of the Lock
+	 * @param isRead
+	 *            true if the ReadLock was held, false for the WriteLock
+	 * @param held
+	 *            nanos the Lock was held
+	 */
+	static void held(String lock, boolean isRead, long held) {
+		HoldEvent event = new HoldEvent();
+		if (event.isEnabled()) {
+			event.lock = lock;
+			event.mode = isRead ? LockMetrics.Mode.READ.name() : LockMetrics.Mode.WRITE.name();
+			event.held = held;
+			event.commit();
+		}
+	}
+
+	@Name("com.github.carterj3.ReentreantUpgradeLockWait")
+	@Label("ReentreantUpgradeLock Wait")
+	@Description("A Thread had to wait for a ReentreantUpgradeLock")
+	@Category({ "Java Application", "Locks" })
+	static class WaitEvent extends Event {
+
+		@Label("Lock")
+		String lock;
+
+		@Label("Mode")
+		String mode;
+
+		@Label("Waited")
+		@Timespan(Timespan.NANOSECONDS)
+		long waited;
+
+		@Label("Acquired")
+		boolean isAcquired;
+	}
+
+	@Name("com.github.carterj3.ReentreantUpgradeLockHold")
+	@Label("ReentreantUpgradeLock Hold")
+	@Description("A Thread released a ReentreantUpgradeLock")
+	@Category({ "Java Application", "Locks" })
+	@Enabled(false)
+	static class HoldEvent extends Event {
+
+		@Label("Lock")
+		String lock;
+
+		@Label("Mode")
+		String mode;
+
+		@Label("Held")
+		@Timespan(Timespan.NANOSECONDS)
+		long held;
+	}
+}
@@ -0,0 +1,280 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * Opt-in contention metrics of a {@link ReentreantUpgradeLock}, see
+ * {@link ReentreantUpgradeLock.Builder#metrics(LockMetrics)}. A Lock built
+ * without one only pays for a null check, a Lock with one pays for a couple of
+ * {@link System#nanoTime()}s and shared counter updates per acquisition.</br>
+ *
+ * Waits and holds are also emitted as JFR events (`ReentreantUpgradeLock Wait`
+ * and the disabled by default `ReentreantUpgradeLock Hold`) when running on a
+ * JVM that has JFR.</br>
+ *
+ * NOTE: Reentrant acquisitions aren't recorded, only the first acquisition and
+ * the last release of each hold. An instance may be shared by several Locks to
+ * aggregate them.
+ *
+ * @author jeffrey.carter
+ *
+ */
+public class LockMetrics {
+
+	/**
+	 * How the Lock was being acquired
+	 */
+	public enum Mode {
+		READ, WRITE,
+
+		/**
+		 * Acquiring the WriteLock while already holding the ReadLock
+		 */
+		UPGRADE,
+
+		/**
+		 * Acquiring the {@link UpdateLock}
+		 */
+		UPDATE
+	}
+
+	/**
+	 * Whether the JFR classes exist, checked once so {@link LockEvents} is never
+	 * loaded on JVMs without them
+	 */
+	private static final boolean IS_JFR_AVAILABLE = isJfrAvailable();
+
+	private final String name;
+
+	/**
+	 * How long successful acquisitions waited, indexed by {@link Mode#ordinal()}
+	 */
+	private final Histogram[] waitTimes;
+
+	private final Histogram readHoldTimes;
+
+	private final Histogram writeHoldTimes;
+
+	private final Histogram queueDepths;
+
+	private final LongAdder timeouts;
+
+	private final LongAdder interrupts;
+
+	private final LongAdder downgrades;
+
+	/**
+	 * @param name
+	 *            identifies the Lock in {@link #toString()} and in JFR events
+	 */
+	public LockMetrics(@NotNull String name) {
+		this.name = Objects.requireNonNull(name, "name");
+
+		this.waitTimes = new Histogram[Mode.values().length];
+		for (int i = 0; i < waitTimes.length; i++) {
+			waitTimes[i] = new Histogram();
+		}
+		this.readHoldTimes = new Histogram();
+		this.writeHoldTimes = new Histogram();
+		this.queueDepths = new Histogram();
+
+		this.timeouts = new LongAdder();
+		this.interrupts = new LongAdder();
+		this.downgrades = new LongAdder();
+	}
+
+	@NotNull
+	public String getName() {
+		return name;
+	}
+
+	/**
+	 * @return a copy of everything recorded so far
+	 */
+	@NotNull
+	public Snapshot snapshot() {
+		return new Snapshot(this);
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + snapshot();
+	}
+
+	/**
+	 * @param mode
+	 *            how the Lock was acquired
+	 * @param waited
+	 *            nanos between asking for and getting the Lock
+	 */
+	void acquired(Mode mode, long waited) {
+		waitTimes[mode.ordinal()].record(waited);
+
+		if (IS_JFR_AVAILABLE && waited > 0L) {
+			LockEvents.waited(name, mode, waited, true);
+		}
+	}
+
+	/**
+	 * @param mode
+	 *            how the Lock was being acquired
+	 * @param waited
+	 *            nanos spent waiting before giving up (including `tryLock()`
+	 *            failing immediately)
+	 */
+	void timedOut(Mode mode, long waited) {
+		timeouts.increment();
+
+		if (IS_JFR_AVAILABLE) {
+			LockEvents.waited(name, mode, waited, false);
+		}
+	}
+
+	/**
+	 * @param mode
+	 *            how the Lock was being acquired
+	 * @param waited
+	 *            nanos spent waiting before being interrupted
+	 */
+	void interrupted(Mode mode, long waited) {
+		interrupts.increment();
+
+		if (IS_JFR_AVAILABLE) {
+			LockEvents.waited(name, mode, waited, false);
+		}
+	}
+
+	/**
+	 * @param isRead
+	 *            true if the ReadLock was released, false for the WriteLock
+	 * @param held
+	 *            nanos between acquiring and releasing the Lock
+	 */
+	void released(boolean isRead, long held) {
+		(isRead ? readHoldTimes : writeHoldTimes).record(held);
+
+		if (IS_JFR_AVAILABLE) {
+			LockEvents.held(name, isRead, held);
+		}
+	}
+
+	/**
+	 * @param depth
+	 *            how many {@link Thread}s were waiting, including the one that
+	 *            just started to
+	 */
+	void queued(int depth) {
+		queueDepths.record(depth);
+	}
+
+	void downgraded() {
+		downgrades.increment();
+	}
+
+	private static boolean isJfrAvailable() {
+		try {
+			Class.forName("jdk.jfr.Event");
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * An immutable copy of a {@link LockMetrics}, wait and hold times are in
+	 * nanos
+	 */
+	public static final class Snapshot {
+
+		private final Histogram.Snapshot[] waitTimes;
+
+		private final Histogram.Snapshot readHoldTimes;
+
+		private final Histogram.Snapshot writeHoldTimes;
+
+		private final Histogram.Snapshot queueDepths;
+
+		private final long timeouts;
+
+		private final long interrupts;
+
+		private final long downgrades;
+
+		private Snapshot(LockMetrics metrics) {
+			this.waitTimes = new Histogram.Snapshot[metrics.waitTimes.length];
+			for (int i = 0; i < waitTimes.length; i++) {
+				waitTimes[i] = metrics.waitTimes[i].snapshot();
+			}
+			this.readHoldTimes = metrics.readHoldTimes.snapshot();
+			this.writeHoldTimes = metrics.writeHoldTimes.snapshot();
+			this.queueDepths = metrics.queueDepths.snapshot();
+
+			this.timeouts = metrics.timeouts.sum();
+			this.interrupts = metrics.interrupts.sum();
+			this.downgrades = metrics.downgrades.sum();
+		}
+
+		/**
+		 * @param mode
+		 *            how the Lock was acquired
+		 * @return how long successful acquisitions waited
+		 */
+		@NotNull
+		public Histogram.Snapshot getWaitTimes(@NotNull Mode mode) {
+			return waitTimes[mode.ordinal()];
+		}
+
+		@NotNull
+		public Histogram.Snapshot getReadHoldTimes() {
+			return readHoldTimes;
+		}
+
+		@NotNull
+		public Histogram.Snapshot getWriteHoldTimes() {
+			return writeHoldTimes;
+		}
+
+		/**
+		 * @return how many {@link Thread}s were waiting each time one had to
+		 */
+		@NotNull
+		public Histogram.Snapshot getQueueDepths() {
+			return queueDepths;
+		}
+
+		/**
+		 * @return how many acquisitions gave up, including `tryLock()` failing
+		 *         immediately
+		 */
+		public long getTimeouts() {
+			return timeouts;
+		}
+
+		public long getInterrupts() {
+			return interrupts;
+		}
+
+		/**
+		 * @return how many times the ReadLock was upgraded to the WriteLock
+		 */
+		public long getUpgrades() {
+			return waitTimes[Mode.UPGRADE.ordinal()].getCount();
+		}
+
+		public long getDowngrades() {
+			return downgrades;
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"readWait: [%s], writeWait: [%s], upgradeWait: [%s], updateWait: [%s], readHold: [%s], writeHold: [%s], queueDepth: [%s], timeouts: %d, interrupts: %d, downgrades: %d",
+					waitTimes[Mode.READ.ordinal()], waitTimes[Mode.WRITE.ordinal()],
+					waitTimes[Mode.UPGRADE.ordinal()], waitTimes[Mode.UPDATE.ordinal()], readHoldTimes, writeHoldTimes, queueDepths, timeouts,
+					interrupts, downgrades);
+		}
+	}
+}
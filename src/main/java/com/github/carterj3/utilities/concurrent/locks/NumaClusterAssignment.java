@@ -0,0 +1,155 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A {@link ClusterAssignment} with one cluster per NUMA node, read from
+ * `/sys/devices/system/node` once. A {@link Thread}'s cluster is the node of
+ * the CPU it was running on (`/proc/thread-self/stat`) the first time it asked
+ * and is then kept for good, reading it again on every acquisition would cost
+ * far more than a remote handoff.</br>
+ *
+ * NOTE: Only as accurate as the {@link Thread}s are pinned, a {@link Thread}
+ * the scheduler moves to another socket keeps its old cluster. Anything that
+ * can't be read (not Linux, no NUMA, ...) ends up as a single cluster.
+ *
+ * @author jeffrey.carter
+ *
+ */
+final class NumaClusterAssignment implements ClusterAssignment {
+
+	static final NumaClusterAssignment INSTANCE = new NumaClusterAssignment(Paths.get("/sys/devices/system/node"),
+			Paths.get("/proc/thread-self/stat"));
+
+	/**
+	 * The node of every CPU, empty when there is only one node
+	 */
+	private int[] nodeOfCpu;
+
+	private int clusters;
+
+	/**
+	 * Where the current {@link Thread}'s CPU is read from
+	 */
+	private Path threadStat;
+
+	private ThreadLocal<Integer> currentCluster;
+
+	/**
+	 * @param nodes
+	 *            the directory with a `node<n>/cpulist` per node
+	 * @param threadStat
+	 *            the stat file of the current {@link Thread}
+	 */
+	NumaClusterAssignment(@NotNull Path nodes, @NotNull Path threadStat) {
+		int[] nodeOfCpu;
+		try {
+			nodeOfCpu = readNodes(nodes);
+		} catch (IOException | RuntimeException e) {
+			nodeOfCpu = new int[0];
+		}
+
+		int clusters = 1;
+		for (int node : nodeOfCpu) {
+			clusters = Math.max(clusters, node + 1);
+		}
+
+		this.nodeOfCpu = (clusters == 1) ? new int[0] : nodeOfCpu;
+		this.clusters = clusters;
+		this.threadStat = threadStat;
+		this.currentCluster = ThreadLocal.withInitial(this::readCurrentCluster);
+	}
+
+	@Override
+	public int clusters() {
+		return clusters;
+	}
+
+	@Override
+	public int currentCluster() {
+		return (clusters == 1) ? 0 : currentCluster.get();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("numaNodes: %d", clusters);
+	}
+
+	/**
+	 * @return the node of the CPU the current {@link Thread} is running on, 0 if
+	 *         it can't be read
+	 */
+	private int readCurrentCluster() {
+		try {
+			int cpu = parseCpu(new String(Files.readAllBytes(threadStat), StandardCharsets.US_ASCII));
+			return (cpu >= 0 && cpu < nodeOfCpu.length) ? nodeOfCpu[cpu] : 0;
+		} catch (IOException | RuntimeException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * @param stat
+	 *            the contents of a `/proc/<pid>/task/<tid>/stat` file
+	 * @return the CPU the task last ran on (field 39)
+	 */
+	static int parseCpu(@NotNull String stat) {
+		/* The command (field 2) is in parentheses and may contain spaces */
+		String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+		return Integer.parseInt(fields[39 - 3]);
+	}
+
+	/**
+	 * @param list
+	 *            a cpulist, e.g. `0-3,8-11`
+	 * @return the CPUs in the list
+	 */
+	static int[] parseCpuList(@NotNull String list) {
+		int[] cpus = new int[0];
+		for (String range : list.trim().split(",")) {
+			if (range.isEmpty()) {
+				continue;
+			}
+
+			int dash = range.indexOf('-');
+			int from = Integer.parseInt((dash < 0) ? range : range.substring(0, dash));
+			int to = (dash < 0) ? from : Integer.parseInt(range.substring(dash + 1));
+
+			int offset = cpus.length;
+			cpus = Arrays.copyOf(cpus, offset + (to - from + 1));
+			for (int cpu = from; cpu <= to; cpu++) {
+				cpus[offset + cpu - from] = cpu;
+			}
+		}
+
+		return cpus;
+	}
+
+	private static int[] readNodes(Path nodes) throws IOException {
+		int[] nodeOfCpu = new int[0];
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(nodes, "node[0-9]*")) {
+			for (Path node : stream) {
+				int id = Integer.parseInt(node.getFileName().toString().substring("node".length()));
+				String cpuList = new String(Files.readAllBytes(node.resolve("cpulist")), StandardCharsets.US_ASCII);
+
+				for (int cpu : parseCpuList(cpuList)) {
+					if (cpu >= nodeOfCpu.length) {
+						nodeOfCpu = Arrays.copyOf(nodeOfCpu, cpu + 1);
+					}
+					nodeOfCpu[cpu] = id;
+				}
+			}
+		}
+
+		return nodeOfCpu;
+	}
+}
@@ -0,0 +1,24 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link WaitStrategy} that parks straight away. Never burns CPU on a
+ * waiting {@link Thread} but every wait pays for a park & unpark, prefer
+ * {@link SpinningWaitStrategy} when the Lock is only held briefly.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+public class ParkingWaitStrategy implements WaitStrategy {
+
+	@Override
+	public void pause(Object blocker, int attempt, long remaining) {
+		LockSupport.parkNanos(blocker, remaining);
+	}
+
+	@Override
+	public void waited(int attempts, boolean isAcquired) {
+		/* Nothing to adapt */
+	}
+}
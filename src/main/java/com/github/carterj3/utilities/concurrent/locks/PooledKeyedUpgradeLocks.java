@@ -0,0 +1,522 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * {@link KeyedUpgradeLocks} that gives every key in use its own Lock. A Lock is
+ * created (or taken from a small pool) when its key is first locked and is
+ * reclaimed into the pool as soon as nobody holds or waits for it, so memory
+ * only grows with the number of keys locked at the same time.</br>
+ *
+ * Every hold (and every wait) pins the key's Lock, a Lock is only reclaimed
+ * once its last pin is released so two {@link Thread}s never end up with
+ * different Locks for the same key.</br>
+ *
+ * NOTE: The views returned for a key resolve its Lock on every call, so unlike
+ * a single {@link ReentreantUpgradeLock} they cost a map lookup per
+ * acquisition and a new view per call.
+ *
+ * @author jeffrey.carter
+ *
+ * @param <K>
+ *            the type of the keys
+ */
+public class PooledKeyedUpgradeLocks<K> implements KeyedUpgradeLocks<K> {
+
+	/**
+	 * How many slots of the pool are tried before giving up on it
+	 */
+	private static final int MAXIMUM_PROBES = 8;
+
+	private static final Acquisition READ = ReentreantUpgradeLock::tryLockReadLock;
+
+	private static final Acquisition WRITE = ReentreantUpgradeLock::tryLockWriteLock;
+
+	private static final Acquisition UPDATE = ReentreantUpgradeLock::tryLockUpdateLock;
+
+	private static final Consumer<ReentreantUpgradeLock> UNLOCK_READ = ReentreantUpgradeLock::unlockReadLock;
+
+	private static final Consumer<ReentreantUpgradeLock> UNLOCK_WRITE = ReentreantUpgradeLock::unlockWriteLock;
+
+	private static final Consumer<ReentreantUpgradeLock> UNLOCK_UPDATE = ReentreantUpgradeLock::unlockUpdateLock;
+
+	/**
+	 * The pinned Lock of every key in use
+	 */
+	private ConcurrentHashMap<K, Entry<K>> entries;
+
+	/**
+	 * Reclaimed {@link Entry}s, an empty slot is null
+	 */
+	private AtomicReferenceArray<Entry<K>> pool;
+
+	private Supplier<ReentreantUpgradeLock> lockFactory;
+
+	/**
+	 * Pools up to four Locks per available processor
+	 */
+	public PooledKeyedUpgradeLocks() {
+		this(Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	/**
+	 * @param maximumPooled
+	 *            how many idle Locks are kept for reuse, 0 to not pool
+	 * @throws IllegalArgumentException
+	 *             if `maximumPooled` is negative
+	 */
+	public PooledKeyedUpgradeLocks(int maximumPooled) {
+		this(maximumPooled, ReentreantUpgradeLock::forVirtualThreads);
+	}
+
+	/**
+	 * @param maximumPooled
+	 *            how many idle Locks are kept for reuse, 0 to not pool
+	 * @param lockFactory
+	 *            creates each Lock, by default
+	 *            {@link ReentreantUpgradeLock#forVirtualThreads()} so the Locks
+	 *            don't each have a {@link ThreadLocal}
+	 * @throws IllegalArgumentException
+	 *             if `maximumPooled` is negative
+	 */
+	public PooledKeyedUpgradeLocks(int maximumPooled, @NotNull Supplier<ReentreantUpgradeLock> lockFactory) {
+		if (maximumPooled < 0) {
+			throw new IllegalArgumentException("maximumPooled must not be negative");
+		}
+
+		this.entries = new ConcurrentHashMap<>();
+		this.pool = new AtomicReferenceArray<>(maximumPooled);
+		this.lockFactory = Objects.requireNonNull(lockFactory, "lockFactory");
+	}
+
+	@NotNull
+	@Override
+	public UpgradableReadLock readLock(@NotNull K key) {
+		return new PinnedReadLock<>(this, Objects.requireNonNull(key, "key"));
+	}
+
+	@NotNull
+	@Override
+	public DowngradableWriteLock writeLock(@NotNull K key) {
+		return new PinnedWriteLock<>(this, Objects.requireNonNull(key, "key"));
+	}
+
+	@NotNull
+	@Override
+	public UpdateLock updateLock(@NotNull K key) {
+		return new PinnedUpdateLock<>(this, Objects.requireNonNull(key, "key"));
+	}
+
+	/**
+	 * @return how many keys currently have a Lock, only meant for diagnostics
+	 */
+	public int size() {
+		return entries.size();
+	}
+
+	@Override
+	public String toString() {
+		int pooled = 0;
+		for (int i = 0; i < pool.length(); i++) {
+			if (pool.get(i) != null) {
+				pooled++;
+			}
+		}
+
+		return String.format("keys: %d, pooled: %d", entries.size(), pooled);
+	}
+
+	/**
+	 * Pins the key's Lock and acquires it, the pin is kept only if the Lock was
+	 * acquired
+	 *
+	 * @param acquisition
+	 *            which Lock of the key to acquire
+	 * @return true if the Lock was acquired and false if time expired
+	 * @throws InterruptedException
+	 *             if `isInterruptable` was true and the current {@link Thread} was
+	 *             interrupted
+	 */
+	private boolean acquire(K key, Acquisition acquisition, long duration, TimeUnit unit, boolean isInterruptable)
+			throws InterruptedException {
+
+		Entry<K> entry = pin(key);
+		boolean isAcquired = false;
+		try {
+			isAcquired = acquisition.acquire(entry.lock, duration, unit, isInterruptable);
+			return isAcquired;
+		} finally {
+			if (!isAcquired) {
+				unpin(entry);
+			}
+		}
+	}
+
+	/**
+	 * Releases one hold of the key's Lock and its pin
+	 *
+	 * @param release
+	 *            which Lock of the key to release
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold that Lock
+	 */
+	private void release(K key, Consumer<ReentreantUpgradeLock> release) {
+		Entry<K> entry = pinned(key);
+		release.accept(entry.lock);
+		unpin(entry);
+	}
+
+	/**
+	 * @return the {@link Entry} of a key the current {@link Thread} holds
+	 * @throws IllegalStateException
+	 *             if nobody holds the key
+	 */
+	private Entry<K> pinned(K key) {
+		Entry<K> entry = entries.get(key);
+		if (entry == null) {
+			throw new IllegalStateException("Cannot release Lock that is not owned by the thread");
+		}
+
+		return entry;
+	}
+
+	/**
+	 * @return the key's {@link Entry}, created if there is none, which won't be
+	 *         reclaimed until it is {@link #unpin(Entry)}ed
+	 */
+	private Entry<K> pin(K key) {
+		for (;;) {
+			Entry<K> entry = entries.get(key);
+			if (entry == null) {
+				Entry<K> created = obtain(key);
+				entry = entries.putIfAbsent(key, created);
+				if (entry == null) {
+					return created;
+				}
+
+				/*
+				 * A pooled Entry may still be pinned by a Thread that found it in the map
+				 * before it was reclaimed, the last of the two to unpin it reclaims it
+				 */
+				unpin(created);
+			}
+
+			if (!entry.tryPin()) {
+				/* Its last pin was just released, wait for it to leave the map */
+				Thread.onSpinWait();
+				continue;
+			}
+
+			/*
+			 * Reclaimed and reused (maybe even for the same key) in between, only the
+			 * Entry in the map is the key's Lock
+			 */
+			if (!key.equals(entry.key) || entries.get(key) != entry) {
+				unpin(entry);
+				continue;
+			}
+
+			return entry;
+		}
+	}
+
+	private void unpin(Entry<K> entry) {
+		if (entry.pins.decrementAndGet() == 0) {
+			entries.remove(entry.key, entry);
+			reclaim(entry);
+		}
+	}
+
+	/**
+	 * @return a pooled (or new) {@link Entry} for the key, already pinned once
+	 */
+	private Entry<K> obtain(K key) {
+		Entry<K> entry = null;
+
+		int start = (int) (Thread.currentThread().getId() & Integer.MAX_VALUE);
+		for (int i = 0; i < Math.min(MAXIMUM_PROBES, pool.length()) && entry == null; i++) {
+			entry = pool.getAndSet((start + i) % pool.length(), null);
+		}
+
+		if (entry == null) {
+			entry = new Entry<>(Objects.requireNonNull(lockFactory.get(), "lockFactory.get()"));
+		}
+
+		entry.key = key;
+		entry.pins.set(1);
+		return entry;
+	}
+
+	/**
+	 * Returns an {@link Entry} whose last pin was just released to the pool, or
+	 * drops it if the pool is full
+	 */
+	private void reclaim(Entry<K> entry) {
+		entry.key = null;
+
+		int start = (int) (Thread.currentThread().getId() & Integer.MAX_VALUE);
+		for (int i = 0; i < Math.min(MAXIMUM_PROBES, pool.length()); i++) {
+			if (pool.compareAndSet((start + i) % pool.length(), null, entry)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * One of {@link ReentreantUpgradeLock}'s `tryLock...Lock` methods
+	 */
+	@FunctionalInterface
+	private interface Acquisition {
+
+		boolean acquire(ReentreantUpgradeLock lock, long duration, TimeUnit unit, boolean isInterruptable)
+				throws InterruptedException;
+	}
+
+	/**
+	 * A Lock and the key it currently belongs to
+	 */
+	private static final class Entry<K> {
+
+		private final ReentreantUpgradeLock lock;
+
+		/**
+		 * How many holds and waits use the Lock, 0 once it is being (or has been)
+		 * reclaimed. Written after {@link #key} so a pin always sees the key.
+		 */
+		private final AtomicInteger pins;
+
+		private K key;
+
+		private Entry(ReentreantUpgradeLock lock) {
+			this.lock = lock;
+			this.pins = new AtomicInteger();
+			this.key = null;
+		}
+
+		/**
+		 * @return true if the Lock is now pinned (for whatever {@link #key} is),
+		 *         false if it has already been reclaimed
+		 */
+		private boolean tryPin() {
+			int pins;
+			do {
+				pins = this.pins.get();
+				if (pins == 0) {
+					return false;
+				}
+			} while (!this.pins.compareAndSet(pins, pins + 1));
+
+			return true;
+		}
+	}
+
+	/**
+	 * The {@link UpgradableReadLock} of a key, every hold pins the key's Lock
+	 */
+	private static final class PinnedReadLock<K> extends UpgradableReadLock {
+
+		private final PooledKeyedUpgradeLocks<K> locks;
+
+		private final K key;
+
+		private PinnedReadLock(PooledKeyedUpgradeLocks<K> locks, K key) {
+			/* Resolves the key's Lock on every call instead */
+			super(null);
+
+			this.locks = locks;
+			this.key = key;
+		}
+
+		@Override
+		public void lock() {
+			try {
+				locks.acquire(key, READ, Long.MAX_VALUE, TimeUnit.NANOSECONDS, false);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(
+						"Unable to reach as tryLockReadLock does not throw when !isInterruptable", e);
+			}
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			locks.acquire(key, READ, Long.MAX_VALUE, TimeUnit.NANOSECONDS, true);
+		}
+
+		@Override
+		public boolean tryLock() {
+			try {
+				return locks.acquire(key, READ, 0L, TimeUnit.NANOSECONDS, true);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		@Override
+		public boolean tryLock(long arg0, @NotNull TimeUnit arg1) throws InterruptedException {
+			return locks.acquire(key, READ, arg0, arg1, true);
+		}
+
+		@Override
+		public void unlock() {
+			locks.release(key, UNLOCK_READ);
+		}
+
+		@NotNull
+		@Override
+		public DowngradableWriteLock upgrade() throws InterruptedException {
+			/* The WriteLock is a hold of its own */
+			if (!locks.acquire(key, WRITE, Long.MAX_VALUE, TimeUnit.NANOSECONDS, true)) {
+				throw new IllegalStateException("Cannot upgrade while another thread holds the UpdateLock");
+			}
+
+			return new PinnedWriteLock<>(locks, key);
+		}
+	}
+
+	/**
+	 * The {@link DowngradableWriteLock} of a key, every hold pins the key's Lock
+	 */
+	private static final class PinnedWriteLock<K> extends DowngradableWriteLock {
+
+		private final PooledKeyedUpgradeLocks<K> locks;
+
+		private final K key;
+
+		private PinnedWriteLock(PooledKeyedUpgradeLocks<K> locks, K key) {
+			/* Resolves the key's Lock on every call instead */
+			super(null);
+
+			this.locks = locks;
+			this.key = key;
+		}
+
+		@Override
+		public void lock() {
+			try {
+				locks.acquire(key, WRITE, Long.MAX_VALUE, TimeUnit.NANOSECONDS, false);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(
+						"Unable to reach as tryLockWriteLock does not throw when !isInterruptable", e);
+			}
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			locks.acquire(key, WRITE, Long.MAX_VALUE, TimeUnit.NANOSECONDS, true);
+		}
+
+		@Override
+		public boolean tryLock() {
+			try {
+				return locks.acquire(key, WRITE, 0L, TimeUnit.NANOSECONDS, true);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		@Override
+		public boolean tryLock(long arg0, @NotNull TimeUnit arg1) throws InterruptedException {
+			return locks.acquire(key, WRITE, arg0, arg1, true);
+		}
+
+		@Override
+		public void unlock() {
+			locks.release(key, UNLOCK_WRITE);
+		}
+
+		@NotNull
+		@Override
+		public UpgradableReadLock downgrade() throws InterruptedException {
+			/* The ReadLock takes over the pin of the WriteLock */
+			locks.pinned(key).lock.downgradeWriteLock();
+			return new PinnedReadLock<>(locks, key);
+		}
+	}
+
+	/**
+	 * The {@link UpdateLock} of a key, every hold pins the key's Lock
+	 */
+	private static final class PinnedUpdateLock<K> extends UpdateLock {
+
+		private final PooledKeyedUpgradeLocks<K> locks;
+
+		private final K key;
+
+		private PinnedUpdateLock(PooledKeyedUpgradeLocks<K> locks, K key) {
+			/* Resolves the key's Lock on every call instead */
+			super(null);
+
+			this.locks = locks;
+			this.key = key;
+		}
+
+		@Override
+		public void lock() {
+			boolean isAcquired;
+			try {
+				isAcquired = locks.acquire(key, UPDATE, Long.MAX_VALUE, TimeUnit.NANOSECONDS, false);
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(
+						"Unable to reach as tryLockUpdateLock does not throw when !isInterruptable", e);
+			}
+
+			if (!isAcquired) {
+				throw new IllegalStateException(NOT_ACQUIRED);
+			}
+		}
+
+		@Override
+		public void lockInterruptibly() throws InterruptedException {
+			if (!locks.acquire(key, UPDATE, Long.MAX_VALUE, TimeUnit.NANOSECONDS, true)) {
+				throw new IllegalStateException(NOT_ACQUIRED);
+			}
+		}
+
+		@Override
+		public boolean tryLock() {
+			try {
+				return locks.acquire(key, UPDATE, 0L, TimeUnit.NANOSECONDS, true);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		}
+
+		@Override
+		public boolean tryLock(long arg0, @NotNull TimeUnit arg1) throws InterruptedException {
+			return locks.acquire(key, UPDATE, arg0, arg1, true);
+		}
+
+		@Override
+		public void unlock() {
+			locks.release(key, UNLOCK_UPDATE);
+		}
+
+		@NotNull
+		@Override
+		public DowngradableWriteLock upgrade() throws InterruptedException {
+			Entry<K> entry = locks.pin(key);
+			boolean isUpgraded = false;
+			try {
+				entry.lock.upgradeUpdateLock();
+				isUpgraded = true;
+			} finally {
+				if (!isUpgraded) {
+					locks.unpin(entry);
+				}
+			}
+
+			return new PinnedWriteLock<>(locks, key);
+		}
+	}
+}
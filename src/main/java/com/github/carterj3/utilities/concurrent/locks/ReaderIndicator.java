@@ -0,0 +1,50 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+/**
+ * Keeps track of how many {@link Thread}s currently hold the ReadLock of a
+ * single {@link ReentreantUpgradeLock}. Each {@link Thread} is only counted
+ * once no matter how many times it holds the ReadLock.</br>
+ * 
+ * {@link #arrive()} and {@link #depart()} must act as full fences, a reader
+ * arrives and then checks for a writer while a writer announces itself and
+ * then checks for readers, so at least one of the two always sees the
+ * other.</br>
+ * 
+ * NOTE: An instance belongs to exactly one Lock, don't share them.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+public interface ReaderIndicator {
+
+	/**
+	 * Counts the current {@link Thread} as a reader
+	 * 
+	 * @return where it was counted, to pass to {@link #depart(int)} (never
+	 *         negative)
+	 */
+	int arrive();
+
+	/**
+	 * Stops counting the current {@link Thread} as a reader, must be called from
+	 * the same {@link Thread} that called {@link #arrive()}
+	 * 
+	 * @param slot
+	 *            what {@link #arrive()} returned, so the reader leaves the same
+	 *            counter it arrived at even if it would pick another one now
+	 */
+	void depart(int slot);
+
+	/**
+	 * @param ownReaders
+	 *            how many of the readers belong to the calling {@link Thread}
+	 *            (either 0 or 1)
+	 * @return true if any {@link Thread} other than the caller is a reader
+	 */
+	boolean hasOtherReaders(long ownReaders);
+
+	/**
+	 * @return a snapshot of the number of readers, only meant for diagnostics
+	 */
+	long sum();
+}
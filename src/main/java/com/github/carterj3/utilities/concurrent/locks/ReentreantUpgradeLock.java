@@ -1,6 +1,11 @@
 package com.github.carterj3.utilities.concurrent.locks;
 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
@@ -9,16 +14,23 @@ import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
 
 import javax.validation.constraints.NotNull;
 
-import com.github.carterj3.utilities.NumberUtils;
-
 /**
  * Implementation similar to {@link ReentrantReadWriteLock} but is capable of
  * converting a {@link ReadLock} into a {@link WriteLock} as well as acquiring
  * {@link ReadLock}s while that {@link Thread} holds a {@link WriteLock} and
- * vice-versa.
+ * vice-versa.</br>
+ * 
+ * Only one {@link Thread} may upgrade at a time, otherwise two upgraders would
+ * each wait for the other's {@link ReadLock} to drain. A {@link Thread} that
+ * intends to write should take the {@link UpdateLock} (see
+ * {@link #updateLock()}), which waits in line for its turn to upgrade while
+ * still letting plain readers in. Upgrading a plain {@link ReadLock} only
+ * succeeds when no other {@link Thread} holds the {@link UpdateLock}.
  * 
  * @author jeffrey.carter
  *
@@ -26,43 +38,156 @@ import com.github.carterj3.utilities.NumberUtils;
 public class ReentreantUpgradeLock implements ReadWriteLock {
 
 	/**
-	 * Node pointing to the last "Thread" in the tail so when future Threads attempt
-	 * to acquire the Lock they can place themselves last in line easily.
+	 * The first value of {@link #writeVersion}, leaves 0 free to mean an invalid
+	 * stamp
+	 */
+	private static final long ORIGIN = 2L;
+
+	/**
+	 * The {@link HoldCounter}s of every Lock created by
+	 * {@link #forVirtualThreads()}, one small array per {@link Thread} shared by
+	 * all of those Locks. A {@link Thread} only holds a handful of Locks at once
+	 * so a linear scan is cheap and an idle counter is reused for the next Lock.
+	 */
+	private static final ThreadLocal<HoldCounter[]> SHARED_HOLD_COUNTERS = ThreadLocal
+			.withInitial(() -> new HoldCounter[4]);
+
+	/**
+	 * {@link #asyncWaiters}, so it can be created on first use without an extra
+	 * object per Lock
 	 */
-	private AtomicReference<LockNode> tail;
+	private static final VarHandle ASYNC_WAITERS;
+	static {
+		try {
+			ASYNC_WAITERS = MethodHandles.lookup().findVarHandle(ReentreantUpgradeLock.class, "asyncWaiters",
+					AsyncWaiters.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
 
 	/**
-	 * Node pointing to the current "Thread" that has the Lock so that when it gets
-	 * unlocked it can awake the Thread after it.</br>
+	 * {@link Thread}s that could not acquire the Lock immediately, in the order
+	 * they arrived. Only the head of the queue attempts to acquire the Lock so
+	 * waiters are served FIFO.</br>
 	 * 
-	 * NOTE: Each "Thread" puts themselves into the queue before doing any
-	 * operations so if a bunch of ReadLock's are acquired current will point to
-	 * "Thread"s that are going to finish acquiring the Lock very shortly but
-	 * current will keep getting updated so it'll be correct.
+	 * NOTE: Uncontended acquisitions never touch the queue, it is only checked for
+	 * emptiness so that new readers don't barge past a waiting writer.
+	 */
+	private WaitQueue waiters;
+
+	/**
+	 * {@link Thread}s waiting for the {@link UpdateLock}, separate from
+	 * {@link #waiters} since they don't hold (or wait for) a {@link ReadLock}
+	 * while in line
+	 */
+	private WaitQueue updateWaiters;
+
+	/**
+	 * Mutations published by {@link #combine(Object, Consumer)}, applied by
+	 * whoever releases the {@link WriteLock} next
+	 */
+	private CombiningQueue combining;
+
+	/**
+	 * Acquisitions made through {@link #readLockAsync(Executor)} etc., null until
+	 * the first one
+	 */
+	private volatile AsyncWaiters asyncWaiters;
+
+	/**
+	 * The {@link Thread}s that currently hold a {@link ReadLock} (NOTE: each
+	 * {@link Thread} is only counted once no matter how many times it holds the
+	 * Lock)
+	 */
+	private ReaderIndicator readerIndicator;
+
+	/**
+	 * How a {@link Thread} that can't acquire the Lock straight away waits
+	 */
+	private WaitStrategy waitStrategy;
+
+	/**
+	 * Who goes next when both readers and writers are waiting
+	 */
+	private FairnessPolicy fairnessPolicy;
+
+	/**
+	 * Where contention is recorded, null unless the Lock was built with
+	 * {@link Builder#metrics(LockMetrics)}
 	 */
-	private LockNode current;
+	private LockMetrics metrics;
 
 	/**
-	 * The total number of owners of a {@link ReadLock} (NOTE: each {@link Thread}
-	 * can hold multiple times)
+	 * How many times each {@link Thread} has currently acquired the
+	 * {@link ReadLock}, look it up through {@link #readHoldCounter()} (NOTE: null
+	 * when the Lock uses {@link #SHARED_HOLD_COUNTERS} instead)
 	 */
-	private AtomicLong numberOfReadLockOwners;
+	private ThreadLocal<HoldCounter> readLockReentrantCounter;
 
 	/**
-	 * How many times this {@link Thread} has currently acquired the
-	 * {@link ReadLock}
+	 * The {@link HoldCounter} of the last {@link Thread} to look theirs up, saves
+	 * the {@link ThreadLocal} lookup when the same {@link Thread} locks and
+	 * unlocks.</br>
+	 * 
+	 * NOTE: Deliberately not volatile, a stale value only costs a
+	 * {@link ThreadLocal} lookup and {@link HoldCounter#threadId} is final so a
+	 * racing {@link Thread} never mistakes another's counter for its own.
 	 */
-	private ThreadLocal<Long> readLockReentrantCounter;
+	private HoldCounter cachedHoldCounter;
 
 	/**
-	 * What {@link Thread} currently owns the {@link WriteLock}
+	 * What {@link Thread} currently owns the {@link WriteLock}.</br>
+	 * 
+	 * NOTE: The owner is set before the remaining readers have drained, so while
+	 * it is non-null no new readers are admitted.
 	 */
 	private AtomicReference<Thread> writeLockOwner;
 
 	/**
-	 * How many times this {@link Thread} has current acquired the {@link ReadLock}
+	 * How many times the {@link #writeLockOwner} has currently acquired the
+	 * {@link WriteLock} (NOTE: only the owner reads or writes it, setting and
+	 * clearing the owner publishes it to the next one)
+	 */
+	private long writeLockReentrantCounter;
+
+	/**
+	 * When (in nanos) the {@link #writeLockOwner} acquired the {@link WriteLock},
+	 * only set when {@link #metrics} is
+	 */
+	private long writeLockAcquiredAt;
+
+	/**
+	 * What {@link Thread} currently owns the {@link UpdateLock}, i.e. is the only
+	 * one allowed to upgrade.</br>
+	 * 
+	 * NOTE: Also set while a plain {@link ReadLock} holder is upgraded, see
+	 * {@link #tryLockWriteLockUnmeasured(long, TimeUnit, boolean)}.
+	 */
+	private AtomicReference<Thread> updateLockOwner;
+
+	/**
+	 * How many times the {@link #updateLockOwner} has currently acquired the
+	 * {@link UpdateLock}, 0 while it only owns it to upgrade a {@link ReadLock}
+	 * (NOTE: only the owner reads or writes it)
+	 */
+	private long updateLockReentrantCounter;
+
+	/**
+	 * The {@link #updateLockOwner} while it is waiting for the
+	 * {@link #writeLockOwner}, so a writer that is still waiting for the readers
+	 * to drain (which includes the upgrader) hands the {@link WriteLock} over
+	 * rather than waiting on it forever
+	 */
+	private volatile Thread pendingUpgrade;
+
+	/**
+	 * Incremented when a {@link Thread} starts writing (after the readers have
+	 * drained) and again when it releases the {@link WriteLock}, so it is odd
+	 * exactly while a write may be in progress. Used to validate optimistic read
+	 * stamps.
 	 */
-	private ThreadLocal<Long> writeLockReentrantCounter;
+	private AtomicLong writeVersion;
 
 	/**
 	 * A cached {@link ReadLock} linked to this Lock to provide when requested
@@ -74,25 +199,145 @@ public class ReentreantUpgradeLock implements ReadWriteLock {
 	 */
 	private DowngradableWriteLock writeLock;
 
+	/**
+	 * A cached {@link UpdateLock} linked to this lock to provide when requested
+	 */
+	private UpdateLock updateLock;
+
 	public ReentreantUpgradeLock() {
-		this.tail = new AtomicReference<>(null);
-		this.current = null;
+		this(new CentralReaderIndicator());
+	}
+
+	/**
+	 * @param readerIndicator
+	 *            how the readers are counted, e.g. a {@link StripedReaderIndicator}
+	 *            for locks that are read from many cores at once (NOTE: must not be
+	 *            shared with another Lock)
+	 */
+	public ReentreantUpgradeLock(@NotNull ReaderIndicator readerIndicator) {
+		this(readerIndicator, new ParkingWaitStrategy());
+	}
+
+	/**
+	 * @param readerIndicator
+	 *            how the readers are counted, e.g. a {@link StripedReaderIndicator}
+	 *            for locks that are read from many cores at once (NOTE: must not be
+	 *            shared with another Lock)
+	 * @param waitStrategy
+	 *            how waiting {@link Thread}s wait, e.g. a
+	 *            {@link SpinningWaitStrategy} for locks that are only held briefly
+	 *            (NOTE: must not be shared with another Lock)
+	 */
+	public ReentreantUpgradeLock(@NotNull ReaderIndicator readerIndicator, @NotNull WaitStrategy waitStrategy) {
+		this(readerIndicator, waitStrategy, FairnessPolicy.FIFO, null, false, null, 0);
+	}
+
+	/**
+	 * @param fairnessPolicy
+	 *            who goes next when both readers and writers are waiting
+	 * @param metrics
+	 *            where to record contention, null to not record anything
+	 * @param isSharingHoldCounters
+	 *            true to track holds in {@link #SHARED_HOLD_COUNTERS} rather than a
+	 *            {@link ThreadLocal} of this Lock's own
+	 * @param clusters
+	 *            the clusters to keep the {@link WriteLock} within, null to always
+	 *            hand it on in line
+	 * @param maxLocalHandoffs
+	 *            how many times in a row the {@link WriteLock} may stay within a
+	 *            cluster
+	 */
+	private ReentreantUpgradeLock(@NotNull ReaderIndicator readerIndicator, @NotNull WaitStrategy waitStrategy,
+			@NotNull FairnessPolicy fairnessPolicy, LockMetrics metrics, boolean isSharingHoldCounters,
+			ClusterAssignment clusters, int maxLocalHandoffs) {
+		this.waiters = new WaitQueue(clusters, maxLocalHandoffs);
+		this.updateWaiters = new WaitQueue();
+		this.combining = new CombiningQueue();
 
-		this.numberOfReadLockOwners = new AtomicLong(0L);
-		this.readLockReentrantCounter = ThreadLocal.withInitial(() -> 0L);
+		this.readerIndicator = Objects.requireNonNull(readerIndicator, "readerIndicator");
+		this.waitStrategy = Objects.requireNonNull(waitStrategy, "waitStrategy");
+		this.fairnessPolicy = Objects.requireNonNull(fairnessPolicy, "fairnessPolicy");
+		this.metrics = metrics;
+		this.readLockReentrantCounter = isSharingHoldCounters ? null : ThreadLocal.withInitial(HoldCounter::new);
 
 		this.writeLockOwner = new AtomicReference<>();
-		this.writeLockReentrantCounter = ThreadLocal.withInitial(() -> 0L);
+		this.writeLockReentrantCounter = 0L;
+		this.writeVersion = new AtomicLong(ORIGIN);
+
+		this.updateLockOwner = new AtomicReference<>();
+		this.updateLockReentrantCounter = 0L;
+		this.pendingUpgrade = null;
 
 		this.readLock = new UpgradableReadLock(this);
 		this.writeLock = new DowngradableWriteLock(this);
+		this.updateLock = new UpdateLock(this);
+	}
+
+	/**
+	 * Creates a Lock suited to being used from a very large number of (virtual)
+	 * {@link Thread}s. It has no {@link ThreadLocal} of its own, so a
+	 * {@link Thread} touching many of these Locks doesn't grow its
+	 * ThreadLocalMap by one entry per Lock, and waiters always park, which only
+	 * unmounts a virtual {@link Thread} from its carrier rather than pinning it
+	 * (nothing in this Lock blocks while holding a monitor).
+	 * 
+	 * @return a new Lock that shares its hold bookkeeping with every other Lock
+	 *         created by this method
+	 */
+	@NotNull
+	public static ReentreantUpgradeLock forVirtualThreads() {
+		return new ReentreantUpgradeLock(new CentralReaderIndicator(), new ParkingWaitStrategy(), FairnessPolicy.FIFO,
+				null, true, null, 0);
+	}
+
+	/**
+	 * @return a {@link Builder} for a Lock with options beyond the constructors
+	 *         (e.g. {@link FairnessPolicy} or {@link LockMetrics})
+	 */
+	@NotNull
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	/**
+	 * NOTE: Only meant for monitoring (and tests), it may already be stale when
+	 * it returns.
+	 *
+	 * @return true if a {@link Thread} holds the {@link WriteLock} (or has
+	 *         claimed it and is waiting for the readers to drain)
+	 */
+	public boolean isWriteLocked() {
+		return writeLockOwner.get() != null;
+	}
+
+	/**
+	 * NOTE: Only meant for monitoring (and tests), it may already be stale when
+	 * it returns.
+	 *
+	 * @return how many {@link Thread}s currently hold the {@link ReadLock} (not
+	 *         counting reentrant holds or asynchronous ones)
+	 */
+	public long getReadLockCount() {
+		return readerIndicator.sum();
+	}
+
+	/**
+	 * NOTE: Only meant for monitoring (and tests), it may already be stale when
+	 * it returns.
+	 *
+	 * @return how many {@link Thread}s are waiting in line for the
+	 *         {@link ReadLock} or the {@link WriteLock} (not the
+	 *         {@link UpdateLock})
+	 */
+	public int getQueueLength() {
+		return waiters.size();
 	}
 
 	@Override
 	public String toString() {
-		return String.format("rlOwners: %d (%d), wlOwners: %s (%d), tail: %s, current: %s",
-				numberOfReadLockOwners.get(), readLockReentrantCounter.get(), writeLockOwner.get(),
-				writeLockReentrantCounter.get(), tail, current);
+		return String.format("rlOwners: %d (%d), wlOwners: %s (%d), waiters: %s, ulOwner: %s (%d)",
+				readerIndicator.sum(), readHoldCounter().count, writeLockOwner.get(), writeLockReentrantCounter,
+				waiters, updateLockOwner.get(), updateLockReentrantCounter);
 	}
 
 	@NotNull
@@ -107,6 +352,181 @@ public class ReentreantUpgradeLock implements ReadWriteLock {
 		return writeLock;
 	}
 
+	/**
+	 * The intent-to-write mode. Holding it also holds the {@link ReadLock}, so
+	 * other readers are still let in, but only one {@link Thread} holds it at a
+	 * time and it is the only one that can upgrade without risking a deadlock
+	 * with another upgrader (e.g. for a read-check-then-write).
+	 * 
+	 * @return the {@link UpdateLock} of this Lock
+	 */
+	@NotNull
+	public UpdateLock updateLock() {
+		return updateLock;
+	}
+
+	/**
+	 * Applies a small mutation under the {@link WriteLock} without necessarily
+	 * acquiring it (flat combining). The mutation is published and whichever
+	 * {@link Thread} holds the {@link WriteLock} applies every published mutation
+	 * in one batch just before releasing it, so many {@link Thread}s making tiny
+	 * writes share a single handoff of the {@link WriteLock} rather than each
+	 * waiting for their own. Returns once the mutation has been applied.</br>
+	 * 
+	 * NOTE: The mutation may run on another {@link Thread}, so it must not depend
+	 * on anything thread-confined (e.g. {@link ThreadLocal}s or the Locks the
+	 * current {@link Thread} holds). Applied directly when the current
+	 * {@link Thread} already holds the {@link WriteLock}.
+	 * 
+	 * @param target
+	 *            what this Lock guards, passed to the mutation
+	 * @param mutation
+	 *            the change to make to `target`, whatever it throws is rethrown to
+	 *            the current {@link Thread}
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} holds the {@link ReadLock} but not
+	 *             the {@link WriteLock} (waiting on the holder of the
+	 *             {@link WriteLock} could deadlock, upgrade instead)
+	 */
+	public <S> void combine(@NotNull S target, @NotNull Consumer<? super S> mutation) {
+		Objects.requireNonNull(target, "target");
+		Objects.requireNonNull(mutation, "mutation");
+
+		Thread currentThread = Thread.currentThread();
+		if (currentThread == writeLockOwner.get()) {
+			mutation.accept(target);
+			return;
+		}
+		if (readHoldCounter().count > 0) {
+			throw new IllegalStateException("Cannot combine while holding the ReadLock");
+		}
+
+		CombiningQueue.Request request = combining.publish(target, mutation);
+
+		/* The first to publish makes sure someone holds the WriteLock to apply it */
+		if (request.isLeading && !request.isDone()) {
+			writeLock.lock();
+			writeLock.unlock();
+		}
+
+		combining.await(request);
+	}
+
+	/**
+	 * Acquires a {@link ReadLock} hold without blocking the current
+	 * {@link Thread}. The returned future is completed on the `executor` once the
+	 * hold is granted, release it with {@link AsyncLockHandle#unlock()} from any
+	 * {@link Thread}. Cancelling the future gives up on the hold.</br>
+	 * 
+	 * NOTE: Asynchronous holds don't wait in line with the {@link Thread}s, they
+	 * are granted (in the order they were asked for) whenever nobody owns the
+	 * {@link WriteLock}, and aren't recorded in the {@link LockMetrics}.
+	 * 
+	 * @param executor
+	 *            where the returned future is completed
+	 * @return the {@link ReadLock} hold
+	 */
+	@NotNull
+	public CompletableFuture<AsyncLockHandle> readLockAsync(@NotNull Executor executor) {
+		return lockAsync(true, Long.MAX_VALUE, TimeUnit.NANOSECONDS, executor);
+	}
+
+	/**
+	 * Same as {@link #readLockAsync(Executor)} but completed exceptionally with a
+	 * {@link java.util.concurrent.TimeoutException} if the {@link ReadLock} isn't
+	 * granted in time
+	 */
+	@NotNull
+	public CompletableFuture<AsyncLockHandle> readLockAsync(long duration, @NotNull TimeUnit unit,
+			@NotNull Executor executor) {
+		return lockAsync(true, duration, unit, executor);
+	}
+
+	/**
+	 * Acquires a {@link WriteLock} hold without blocking the current
+	 * {@link Thread}, see {@link #readLockAsync(Executor)}
+	 * 
+	 * @param executor
+	 *            where the returned future is completed
+	 * @return the {@link WriteLock} hold
+	 */
+	@NotNull
+	public CompletableFuture<AsyncLockHandle> writeLockAsync(@NotNull Executor executor) {
+		return lockAsync(false, Long.MAX_VALUE, TimeUnit.NANOSECONDS, executor);
+	}
+
+	/**
+	 * Same as {@link #writeLockAsync(Executor)} but completed exceptionally with a
+	 * {@link java.util.concurrent.TimeoutException} if the {@link WriteLock} isn't
+	 * granted in time
+	 */
+	@NotNull
+	public CompletableFuture<AsyncLockHandle> writeLockAsync(long duration, @NotNull TimeUnit unit,
+			@NotNull Executor executor) {
+		return lockAsync(false, duration, unit, executor);
+	}
+
+	/**
+	 * Returns a stamp for an optimistic read (similar to
+	 * {@link StampedLock#tryOptimisticRead()}). Nothing is written to the Lock so
+	 * this costs about as much as a volatile read, but whatever was read has to
+	 * be checked with {@link #validate(long)} before it is used.
+	 * 
+	 * @return a stamp to later validate, or 0 if the {@link WriteLock} is
+	 *         currently held (including by the current {@link Thread})
+	 */
+	public long tryOptimisticRead() {
+		long version = writeVersion.get();
+		return ((version & 1L) == 0L) ? version : 0L;
+	}
+
+	/**
+	 * @param stamp
+	 *            a stamp from {@link #tryOptimisticRead()}
+	 * @return true if no {@link WriteLock} has been held since the stamp was
+	 *         issued, so anything read after getting the stamp is consistent
+	 */
+	public boolean validate(long stamp) {
+		/* Keep the optimistic reads from being reordered after the version check */
+		VarHandle.acquireFence();
+		return (stamp != 0L) && (writeVersion.get() == stamp);
+	}
+
+	/**
+	 * Acquires the {@link WriteLock} if the stamp is still valid, i.e. turns an
+	 * optimistic read straight into a write without going through the
+	 * {@link ReadLock}. Like {@link DowngradableWriteLock#tryLock()} this never
+	 * waits, it fails if any other {@link Thread} holds either Lock.
+	 * 
+	 * @param stamp
+	 *            a stamp from {@link #tryOptimisticRead()}
+	 * @return true if the current {@link Thread} now holds the {@link WriteLock}
+	 *         and nothing was written since the stamp was issued, release it
+	 *         with {@link DowngradableWriteLock#unlock()}
+	 */
+	public boolean tryConvertToWriteLock(long stamp) {
+		if (!validate(stamp)) {
+			return false;
+		}
+
+		try {
+			if (!tryLockWriteLock(0L, TimeUnit.NANOSECONDS, true)) {
+				return false;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+
+		/* Someone else wrote between the stamp and acquiring the WriteLock */
+		if (writeVersion.get() != stamp + 1L) {
+			unlockWriteLock();
+			return false;
+		}
+
+		return true;
+	}
+
 	/**
 	 * Attempts to acquire the {@link ReadLock} within the specified time.
 	 * 
@@ -125,39 +545,84 @@ public class ReentreantUpgradeLock implements ReadWriteLock {
 	boolean tryLockReadLock(long duration, @NotNull TimeUnit unit, boolean isInterruptable)
 			throws InterruptedException {
 
-		/* Already have a ReadLock so just increment counters */
-		if (readLockReentrantCounter.get() > 0) {
-			readLockReentrantCounter.set(1 + readLockReentrantCounter.get());
-			this.numberOfReadLockOwners.incrementAndGet();
+		LockMetrics metrics = this.metrics;
+		if (metrics == null) {
+			return tryLockReadLockUnmeasured(duration, unit, isInterruptable);
+		}
 
+		/* Only the first acquisition of a hold is recorded */
+		HoldCounter holdCounter = readHoldCounter();
+		if (holdCounter.count > 0) {
+			holdCounter.count++;
 			return true;
 		}
 
 		long startTime = System.nanoTime();
-		long endTime = NumberUtils.INSTANCE.addWithDefault(Long.MAX_VALUE, startTime, unit.toNanos(duration));
-		Thread currentThread = Thread.currentThread();
-		LockNode node = addNodeToQueue(currentThread);
-
+		boolean isAcquired;
 		try {
-			/* Acquire the WriteLock temporarily since that means we can definitely Read */
-			if (!acquireWriteLock(isInterruptable, endTime)) {
-				return false;
-			}
+			isAcquired = tryLockReadLockUnmeasured(duration, unit, isInterruptable);
+		} catch (InterruptedException e) {
+			metrics.interrupted(LockMetrics.Mode.READ, System.nanoTime() - startTime);
+			throw e;
+		}
+
+		long endTime = System.nanoTime();
+		if (!isAcquired) {
+			metrics.timedOut(LockMetrics.Mode.READ, endTime - startTime);
+			return false;
+		}
 
-			/* Have the WriteLock so increment the relevant Read counters */
-			this.readLockReentrantCounter.set(1 + readLockReentrantCounter.get());
-			this.numberOfReadLockOwners.incrementAndGet();
-			this.writeLockOwner.set(null);
+		holdCounter.acquiredAt = endTime;
+		metrics.acquired(LockMetrics.Mode.READ, endTime - startTime);
+		return true;
+	}
 
-			/* Wake the next Thread in the Queue ( LockSupport::unpark has a null check ) */
-			current = node;
-			LockSupport.unpark(node.getNext().get());
+	/**
+	 * {@link #tryLockReadLock(long, TimeUnit, boolean)} without recording
+	 * anything to the {@link #metrics}
+	 */
+	private boolean tryLockReadLockUnmeasured(long duration, @NotNull TimeUnit unit, boolean isInterruptable)
+			throws InterruptedException {
 
+		/* Already have a ReadLock so just increment counters */
+		HoldCounter holdCounter = readHoldCounter();
+		if (holdCounter.count > 0) {
+			holdCounter.count++;
 			return true;
-		} finally {
-			cleanupNodeQueue(node);
 		}
 
+		Thread currentThread = Thread.currentThread();
+
+		/* The WriteLock owner excludes everyone else so it can always read */
+		if (currentThread == writeLockOwner.get()) {
+			holdCounter.readerSlot = this.readerIndicator.arrive();
+			holdCounter.count = 1L;
+			return true;
+		}
+
+		/*
+		 * Fast path, nobody is writing or waiting to write. A zero timeout also ends
+		 * here since it shouldn't wait in line (same as ReentrantReadWriteLock's
+		 * tryLock() barging).
+		 */
+		if (duration <= 0 || waiters.isEmpty() || fairnessPolicy.isReaderBarging()) {
+			if (tryAcquireReadLock(holdCounter, false)) {
+				holdCounter.count = 1L;
+				return true;
+			}
+
+			if (duration <= 0) {
+				return false;
+			}
+		}
+
+		if (!acquireInTurn(waiters, writeLockOwner, currentThread, holdCounter, false, isInterruptable,
+				Deadline.after(duration, unit))) {
+			return false;
+		}
+
+		holdCounter.count = 1L;
+		return true;
 	}
 
 	/**
@@ -167,16 +632,21 @@ public class ReentreantUpgradeLock implements ReadWriteLock {
 	 *             if the current {@link Thread} does not hold a {@link ReadLock}
 	 */
 	void unlockReadLock() {
-		if ((readLockReentrantCounter.get() < 1)
-				|| (readLockReentrantCounter.get() == writeLockReentrantCounter.get())) {
+		HoldCounter holdCounter = readHoldCounter();
+		if (holdCounter.count < 1) {
 			throw new IllegalStateException("Cannot release Lock that is not owned by the thread");
 		}
 
-		readLockReentrantCounter.set(readLockReentrantCounter.get() - 1);
-		numberOfReadLockOwners.decrementAndGet();
+		holdCounter.count--;
+		if (holdCounter.count == 0) {
+			/* Don't keep this Lock reachable from an idle shared counter */
+			holdCounter.lock = null;
+			releaseReadLock(holdCounter.readerSlot);
 
-		/* LockSupport::unpark has a null check */
-		LockSupport.unpark(current.getNext().get());
+			if (metrics != null) {
+				metrics.released(true, System.nanoTime() - holdCounter.acquiredAt);
+			}
+		}
 	}
 
 	/**
@@ -197,171 +667,1295 @@ public class ReentreantUpgradeLock implements ReadWriteLock {
 	boolean tryLockWriteLock(long duration, @NotNull TimeUnit unit, boolean isInterruptable)
 			throws InterruptedException {
 
-		/* Already have a WriteLock so just increment counters */
-		if (writeLockReentrantCounter.get() > 0) {
-			writeLockReentrantCounter.set(1 + writeLockReentrantCounter.get());
-			readLockReentrantCounter.set(1 + readLockReentrantCounter.get());
-			this.numberOfReadLockOwners.incrementAndGet();
+		LockMetrics metrics = this.metrics;
+		if (metrics == null) {
+			return tryLockWriteLockUnmeasured(duration, unit, isInterruptable);
+		}
+
+		/* Only the first acquisition of a hold is recorded */
+		if (Thread.currentThread() == writeLockOwner.get() && writeLockReentrantCounter > 0) {
+			writeLockReentrantCounter++;
 			return true;
 		}
 
+		LockMetrics.Mode mode = (readHoldCounter().count > 0) ? LockMetrics.Mode.UPGRADE : LockMetrics.Mode.WRITE;
 		long startTime = System.nanoTime();
-		long endTime = NumberUtils.INSTANCE.addWithDefault(Long.MAX_VALUE, startTime, unit.toNanos(duration));
-		Thread currentThread = Thread.currentThread();
-		LockNode node = addNodeToQueue(currentThread);
-
+		boolean isAcquired;
 		try {
-			/* Acquire WriteLock to prevent future Threads from becoming readers */
-			if (!acquireWriteLock(isInterruptable, endTime)) {
-				return false;
-			}
-
-			/* Wait until only this Thread is a reader */
-			while (numberOfReadLockOwners.get() != readLockReentrantCounter.get()) {
-				LockSupport.parkNanos(endTime - System.nanoTime());
-
-				if (isInterruptable && Thread.interrupted()) {
-					writeLockOwner.set(null);
-					LockSupport.unpark(node.getNext().get());
-					throw new InterruptedException();
-				}
-
-				if (endTime >= System.nanoTime()) {
-					writeLockOwner.set(null);
-					LockSupport.unpark(node.getNext().get());
-					return false;
-				}
-			}
-
-			/* No other Thread is Reading or Writing so increment counters */
-			writeLockReentrantCounter.set(1 + writeLockReentrantCounter.get());
-			readLockReentrantCounter.set(1 + readLockReentrantCounter.get());
-			this.numberOfReadLockOwners.incrementAndGet();
-
-			current = node;
-			LockSupport.unpark(node.getNext().get());
+			isAcquired = tryLockWriteLockUnmeasured(duration, unit, isInterruptable);
+		} catch (InterruptedException e) {
+			metrics.interrupted(mode, System.nanoTime() - startTime);
+			throw e;
+		}
 
-			return true;
-		} finally {
-			cleanupNodeQueue(node);
+		long endTime = System.nanoTime();
+		if (!isAcquired) {
+			metrics.timedOut(mode, endTime - startTime);
+			return false;
 		}
 
+		writeLockAcquiredAt = endTime;
+		metrics.acquired(mode, endTime - startTime);
+		return true;
 	}
 
 	/**
-	 * Unlocks the {@link WriteLock} held by this {@link Thread}
-	 * 
-	 * @throws IllegalStateException
-	 *             if the current {@link Thread} does not hold a {@link WriteLock}
+	 * {@link #tryLockWriteLock(long, TimeUnit, boolean)} without recording
+	 * anything to the {@link #metrics}
 	 */
-	void unlockWriteLock() {
+	private boolean tryLockWriteLockUnmeasured(long duration, @NotNull TimeUnit unit, boolean isInterruptable)
+			throws InterruptedException {
+
 		Thread currentThread = Thread.currentThread();
 
-		if (!(currentThread.equals(writeLockOwner.get()))) {
-			throw new IllegalStateException("Cannot release Lock that is not owned by the thread");
+		/* Already have a WriteLock so just increment counters */
+		if (currentThread == writeLockOwner.get() && writeLockReentrantCounter > 0) {
+			writeLockReentrantCounter++;
+			return true;
 		}
 
-		writeLockReentrantCounter.set(writeLockReentrantCounter.get() - 1);
-		readLockReentrantCounter.set(readLockReentrantCounter.get() - 1);
-		this.numberOfReadLockOwners.decrementAndGet();
+		/* A Thread that is upgrading is counted as one of the readers */
+		boolean isUpgrading = readHoldCounter().count > 0;
 
-		if (writeLockReentrantCounter.get() == 0) {
-			writeLockOwner.set(null);
-			LockSupport.unpark(current.getNext().get());
-		}
-	}
+		if (!isUpgrading) {
+			/* Fast path, uncontended the clock is never read */
+			boolean isOwner = (waiters.isEmpty() || fairnessPolicy.isWriterBarging())
+					&& writeLockOwner.compareAndSet(null, currentThread);
+			if (isOwner && !hasOtherReaders(0L, 0L) && tryStartWriting(0L, 0L)) {
+				writeLockReentrantCounter = 1L;
+				return true;
+			}
 
-	/**
-	 * Sets the {@link #writeLockOwner} if it is currently not set, otherwise waits
-	 * until the specified `endTime` for an opportunity to set the value.
-	 * 
-	 * @param isInterruptable
-	 *            if this method should throw {@link InterruptedException} when
-	 *            interrupted (NOTE: if false, this method won't gobble the
-	 *            interrupted flag)
-	 * @param endTime
-	 *            the time (in nanos) to stop waiting
-	 * @return true if the {@link #writeLockOwner} is now set to the currentThread,
-	 *         otherwise false
-	 * @throws InterruptedException
-	 *             if this {@link Thread} is interrupted while acquiring the
-	 *             {@link #writeLockOwner}
-	 */
-	private boolean acquireWriteLock(boolean isInterruptable, long endTime) throws InterruptedException {
-		Thread currentThread = Thread.currentThread();
+			long deadline = Deadline.after(duration, unit);
 
-		if (currentThread.equals(writeLockOwner.get())) {
-			return true;
-		}
+			/* Acquire WriteLock to prevent future Threads from becoming readers */
+			if ((!isOwner && !acquireWriteLock(currentThread, false, isInterruptable, deadline))
+					|| !awaitReaders(currentThread, 0L, isInterruptable, deadline)) {
+				return false;
+			}
+		} else {
+			long deadline = Deadline.after(duration, unit);
 
-		while (!this.writeLockOwner.compareAndSet(null, currentThread)) {
-			LockSupport.parkNanos(endTime - System.nanoTime());
+			/*
+			 * Upgrading takes the UpdateLock (if it isn't already held) so two upgraders
+			 * never wait on each other's ReadLock. Waiting for it here could deadlock in
+			 * the same way, so a plain reader that can't get it straight away fails.
+			 */
+			boolean isBorrowing = (currentThread != updateLockOwner.get());
+			if (isBorrowing && !updateLockOwner.compareAndSet(null, currentThread)) {
+				return false;
+			}
 
-			if (isInterruptable && Thread.interrupted()) {
-				throw new InterruptedException();
+			boolean isAcquired = false;
+			try {
+				isAcquired = acquireWriteLockToUpgrade(currentThread, isInterruptable, deadline)
+						&& awaitReaders(currentThread, 1L, isInterruptable, deadline);
+			} finally {
+				if (!isAcquired && isBorrowing) {
+					releaseUpdateLock();
+				}
 			}
 
-			if (endTime <= System.nanoTime()) {
+			if (!isAcquired) {
 				return false;
 			}
 		}
 
+		/* No other Thread is Reading or Writing (awaitReaders() bumped the version) */
+		writeLockReentrantCounter = 1L;
 		return true;
 	}
 
 	/**
-	 * Cleans up the node queue.</br>
+	 * Waits for every reader other than the {@link #writeLockOwner} to release
+	 * the {@link ReadLock}. A writer that isn't upgrading steps aside (and goes to
+	 * the front of the line) when the {@link #updateLockOwner} wants to upgrade,
+	 * since the upgrader is one of the readers it is waiting on.
 	 * 
-	 * @param node
-	 *            the Node that is being removed from the queue.
-	 * @see #addNodeToQueue(Thread)
+	 * @param currentThread
+	 *            the {@link #writeLockOwner}
+	 * @param ownReadLocks
+	 *            1 if the currentThread is one of the readers, otherwise 0
+	 * @param isInterruptable
+	 *            if this method should throw {@link InterruptedException} when
+	 *            interrupted (NOTE: if false, this method won't gobble the
+	 *            interrupted flag)
+	 * @param deadline
+	 *            when to stop waiting, see {@link Deadline}
+	 * @return true if the currentThread is the only reader (and still the
+	 *         {@link #writeLockOwner}) and has started writing, otherwise false and
+	 *         the {@link #writeLockOwner} has been released
+	 * @throws InterruptedException
+	 *             if this {@link Thread} is interrupted while waiting
 	 */
-	private void cleanupNodeQueue(LockNode node) {
-		/* Need to fix the Queue if an Exception occurs */
-		if (tail.compareAndSet(node, null)) {
-			/* Fixed, nothing is after this node */
-			return;
-		}
+	private boolean awaitReaders(Thread currentThread, long ownReadLocks, boolean isInterruptable, long deadline)
+			throws InterruptedException {
 
-		/* Not the last node so can just fix pointers */
-		if (Objects.isNull(node.getPrevious())) {
-			/* Fixed, nothing came before this node */
-			LockSupport.unpark(node.getNext().get());
-			return;
+		int attempts = 0;
+		boolean isInterrupted = false;
+		try {
+			while (hasOtherReaders(ownReadLocks, 0L) || !tryStartWriting(ownReadLocks, 0L)) {
+				if (ownReadLocks == 0L && pendingUpgrade != null) {
+					releaseWriteLock();
+
+					/* It was already at the front of the line so it may skip ahead again */
+					if (!acquireWriteLock(currentThread, true, isInterruptable, deadline)) {
+						waitStrategy.waited(attempts, false);
+						return false;
+					}
+					continue;
+				}
+
+				long remaining = Deadline.remaining(deadline);
+				if (remaining <= 0) {
+					waitStrategy.waited(attempts, false);
+					releaseWriteLock();
+					return false;
+				}
+
+				waitStrategy.pause(this, attempts++, remaining);
+
+				if (Thread.interrupted()) {
+					if (isInterruptable) {
+						waitStrategy.waited(attempts, false);
+						releaseWriteLock();
+						throw new InterruptedException();
+					}
+					isInterrupted = true;
+				}
+			}
+		} finally {
+			if (isInterrupted) {
+				currentThread.interrupt();
+			}
+		}
+
+		if (attempts > 0) {
+			waitStrategy.waited(attempts, true);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Marks the write as in progress once the readers have drained. If the
+	 * {@link #fairnessPolicy} admits readers while draining it first waits for the
+	 * readers woken along with it to arrive, and one may have slipped in after the
+	 * readers were checked, so they are checked again after the version is bumped
+	 * (a reader checks the version after it arrives).
+	 * 
+	 * @param ownReadLocks
+	 *            1 if the currentThread is one of the readers, otherwise 0
+	 * @param ownAsyncReadLocks
+	 *            1 if the writer is upgrading an {@link AsyncLockHandle}, otherwise
+	 *            0
+	 * @return true if the write started, false if a reader slipped in and has to
+	 *         be waited on first
+	 */
+	private boolean tryStartWriting(long ownReadLocks, long ownAsyncReadLocks) {
+		if (!fairnessPolicy.isAdmittingWhileDraining()) {
+			writeVersion.incrementAndGet();
+			return true;
+		}
+
+		if (waiters.isAdmitting()) {
+			return false;
+		}
+
+		writeVersion.incrementAndGet();
+
+		if (hasOtherReaders(ownReadLocks, ownAsyncReadLocks)) {
+			/* Back to even so the reader's check keeps admitting */
+			writeVersion.incrementAndGet();
+			return false;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Unlocks the {@link WriteLock} held by this {@link Thread}
+	 * 
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold a {@link WriteLock}
+	 */
+	void unlockWriteLock() {
+		Thread currentThread = Thread.currentThread();
+
+		if (!(currentThread.equals(writeLockOwner.get()))) {
+			throw new IllegalStateException("Cannot release Lock that is not owned by the thread");
+		}
+
+		/* Still exclusive (and still counted, in case a mutation re-enters) */
+		if (writeLockReentrantCounter == 1) {
+			combining.applyAll();
+		}
+
+		writeLockReentrantCounter--;
+
+		if (writeLockReentrantCounter == 0) {
+			if (metrics != null) {
+				metrics.released(false, System.nanoTime() - writeLockAcquiredAt);
+			}
+
+			writeVersion.incrementAndGet();
+			releaseWriteLock();
+
+			/* The UpdateLock was only taken to upgrade a plain ReadLock */
+			if (currentThread == updateLockOwner.get() && updateLockReentrantCounter == 0) {
+				releaseUpdateLock();
+			}
+		}
+	}
+
+	/**
+	 * Attempts to acquire the {@link UpdateLock} (and with it a {@link ReadLock})
+	 * within the specified time.
+	 * 
+	 * @param duration
+	 *            the amount of time to fail acquiring after
+	 * @param unit
+	 *            the {@link TimeUnit} associated with the duration
+	 * @param isInterruptable
+	 *            if true, throw an {@link InterruptedException} when the current
+	 *            {@link Thread} is interrupted
+	 * @return true if the {@link UpdateLock} was acquired and false if time
+	 *         expired
+	 * @throws InterruptedException
+	 *             if `isInterruptable` was true and the current {@link Thread} and
+	 *             {@link Thread#interrupted()} became true
+	 */
+	boolean tryLockUpdateLock(long duration, @NotNull TimeUnit unit, boolean isInterruptable)
+			throws InterruptedException {
+
+		LockMetrics metrics = this.metrics;
+		if (metrics == null) {
+			return tryLockUpdateLockUnmeasured(duration, unit, isInterruptable);
+		}
+
+		/* Only the first acquisition of a hold is recorded */
+		if (Thread.currentThread() == updateLockOwner.get() && updateLockReentrantCounter > 0) {
+			updateLockReentrantCounter++;
+			return true;
+		}
+
+		long startTime = System.nanoTime();
+		boolean isAcquired;
+		try {
+			isAcquired = tryLockUpdateLockUnmeasured(duration, unit, isInterruptable);
+		} catch (InterruptedException e) {
+			metrics.interrupted(LockMetrics.Mode.UPDATE, System.nanoTime() - startTime);
+			throw e;
+		}
+
+		long endTime = System.nanoTime();
+		if (!isAcquired) {
+			metrics.timedOut(LockMetrics.Mode.UPDATE, endTime - startTime);
+			return false;
+		}
+
+		/* The ReadLock hold started with the UpdateLock */
+		HoldCounter holdCounter = readHoldCounter();
+		if (holdCounter.count == 1L) {
+			holdCounter.acquiredAt = endTime;
+		}
+		metrics.acquired(LockMetrics.Mode.UPDATE, endTime - startTime);
+		return true;
+	}
+
+	/**
+	 * {@link #tryLockUpdateLock(long, TimeUnit, boolean)} without recording
+	 * anything to the {@link #metrics}
+	 */
+	private boolean tryLockUpdateLockUnmeasured(long duration, @NotNull TimeUnit unit, boolean isInterruptable)
+			throws InterruptedException {
+
+		Thread currentThread = Thread.currentThread();
+
+		if (currentThread == updateLockOwner.get()) {
+			/* Owned only to upgrade a ReadLock, which is still held or being written */
+			if (updateLockReentrantCounter == 0) {
+				tryLockReadLockUnmeasured(0L, TimeUnit.NANOSECONDS, isInterruptable);
+			}
+
+			updateLockReentrantCounter++;
+			return true;
+		}
+
+		/*
+		 * A Thread that already holds a Lock can't wait for the UpdateLock, the owner
+		 * may be waiting on it to upgrade
+		 */
+		if (readHoldCounter().count > 0 || currentThread == writeLockOwner.get()) {
+			duration = 0L;
+		}
+
+		long deadline = Deadline.after(duration, unit);
+
+		if (!acquireUpdateLock(currentThread, isInterruptable, deadline)) {
+			return false;
+		}
+
+		/* Only waits for the ReadLock once it is the single Thread that may upgrade */
+		boolean isAcquired = false;
+		try {
+			isAcquired = tryLockReadLockUnmeasured(Math.max(Deadline.remaining(deadline), 0L),
+					TimeUnit.NANOSECONDS, isInterruptable);
+		} finally {
+			if (!isAcquired) {
+				releaseUpdateLock();
+			}
+		}
+
+		if (!isAcquired) {
+			return false;
+		}
+
+		updateLockReentrantCounter = 1L;
+		return true;
+	}
+
+	/**
+	 * Unlocks the {@link UpdateLock} held by this {@link Thread}
+	 * 
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold the
+	 *             {@link UpdateLock}
+	 */
+	void unlockUpdateLock() {
+		Thread currentThread = Thread.currentThread();
+
+		if (currentThread != updateLockOwner.get() || updateLockReentrantCounter < 1) {
+			throw new IllegalStateException("Cannot release Lock that is not owned by the thread");
+		}
+
+		updateLockReentrantCounter--;
+
+		if (updateLockReentrantCounter == 0) {
+			unlockReadLock();
+
+			/* Still writing, the UpdateLock is released along with the WriteLock */
+			if (currentThread != writeLockOwner.get() || writeLockReentrantCounter == 0) {
+				releaseUpdateLock();
+			}
+		}
+	}
+
+	/**
+	 * Acquires the {@link WriteLock} while holding the {@link UpdateLock}
+	 * 
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold the
+	 *             {@link UpdateLock}
+	 * @throws InterruptedException
+	 *             if the current {@link Thread} is interrupted
+	 */
+	void upgradeUpdateLock() throws InterruptedException {
+		if (Thread.currentThread() != updateLockOwner.get() || updateLockReentrantCounter < 1) {
+			throw new IllegalStateException("Cannot upgrade Lock that is not owned by the thread");
+		}
+
+		tryLockWriteLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS, true);
+	}
+
+	/**
+	 * Acquires the {@link ReadLock} and then releases the {@link WriteLock} held
+	 * by this {@link Thread}, so no other writer can get in between
+	 * 
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold the {@link WriteLock}
+	 * @throws InterruptedException
+	 *             if the current {@link Thread} is interrupted
+	 */
+	void downgradeWriteLock() throws InterruptedException {
+		if (Thread.currentThread() != writeLockOwner.get()) {
+			throw new IllegalStateException("Cannot release Lock that is not owned by the thread");
+		}
+
+		tryLockReadLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS, true);
+		unlockWriteLock();
+
+		if (metrics != null) {
+			metrics.downgraded();
+		}
+	}
+
+	/**
+	 * @return the current {@link Thread}'s {@link HoldCounter} for the
+	 *         {@link ReadLock}
+	 */
+	private HoldCounter readHoldCounter() {
+		if (readLockReentrantCounter == null) {
+			return sharedHoldCounter();
+		}
+
+		HoldCounter holdCounter = cachedHoldCounter;
+		if (holdCounter == null || holdCounter.threadId != Thread.currentThread().getId()) {
+			holdCounter = readLockReentrantCounter.get();
+			cachedHoldCounter = holdCounter;
+		}
+
+		return holdCounter;
+	}
+
+	/**
+	 * Finds the current {@link Thread}'s {@link HoldCounter} for this Lock in
+	 * {@link #SHARED_HOLD_COUNTERS}, claiming an idle one if there is none.
+	 * 
+	 * @return the current {@link Thread}'s {@link HoldCounter} for the
+	 *         {@link ReadLock}
+	 */
+	private HoldCounter sharedHoldCounter() {
+		HoldCounter[] holdCounters = SHARED_HOLD_COUNTERS.get();
+
+		int idle = -1;
+		for (int i = 0; i < holdCounters.length; i++) {
+			HoldCounter holdCounter = holdCounters[i];
+			if (holdCounter == null || holdCounter.count == 0) {
+				if (idle < 0) {
+					idle = i;
+				}
+			} else if (holdCounter.lock == this) {
+				return holdCounter;
+			}
+		}
+
+		if (idle < 0) {
+			idle = holdCounters.length;
+			holdCounters = Arrays.copyOf(holdCounters, holdCounters.length * 2);
+			SHARED_HOLD_COUNTERS.set(holdCounters);
+		}
+
+		if (holdCounters[idle] == null) {
+			holdCounters[idle] = new HoldCounter();
+		}
+
+		HoldCounter holdCounter = holdCounters[idle];
+		holdCounter.lock = this;
+		return holdCounter;
+	}
+
+	/**
+	 * Registers the current {@link Thread} as a reader if there is no
+	 * {@link #writeLockOwner} (or the {@link #fairnessPolicy} admits it while the
+	 * owner hasn't started writing yet).</br>
+	 * 
+	 * The reader count is incremented before the owner is checked (and a writer
+	 * sets the owner before checking the reader count) so at least one of the two
+	 * always sees the other. The same goes for {@link #writeVersion}, which a
+	 * writer bumps before checking the reader count one last time.
+	 * 
+	 * @param holdCounter
+	 *            the current {@link Thread}'s counter, remembers where it was
+	 *            counted
+	 * @param isQueued
+	 *            true if the current {@link Thread} waited in line for its turn
+	 * @return true if the current {@link Thread} is now counted as a reader
+	 */
+	private boolean tryAcquireReadLock(HoldCounter holdCounter, boolean isQueued) {
+		boolean isAdmittedWhileDraining = fairnessPolicy.isAdmittedWhileDraining(isQueued);
+		if (writeLockOwner.get() != null && !isAdmittedWhileDraining) {
+			return false;
+		}
+
+		holdCounter.readerSlot = readerIndicator.arrive();
+		if (writeLockOwner.get() == null) {
+			return true;
+		}
+
+		if (isAdmittedWhileDraining && (writeVersion.get() & 1L) == 0L) {
+			return true;
+		}
+
+		/* Lost the race to a writer, back out since it may be waiting on this Thread */
+		releaseReadLock(holdCounter.readerSlot);
+		return false;
+	}
+
+	/**
+	 * Removes the current {@link Thread} from the readers and wakes the
+	 * {@link #writeLockOwner} (if any) since it might be waiting for the readers to
+	 * drain.
+	 * 
+	 * @param readerSlot
+	 *            what {@link ReaderIndicator#arrive()} returned for this
+	 *            {@link Thread}
+	 */
+	private void releaseReadLock(int readerSlot) {
+		readerIndicator.depart(readerSlot);
+
+		Thread owner = writeLockOwner.get();
+		if (owner != null && owner != Thread.currentThread()) {
+			LockSupport.unpark(owner);
+		}
+
+		signalAsync();
+	}
+
+	/**
+	 * {@link #releaseWriteLock(Thread)} for the current {@link Thread}
+	 */
+	private void releaseWriteLock() {
+		releaseWriteLock(Thread.currentThread());
+	}
+
+	/**
+	 * Hands the {@link #writeLockOwner} to the {@link #pendingUpgrade} or the
+	 * writer waiting at the head of the line, or clears it and wakes whoever is at
+	 * the head.
+	 * 
+	 * @param owner
+	 *            the current {@link #writeLockOwner}, the current {@link Thread}
+	 *            unless it is an asynchronous hold
+	 */
+	private void releaseWriteLock(Thread owner) {
+		Thread upgrader = pendingUpgrade;
+		if (upgrader != null && writeLockOwner.compareAndSet(owner, upgrader)) {
+			LockSupport.unpark(upgrader);
+			signalAsync();
+			return;
+		}
+
+		waiters.release(writeLockOwner, fairnessPolicy);
+
+		/* The upgrader may have started waiting after it was checked */
+		upgrader = pendingUpgrade;
+		if (upgrader != null) {
+			LockSupport.unpark(upgrader);
+		}
+
+		signalAsync();
+	}
+
+	/**
+	 * Hands the {@link #updateLockOwner} to the {@link Thread} at the head of the
+	 * line, or clears it.
+	 */
+	private void releaseUpdateLock() {
+		updateWaiters.release(updateLockOwner);
+	}
+
+	/**
+	 * Sets the {@link #writeLockOwner} if it is currently not set, otherwise waits
+	 * until the specified `deadline` for an opportunity to set the value.
+	 * 
+	 * @param currentThread
+	 *            the {@link Thread} that wants to own the {@link WriteLock}
+	 * @param isFirst
+	 *            if the currentThread stepped aside for a {@link #pendingUpgrade},
+	 *            it may skip ahead of the {@link Thread}s waiting in line since it
+	 *            was already at the front
+	 * @param isInterruptable
+	 *            if this method should throw {@link InterruptedException} when
+	 *            interrupted (NOTE: if false, this method won't gobble the
+	 *            interrupted flag)
+	 * @param deadline
+	 *            when to stop waiting, see {@link Deadline}
+	 * @return true if the {@link #writeLockOwner} is now set to the currentThread,
+	 *         otherwise false
+	 * @throws InterruptedException
+	 *             if this {@link Thread} is interrupted while acquiring the
+	 *             {@link #writeLockOwner}
+	 */
+	private boolean acquireWriteLock(Thread currentThread, boolean isFirst, boolean isInterruptable, long deadline)
+			throws InterruptedException {
+
+		if ((isFirst || waiters.isEmpty() || fairnessPolicy.isWriterBarging())
+				&& writeLockOwner.compareAndSet(null, currentThread)) {
+			return true;
+		}
+
+		/* Out of time is a single attempt that doesn't wait in line */
+		if (Deadline.isExpired(deadline)) {
+			return writeLockOwner.compareAndSet(null, currentThread);
+		}
+
+		return acquireInTurn(waiters, writeLockOwner, currentThread, null, isFirst, isInterruptable, deadline);
+	}
+
+	/**
+	 * Sets the {@link #writeLockOwner} for the {@link #updateLockOwner}. It never
+	 * waits in line, the current owner is either still waiting for the readers
+	 * (including the currentThread) to drain and hands it over, or is about to
+	 * release it.
+	 * 
+	 * @param currentThread
+	 *            the {@link #updateLockOwner}, holding a {@link ReadLock}
+	 * @param isInterruptable
+	 *            if this method should throw {@link InterruptedException} when
+	 *            interrupted (NOTE: if false, this method won't gobble the
+	 *            interrupted flag)
+	 * @param deadline
+	 *            when to stop waiting, see {@link Deadline}
+	 * @return true if the {@link #writeLockOwner} is now set to the currentThread,
+	 *         otherwise false
+	 * @throws InterruptedException
+	 *             if this {@link Thread} is interrupted while acquiring the
+	 *             {@link #writeLockOwner}
+	 */
+	private boolean acquireWriteLockToUpgrade(Thread currentThread, boolean isInterruptable, long deadline)
+			throws InterruptedException {
+
+		if (writeLockOwner.compareAndSet(null, currentThread)) {
+			return true;
 		}
 
-		node.getPrevious().getNext().set(node.getNext().get());
-		/* Fixed, previous points to next */
-		LockSupport.unpark(node.getNext().get());
-		return;
+		pendingUpgrade = currentThread;
+
+		int attempts = 0;
+		boolean isAcquired = false;
+		boolean isInterrupted = false;
+		try {
+			for (;;) {
+				Thread owner = writeLockOwner.get();
+				if (owner == currentThread || (owner == null && writeLockOwner.compareAndSet(null, currentThread))) {
+					isAcquired = true;
+					return true;
+				}
+
+				/* Make sure the owner notices, it may be parked waiting for the readers */
+				LockSupport.unpark(owner);
+				signalAsync();
+
+				long remaining = Deadline.remaining(deadline);
+				if (remaining <= 0) {
+					return false;
+				}
+
+				waitStrategy.pause(this, attempts++, remaining);
+
+				if (Thread.interrupted()) {
+					if (isInterruptable) {
+						throw new InterruptedException();
+					}
+					isInterrupted = true;
+				}
+			}
+		} finally {
+			pendingUpgrade = null;
+
+			/* Handed over just as it gave up */
+			if (!isAcquired && writeLockOwner.get() == currentThread) {
+				releaseWriteLock();
+			}
+
+			waitStrategy.waited(attempts, isAcquired);
+
+			if (isInterrupted) {
+				currentThread.interrupt();
+			}
+		}
 	}
 
 	/**
-	 * Only the Tail & Current nodes are known by the Lock and each of the links are
-	 * stored on the stack inside the acquire lock functions. When a lock is
-	 * acquired the links can be removed because only the latest Thread that needs
-	 * to be awakened when a Lock is released needs to be known and is as `current`.
+	 * Sets the {@link #updateLockOwner} if it is currently not set, otherwise
+	 * waits in {@link #updateWaiters} until the specified `deadline`.
 	 * 
-	 * @param thread
-	 *            the thread to insert in the queue
-	 * @return a {@link LockNode} for this link in the queue
+	 * @param currentThread
+	 *            the {@link Thread} that wants to own the {@link UpdateLock}
+	 * @param isInterruptable
+	 *            if this method should throw {@link InterruptedException} when
+	 *            interrupted (NOTE: if false, this method won't gobble the
+	 *            interrupted flag)
+	 * @param deadline
+	 *            when to stop waiting, see {@link Deadline}
+	 * @return true if the {@link #updateLockOwner} is now set to the
+	 *         currentThread, otherwise false
+	 * @throws InterruptedException
+	 *             if this {@link Thread} is interrupted while acquiring the
+	 *             {@link #updateLockOwner}
 	 */
-	private LockNode addNodeToQueue(Thread thread) {
-		LockNode node = new LockNode();
+	private boolean acquireUpdateLock(Thread currentThread, boolean isInterruptable, long deadline)
+			throws InterruptedException {
+
+		if (updateWaiters.isEmpty() && updateLockOwner.compareAndSet(null, currentThread)) {
+			return true;
+		}
+
+		/* Out of time is a single attempt that doesn't wait in line */
+		if (Deadline.isExpired(deadline)) {
+			return updateLockOwner.compareAndSet(null, currentThread);
+		}
 
-		for (;;) {
-			LockNode previous = tail.compareAndExchange(null, node);
-			if (previous == null) {
-				/* No other threads are in the queue so don't need to fix the previous Thread */
-				return node;
+		return acquireInTurn(updateWaiters, updateLockOwner, currentThread, null, false, isInterruptable, deadline);
+	}
+
+	/**
+	 * Places the currentThread in the `queue` and parks it until it is at the
+	 * head of the line and is able to acquire the Lock, is handed the `owner` or
+	 * `deadline` passes.</br>
+	 * 
+	 * A {@link Thread} leaving the line wakes whoever is next when it acquired a
+	 * {@link ReadLock} (so a run of waiting readers are all admitted together) or
+	 * when it gave up (so the wakeup it may have consumed isn't lost).
+	 * 
+	 * @param queue
+	 *            {@link #waiters} or {@link #updateWaiters}
+	 * @param owner
+	 *            the owner that `queue` hands out, {@link #writeLockOwner} or
+	 *            {@link #updateLockOwner}
+	 * @param currentThread
+	 *            the {@link Thread} that is waiting
+	 * @param reader
+	 *            the {@link HoldCounter} of the current {@link Thread} to wait for
+	 *            a {@link ReadLock}, null to wait for the `owner`
+	 * @param isFirst
+	 *            true to cut to the front of the line
+	 * @param isInterruptable
+	 *            if this method should throw {@link InterruptedException} when
+	 *            interrupted (NOTE: if false, this method won't gobble the
+	 *            interrupted flag)
+	 * @param deadline
+	 *            when to stop waiting, see {@link Deadline}
+	 * @return true if the Lock was acquired, otherwise false
+	 * @throws InterruptedException
+	 *             if this {@link Thread} is interrupted while waiting
+	 */
+	private boolean acquireInTurn(WaitQueue queue, AtomicReference<Thread> owner, Thread currentThread,
+			HoldCounter reader, boolean isFirst, boolean isInterruptable, long deadline) throws InterruptedException {
+
+		boolean isRead = reader != null;
+
+		WaitQueue.Node node = queue.enqueue(isRead, isFirst);
+		if (metrics != null) {
+			metrics.queued(queue.size());
+		}
+
+		int attempts = 0;
+		boolean isAcquired = false;
+		boolean isInterrupted = false;
+		try {
+			for (;;) {
+				/* Another Thread released the WriteLock straight to this one */
+				if (node.isGranted()) {
+					isAcquired = true;
+					return true;
+				}
+
+				/* Only woken to try once it is at the head of the line */
+				if (node.tryClearSignal()) {
+					if (isRead ? tryAcquireReadLock(reader, true) : owner.compareAndSet(null, currentThread)) {
+						queue.acquired(node);
+						isAcquired = true;
+						return true;
+					}
+					continue;
+				}
+
+				long remaining = Deadline.remaining(deadline);
+				if (remaining <= 0) {
+					isAcquired = queue.cancel(node);
+					if (isRead) {
+						/* The writer may be waiting for this reader to arrive */
+						LockSupport.unpark(writeLockOwner.get());
+						signalAsync();
+					}
+					return isAcquired;
+				}
+
+				waitStrategy.pause(this, attempts++, remaining);
+
+				if (Thread.interrupted()) {
+					if (isInterruptable) {
+						if (queue.cancel(node)) {
+							if (queue == waiters) {
+								releaseWriteLock();
+							} else {
+								releaseUpdateLock();
+							}
+						} else if (isRead) {
+							LockSupport.unpark(writeLockOwner.get());
+							signalAsync();
+						}
+						throw new InterruptedException();
+					}
+					isInterrupted = true;
+				}
 			}
+		} finally {
+			waitStrategy.waited(attempts, isAcquired);
+
+			if (isInterrupted) {
+				currentThread.interrupt();
+			}
+		}
+	}
+
+	/**
+	 * @param ownReadLocks
+	 *            1 if the writer is one of the readers, otherwise 0
+	 * @param ownAsyncReadLocks
+	 *            1 if the writer is upgrading an {@link AsyncLockHandle}, otherwise
+	 *            0
+	 * @return true if anyone other than the writer holds a {@link ReadLock},
+	 *         either through a {@link Thread} or an {@link AsyncLockHandle}
+	 */
+	private boolean hasOtherReaders(long ownReadLocks, long ownAsyncReadLocks) {
+		if (readerIndicator.hasOtherReaders(ownReadLocks)) {
+			return true;
+		}
+
+		AsyncWaiters async = asyncWaiters;
+		return (async != null) && async.readers.get() != ownAsyncReadLocks;
+	}
+
+	/**
+	 * @return the {@link #asyncWaiters}, created if there are none yet
+	 */
+	private AsyncWaiters asyncWaiters() {
+		AsyncWaiters async = asyncWaiters;
+		if (async != null) {
+			return async;
+		}
+
+		AsyncWaiters created = new AsyncWaiters();
+		AsyncWaiters witness = (AsyncWaiters) ASYNC_WAITERS.compareAndExchange(this, null, created);
+		return (witness == null) ? created : witness;
+	}
+
+	private CompletableFuture<AsyncLockHandle> lockAsync(boolean isRead, long duration, TimeUnit unit,
+			Executor executor) {
 
-			if (previous.getNext().compareAndSet(null, thread)) {
-				/* Previous node points to this Thread now */
-				if (tail.compareAndSet(previous, node)) {
-					return node;
+		Objects.requireNonNull(unit, "unit");
+		Objects.requireNonNull(executor, "executor");
+
+		AsyncWaiters async = asyncWaiters();
+		AsyncWaiters.Request request = new AsyncWaiters.Request(isRead, executor);
+		awaitAsync(async, request, duration, unit);
+
+		async.queue.add(request);
+		grantAsync(async);
+		return request.future;
+	}
+
+	/**
+	 * Starts an asynchronous upgrade of an {@link AsyncLockHandle}
+	 * 
+	 * @return the {@link WriteLock} hold, completed exceptionally with an
+	 *         {@link IllegalStateException} if another {@link Thread} holds the
+	 *         {@link UpdateLock}
+	 */
+	@NotNull
+	CompletableFuture<AsyncLockHandle> upgradeAsync(long duration, @NotNull TimeUnit unit,
+			@NotNull Executor executor) {
+
+		Objects.requireNonNull(unit, "unit");
+		Objects.requireNonNull(executor, "executor");
+
+		AsyncWaiters async = asyncWaiters();
+		AsyncWaiters.Request request = new AsyncWaiters.Request(false, executor);
+
+		/* Same as a plain ReadLock, it can only upgrade if nobody else may */
+		if (!updateLockOwner.compareAndSet(null, AsyncWaiters.UPGRADER)) {
+			request.future.completeExceptionally(
+					new IllegalStateException("Cannot upgrade while another thread holds the UpdateLock"));
+			return request.future;
+		}
+
+		awaitAsync(async, request, duration, unit);
+
+		async.upgrade = request;
+		grantAsync(async);
+		return request.future;
+	}
+
+	/**
+	 * Releases an asynchronous hold
+	 * 
+	 * @param owner
+	 *            the {@link #writeLockOwner} of a {@link WriteLock} hold, null for a
+	 *            {@link ReadLock} hold
+	 */
+	void unlockAsync(Thread owner) {
+		AsyncWaiters async = asyncWaiters;
+
+		if (owner == null) {
+			async.readers.decrementAndGet();
+
+			/* The owner may be waiting for the readers to drain */
+			LockSupport.unpark(writeLockOwner.get());
+			grantAsync(async);
+			return;
+		}
+
+		combining.applyAll();
+		writeVersion.incrementAndGet();
+		releaseWriteLock(owner);
+
+		/* The UpdateLock was only taken to upgrade */
+		if (owner == AsyncWaiters.UPGRADER) {
+			releaseUpdateLock();
+		}
+	}
+
+	/**
+	 * Acquires an asynchronous {@link ReadLock} hold and then releases the
+	 * {@link WriteLock} hold of `owner`
+	 * 
+	 * @return the {@link ReadLock} hold
+	 */
+	@NotNull
+	AsyncLockHandle downgradeAsync(@NotNull Thread owner) {
+		/* Nobody else can be writing, so the reader is admitted straight away */
+		asyncWaiters.readers.incrementAndGet();
+		unlockAsync(owner);
+		return new AsyncLockHandle(this, null);
+	}
+
+	/**
+	 * Applies the timeout of a {@link AsyncWaiters.Request} and makes sure
+	 * whatever it held or was waiting on is given up as soon as it is cancelled
+	 * or times out
+	 */
+	private void awaitAsync(AsyncWaiters async, AsyncWaiters.Request request, long duration, TimeUnit unit) {
+		if (duration != Long.MAX_VALUE) {
+			request.future.orTimeout(Math.max(duration, 0L), unit);
+		}
+
+		request.future.whenComplete((handle, t) -> {
+			if (t != null) {
+				grantAsync(async);
+			}
+		});
+	}
+
+	/**
+	 * Grants whatever asynchronous acquisitions can be granted, if no other
+	 * {@link Thread} is already doing so
+	 */
+	private void signalAsync() {
+		AsyncWaiters async = asyncWaiters;
+		if (async != null) {
+			grantAsync(async);
+		}
+	}
+
+	/**
+	 * Grants the {@link AsyncWaiters#upgrade} and then the head of the
+	 * {@link AsyncWaiters#queue} (and whatever readers follow it) until one has
+	 * to wait. Only one {@link Thread} runs this at a time, a {@link Thread} that
+	 * finds another already granting leaves it to go around again.
+	 */
+	private void grantAsync(AsyncWaiters async) {
+		if (async.work.getAndIncrement() != 0) {
+			return;
+		}
+
+		int missed = 1;
+		do {
+			grantAsyncUpgrade(async);
+			while (grantAsyncHead(async)) {
+				/* Keep granting until the head has to wait */
+			}
+
+			missed = async.work.addAndGet(-missed);
+		} while (missed != 0);
+	}
+
+	/**
+	 * Moves the {@link AsyncWaiters#upgrade} along, which is similar to
+	 * {@link #acquireWriteLockToUpgrade(Thread, boolean, long)} followed by
+	 * {@link #awaitReaders(Thread, long, boolean, long)} with the
+	 * {@link AsyncWaiters#UPGRADER} in place of the current {@link Thread}
+	 */
+	private void grantAsyncUpgrade(AsyncWaiters async) {
+		AsyncWaiters.Request upgrade = async.upgrade;
+		if (upgrade == null) {
+			return;
+		}
+
+		Thread upgrader = AsyncWaiters.UPGRADER;
+		if (upgrade.future.isDone()) {
+			async.upgrade = null;
+			if (pendingUpgrade == upgrader) {
+				pendingUpgrade = null;
+			}
+			if (writeLockOwner.get() == upgrader) {
+				releaseWriteLock(upgrader);
+			}
+			releaseUpdateLock();
+			return;
+		}
+
+		Thread owner = writeLockOwner.get();
+		if (owner != upgrader && !(owner == null && writeLockOwner.compareAndSet(null, upgrader))) {
+			/* The owner hands over once it notices, it may be waiting for the upgrader */
+			pendingUpgrade = upgrader;
+			LockSupport.unpark(owner);
+			return;
+		}
+		if (pendingUpgrade == upgrader) {
+			pendingUpgrade = null;
+		}
+
+		if (hasOtherReaders(0L, 1L) || !tryStartWriting(0L, 1L)) {
+			return;
+		}
+
+		async.upgrade = null;
+		dispatchAsync(upgrade, new AsyncLockHandle(this, upgrader));
+	}
+
+	/**
+	 * Grants or discards the head of the {@link AsyncWaiters#queue}
+	 * 
+	 * @return true if the head was removed, false if it has to wait (or there is
+	 *         none)
+	 */
+	private boolean grantAsyncHead(AsyncWaiters async) {
+		AsyncWaiters.Request head = async.queue.peek();
+		if (head == null) {
+			return false;
+		}
+
+		Thread writer = AsyncWaiters.WRITER;
+		boolean isDraining = (async.draining == head);
+
+		if (head.future.isDone()) {
+			async.queue.poll();
+			if (isDraining) {
+				async.draining = null;
+				releaseWriteLock(writer);
+			}
+			return true;
+		}
+
+		if (head.isRead) {
+			async.readers.incrementAndGet();
+			if (writeLockOwner.get() != null) {
+				/* Lost the race to a writer, back out since it may be waiting on it */
+				async.readers.decrementAndGet();
+				LockSupport.unpark(writeLockOwner.get());
+				return false;
+			}
+
+			async.queue.poll();
+			dispatchAsync(head, new AsyncLockHandle(this, null));
+			return true;
+		}
+
+		if (!isDraining) {
+			if (pendingUpgrade != null || !writeLockOwner.compareAndSet(null, writer)) {
+				return false;
+			}
+			async.draining = head;
+		}
+
+		/* Same as awaitReaders(), step aside for the upgrader it may be waiting on */
+		if (pendingUpgrade != null) {
+			async.draining = null;
+			releaseWriteLock(writer);
+			return false;
+		}
+
+		if (hasOtherReaders(0L, 0L) || !tryStartWriting(0L, 0L)) {
+			return false;
+		}
+
+		async.draining = null;
+		async.queue.poll();
+		dispatchAsync(head, new AsyncLockHandle(this, writer));
+		return true;
+	}
+
+	/**
+	 * Completes the future of a granted {@link AsyncWaiters.Request} on its
+	 * executor, releasing the hold again if it was cancelled in the meantime
+	 */
+	private void dispatchAsync(AsyncWaiters.Request request, AsyncLockHandle handle) {
+		try {
+			request.executor.execute(() -> {
+				if (!request.future.complete(handle)) {
+					handle.unlock();
 				}
+			});
+		} catch (RuntimeException e) {
+			handle.unlock();
+			request.future.completeExceptionally(e);
+		}
+	}
+
+	/**
+	 * How many times a single {@link Thread} holds the {@link ReadLock}. A
+	 * mutable primitive so that locking and unlocking never box a {@link Long}
+	 * (similar to ReentrantReadWriteLock's HoldCounter).</br>
+	 * 
+	 * NOTE: Kept even once the count drops back to 0 so that a {@link Thread}
+	 * that repeatedly locks doesn't allocate a new one each time.
+	 */
+	private static final class HoldCounter {
+
+		/**
+		 * The id of the owning {@link Thread}, an id rather than the {@link Thread}
+		 * itself so {@link ReentreantUpgradeLock#cachedHoldCounter} doesn't keep a
+		 * finished {@link Thread} from being collected
+		 */
+		private final long threadId = Thread.currentThread().getId();
+
+		/**
+		 * Only read or written by the owning {@link Thread}
+		 */
+		private long count;
+
+		/**
+		 * The Lock being counted, only used by {@link #SHARED_HOLD_COUNTERS} where
+		 * one counter is reused for different Locks
+		 */
+		private ReentreantUpgradeLock lock;
+
+		/**
+		 * When (in nanos) the hold started, only set when the Lock has
+		 * {@link ReentreantUpgradeLock#metrics}
+		 */
+		private long acquiredAt;
+
+		/**
+		 * Where the {@link ReentreantUpgradeLock#readerIndicator} counted the
+		 * owning {@link Thread}, only meaningful while {@link #count} is above 0
+		 */
+		private int readerSlot;
+	}
+
+	/**
+	 * Builds a {@link ReentreantUpgradeLock}, anything not set uses the same
+	 * default as {@link ReentreantUpgradeLock#ReentreantUpgradeLock()}
+	 */
+	public static final class Builder {
+
+		private ReaderIndicator readerIndicator;
+
+		private WaitStrategy waitStrategy;
+
+		private FairnessPolicy fairnessPolicy;
+
+		private LockMetrics metrics;
+
+		private ClusterAssignment clusters;
+
+		private int maxLocalHandoffs;
+
+		private boolean isReaderBiased;
+
+		private Builder() {
+			this.readerIndicator = null;
+			this.waitStrategy = null;
+			this.fairnessPolicy = null;
+			this.metrics = null;
+			this.clusters = null;
+			this.maxLocalHandoffs = 0;
+			this.isReaderBiased = false;
+		}
+
+		/**
+		 * @param readerIndicator
+		 *            how the readers are counted (NOTE: must not be shared with
+		 *            another Lock)
+		 * @return this
+		 */
+		@NotNull
+		public Builder readerIndicator(@NotNull ReaderIndicator readerIndicator) {
+			this.readerIndicator = Objects.requireNonNull(readerIndicator, "readerIndicator");
+			return this;
+		}
+
+		/**
+		 * @param waitStrategy
+		 *            how waiting {@link Thread}s wait (NOTE: must not be shared with
+		 *            another Lock)
+		 * @return this
+		 */
+		@NotNull
+		public Builder waitStrategy(@NotNull WaitStrategy waitStrategy) {
+			this.waitStrategy = Objects.requireNonNull(waitStrategy, "waitStrategy");
+			return this;
+		}
+
+		/**
+		 * @param fairnessPolicy
+		 *            who goes next when both readers and writers are waiting,
+		 *            {@link FairnessPolicy#FIFO} by default
+		 * @return this
+		 */
+		@NotNull
+		public Builder fairnessPolicy(@NotNull FairnessPolicy fairnessPolicy) {
+			this.fairnessPolicy = Objects.requireNonNull(fairnessPolicy, "fairnessPolicy");
+			return this;
+		}
+
+		/**
+		 * @param metrics
+		 *            where to record contention (may be shared with other Locks to
+		 *            aggregate them)
+		 * @return this
+		 */
+		@NotNull
+		public Builder metrics(@NotNull LockMetrics metrics) {
+			this.metrics = Objects.requireNonNull(metrics, "metrics");
+			return this;
+		}
+
+		/**
+		 * Makes a cohort Lock, one that keeps the {@link WriteLock} within a cluster
+		 * of {@link Thread}s (e.g. a socket, see
+		 * {@link ClusterAssignment#numaNodes()}) while writers from that cluster are
+		 * waiting, and counts readers per cluster with a
+		 * {@link ClusteredReaderIndicator} unless a
+		 * {@link #readerIndicator(ReaderIndicator)} is set.</br>
+		 *
+		 * NOTE: Trades fairness for locality, a writer from another cluster may wait
+		 * for up to `maxLocalHandoffs` writers that arrived after it.
+		 *
+		 * @param clusters
+		 *            the cluster of every {@link Thread}
+		 * @param maxLocalHandoffs
+		 *            how many times in a row the {@link WriteLock} may be handed to a
+		 *            writer in the releasing {@link Thread}'s cluster before it is
+		 *            passed on in line
+		 * @return this
+		 * @throws IllegalArgumentException
+		 *             if `maxLocalHandoffs` is negative
+		 */
+		@NotNull
+		public Builder cohort(@NotNull ClusterAssignment clusters, int maxLocalHandoffs) {
+			if (maxLocalHandoffs < 0) {
+				throw new IllegalArgumentException("maxLocalHandoffs must not be negative");
+			}
+
+			this.clusters = Objects.requireNonNull(clusters, "clusters");
+			this.maxLocalHandoffs = maxLocalHandoffs;
+			return this;
+		}
+
+		/**
+		 * Biases the Lock towards readers with a {@link BiasedReaderIndicator} in
+		 * front of whichever {@link ReaderIndicator} it would otherwise use, for
+		 * Locks that are written rarely enough that an expensive write doesn't
+		 * matter.
+		 *
+		 * @return this
+		 */
+		@NotNull
+		public Builder readerBiased() {
+			this.isReaderBiased = true;
+			return this;
+		}
+
+		/**
+		 * @return a new Lock
+		 */
+		@NotNull
+		public ReentreantUpgradeLock build() {
+			ReaderIndicator indicator = readerIndicator;
+			if (indicator == null) {
+				indicator = (clusters == null) ? new CentralReaderIndicator() : new ClusteredReaderIndicator(clusters);
+			}
+			if (isReaderBiased) {
+				indicator = new BiasedReaderIndicator(indicator);
 			}
+
+			return new ReentreantUpgradeLock(indicator, (waitStrategy == null) ? new ParkingWaitStrategy() : waitStrategy,
+					(fairnessPolicy == null) ? FairnessPolicy.FIFO : fairnessPolicy, metrics, false, clusters,
+					maxLocalHandoffs);
 		}
 	}
 
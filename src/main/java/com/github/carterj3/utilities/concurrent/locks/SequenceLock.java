@@ -0,0 +1,258 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Objects;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A sequence lock (seqlock) for small values that are read far more often than
+ * they are written, i.e. a few `long`s updated by a single writer
+ * {@link Thread}. A writer makes the sequence odd before it writes and even
+ * again afterwards. A reader remembers the (even) sequence, reads and then
+ * checks the sequence didn't change, retrying if it did. Readers never write
+ * to shared memory, so unlike a {@link UpgradableReadLock} they don't contend
+ * with each other at all.</br>
+ *
+ * Writers use the same idiom as {@link DowngradableWriteLock#open()}:
+ *
+ * <pre>
+ * try (SequenceLock lock = sequenceLock.open()) {
+ * 	timestamp = now;
+ * 	count++;
+ * }
+ * </pre>
+ *
+ * And readers, with a {@link Reader} each, retry until what they read was
+ * consistent:
+ *
+ * <pre>
+ * do {
+ * 	try (SequenceLock.Reader read = reader.open()) {
+ * 		t = timestamp;
+ * 		c = count;
+ * 	}
+ * } while (!reader.isConsistent());
+ * </pre>
+ *
+ * NOTE: What a reader sees before it is validated may be torn or half
+ * written, it must only copy fields (never follow a reference it read or act
+ * on a value) until {@link #validate(long)} says it is consistent. Writers
+ * wait for each other the same way readers wait for a write (spinning, then
+ * yielding, then parking a little at a time since nobody unparks them), it is
+ * meant for a single writer (see {@link SequenceLocked} for a typed wrapper).
+ *
+ * @author jeffrey.carter
+ *
+ */
+public class SequenceLock implements AutoCloseable {
+
+	/**
+	 * {@link #sequence}, so it can be compare-and-set and read with acquire
+	 * semantics without an extra object per Lock
+	 */
+	private static final VarHandle SEQUENCE;
+	static {
+		try {
+			SEQUENCE = MethodHandles.lookup().findVarHandle(SequenceLock.class, "sequence", long.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * How many times to {@link Thread#onSpinWait()} before yielding, a write is
+	 * expected to take far less than that
+	 */
+	private static final int SPINS = 1 << 10;
+
+	/**
+	 * How many times to {@link Thread#yield()} after spinning and before parking
+	 */
+	private static final int YIELDS = 4;
+
+	/**
+	 * How long to park each time once done yielding (i.e. the writer was
+	 * descheduled mid write)
+	 */
+	private static final long PARK_NANOS = 50_000L;
+
+	/**
+	 * Odd while a write is in progress
+	 */
+	private volatile long sequence;
+
+	public SequenceLock() {
+		this.sequence = 0L;
+	}
+
+	/**
+	 * Waits for a write in progress (if any) to finish
+	 *
+	 * @return the stamp to {@link #validate(long)} once done reading
+	 */
+	public long beginRead() {
+		long stamp = (long) SEQUENCE.getAcquire(this);
+		for (int attempt = 0; (stamp & 1L) != 0L; attempt++) {
+			pause(attempt);
+			stamp = (long) SEQUENCE.getAcquire(this);
+		}
+
+		return stamp;
+	}
+
+	/**
+	 * @param stamp
+	 *            from {@link #beginRead()}
+	 * @return true if nothing was written since the stamp was taken, so what was
+	 *         read in between is consistent
+	 */
+	public boolean validate(long stamp) {
+		/* The reads of the value must not move past the sequence */
+		VarHandle.acquireFence();
+		return stamp == sequence;
+	}
+
+	/**
+	 * Starts writing, waiting while another writer is
+	 */
+	public void beginWrite() {
+		for (int attempt = 0;; attempt++) {
+			long current = sequence;
+			if ((current & 1L) == 0L && SEQUENCE.compareAndSet(this, current, current + 1L)) {
+				break;
+			}
+			pause(attempt);
+		}
+
+		/* The writes of the value must not move before the sequence */
+		VarHandle.storeStoreFence();
+	}
+
+	/**
+	 * Finishes writing, readers that overlapped with it retry
+	 *
+	 * @throws IllegalStateException
+	 *             if no write was in progress
+	 */
+	public void endWrite() {
+		long current = sequence;
+		if ((current & 1L) == 0L) {
+			throw new IllegalStateException("Not writing");
+		}
+
+		SEQUENCE.setRelease(this, current + 1L);
+	}
+
+	/**
+	 * Waits a little for a write in progress to finish, see
+	 * {@link SpinningWaitStrategy} (without the adaptive budget, which would need
+	 * state per Lock)
+	 *
+	 * @param attempt
+	 *            how many times the current {@link Thread} has already paused
+	 */
+	private void pause(int attempt) {
+		if (attempt < SPINS) {
+			Thread.onSpinWait();
+		} else if (attempt < SPINS + YIELDS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(this, PARK_NANOS);
+		}
+	}
+
+	/**
+	 * @return true if a write is in progress
+	 */
+	public boolean isWriting() {
+		return (sequence & 1L) != 0L;
+	}
+
+	/**
+	 * @return a new {@link Reader}, keep one per reading {@link Thread} so reading
+	 *         allocates nothing
+	 */
+	@NotNull
+	public Reader reader() {
+		return new Reader(this);
+	}
+
+	/**
+	 * {@link #beginWrite()}
+	 *
+	 * @return this, to {@link #close()} once written
+	 */
+	@NotNull
+	public SequenceLock open() {
+		beginWrite();
+
+		return this;
+	}
+
+	/**
+	 * {@link #endWrite()}
+	 */
+	@Override
+	public void close() {
+		endWrite();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("sequence: %d, writing: %s", sequence, isWriting());
+	}
+
+	/**
+	 * One {@link Thread}'s reads of a {@link SequenceLock}, {@link #open()}
+	 * starts a read and {@link #close()} validates it.</br>
+	 *
+	 * NOTE: Not thread safe, every reading {@link Thread} needs its own.
+	 */
+	public static final class Reader implements AutoCloseable {
+
+		private SequenceLock lock;
+
+		private long stamp;
+
+		private boolean isConsistent;
+
+		Reader(@NotNull SequenceLock lock) {
+			this.lock = Objects.requireNonNull(lock, "lock");
+			this.stamp = 0L;
+			this.isConsistent = false;
+		}
+
+		/**
+		 * {@link SequenceLock#beginRead()}
+		 *
+		 * @return this, to {@link #close()} once read
+		 */
+		@NotNull
+		public Reader open() {
+			stamp = lock.beginRead();
+			isConsistent = false;
+
+			return this;
+		}
+
+		/**
+		 * {@link SequenceLock#validate(long)}, see {@link #isConsistent()}
+		 */
+		@Override
+		public void close() {
+			isConsistent = lock.validate(stamp);
+		}
+
+		/**
+		 * @return true if what was read between the last {@link #open()} and
+		 *         {@link #close()} is consistent, otherwise it has to be read
+		 *         again
+		 */
+		public boolean isConsistent() {
+			return isConsistent;
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A small mutable record (i.e. a timestamp plus a few counters) published
+ * through a {@link SequenceLock}. The writer changes it in place and readers
+ * copy it out (or compute a single `long` from it) without ever writing to
+ * shared memory, retrying whenever a write overlapped.</br>
+ *
+ * NOTE: The `copier` and the functions given to {@link #readLong(ToLongFunction)}
+ * may run against a half written record, they must only read its fields (no
+ * side effects, no following references that a write could change) and are
+ * simply run again. An exception thrown by a read that turns out to be
+ * inconsistent is ignored the same way.
+ *
+ * @author jeffrey.carter
+ *
+ * @param <T>
+ *            the type of the record, mutable and only ever changed through
+ *            {@link #write(Consumer)}
+ */
+public class SequenceLocked<T> {
+
+	private SequenceLock lock;
+
+	private Supplier<? extends T> factory;
+
+	private BiConsumer<? super T, ? super T> copier;
+
+	/**
+	 * The published record, only changed while {@link #lock} is held for writing
+	 */
+	private T value;
+
+	/**
+	 * @param factory
+	 *            creates an empty record, for the published one and for
+	 *            {@link #read()}
+	 * @param copier
+	 *            copies every field of the first record into the second
+	 */
+	public SequenceLocked(@NotNull Supplier<? extends T> factory, @NotNull BiConsumer<? super T, ? super T> copier) {
+		this.lock = new SequenceLock();
+		this.factory = Objects.requireNonNull(factory, "factory");
+		this.copier = Objects.requireNonNull(copier, "copier");
+		this.value = Objects.requireNonNull(factory.get(), "factory.get()");
+	}
+
+	/**
+	 * @param writer
+	 *            changes the record in place, readers see all of its changes or
+	 *            none of them
+	 */
+	public void write(@NotNull Consumer<? super T> writer) {
+		lock.beginWrite();
+		try {
+			writer.accept(value);
+		} finally {
+			lock.endWrite();
+		}
+	}
+
+	/**
+	 * @param into
+	 *            where to copy the record (i.e. one reused by the reading
+	 *            {@link Thread})
+	 * @return `into`, holding a consistent copy
+	 */
+	@NotNull
+	public T read(@NotNull T into) {
+		for (;;) {
+			long stamp = lock.beginRead();
+			try {
+				copier.accept(value, into);
+			} catch (RuntimeException e) {
+				if (lock.validate(stamp)) {
+					throw e;
+				}
+				continue;
+			}
+
+			if (lock.validate(stamp)) {
+				return into;
+			}
+		}
+	}
+
+	/**
+	 * @return a new consistent copy of the record
+	 */
+	@NotNull
+	public T read() {
+		return read(factory.get());
+	}
+
+	/**
+	 * @param reader
+	 *            computes the result from a consistent record (i.e. a single
+	 *            field or a ratio of two)
+	 * @return what `reader` returned, without copying the record
+	 */
+	public long readLong(@NotNull ToLongFunction<? super T> reader) {
+		for (;;) {
+			long stamp = lock.beginRead();
+			long result;
+			try {
+				result = reader.applyAsLong(value);
+			} catch (RuntimeException e) {
+				if (lock.validate(stamp)) {
+					throw e;
+				}
+				continue;
+			}
+
+			if (lock.validate(stamp)) {
+				return result;
+			}
+		}
+	}
+
+	/**
+	 * @return the {@link SequenceLock} guarding the record
+	 */
+	@NotNull
+	public SequenceLock getLock() {
+		return lock;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s, value: %s", lock, read());
+	}
+}
@@ -0,0 +1,101 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link WaitStrategy} that spins (with {@link Thread#onSpinWait()}) for a
+ * while, then yields a few times and only then parks. When the Lock is held for
+ * less time than a park & unpark takes the waiter usually acquires it before
+ * ever reaching the park.</br>
+ * 
+ * The spin budget adapts to how long this Lock is actually held: waits that end
+ * while still spinning or yielding grow it, waits that had to park shrink it,
+ * so a Lock that is held for long stretches quickly stops wasting CPU.</br>
+ * 
+ * NOTE: Never spins on a single processor machine since the holder can't make
+ * progress while the waiter spins.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+public class SpinningWaitStrategy implements WaitStrategy {
+
+	/**
+	 * How many times to {@link Thread#yield()} after spinning and before parking
+	 */
+	private static final int YIELDS = 4;
+
+	/**
+	 * Upper bound on the adaptive spin budget, roughly tens of microseconds
+	 */
+	private static final int MAXIMUM_SPINS = 1 << 12;
+
+	/**
+	 * Whether spinning can help at all
+	 */
+	private static final boolean IS_MULTIPROCESSOR = Runtime.getRuntime().availableProcessors() > 1;
+
+	/**
+	 * The largest budget {@link #spins} may grow to
+	 */
+	private final int maximumSpins;
+
+	/**
+	 * How many pauses are spent spinning before yielding (NOTE: Updated without
+	 * synchronization, a lost update only makes the estimate a little stale)
+	 */
+	private volatile int spins;
+
+	/**
+	 * Spins up to {@value #MAXIMUM_SPINS} times before yielding
+	 */
+	public SpinningWaitStrategy() {
+		this(MAXIMUM_SPINS);
+	}
+
+	/**
+	 * @param maximumSpins
+	 *            the most times a waiter will spin before yielding, 0 disables
+	 *            spinning
+	 * @throws IllegalArgumentException
+	 *             if `maximumSpins` is negative
+	 */
+	public SpinningWaitStrategy(int maximumSpins) {
+		if (maximumSpins < 0) {
+			throw new IllegalArgumentException("maximumSpins must not be negative");
+		}
+
+		this.maximumSpins = IS_MULTIPROCESSOR ? maximumSpins : 0;
+		this.spins = this.maximumSpins;
+	}
+
+	@Override
+	public void pause(Object blocker, int attempt, long remaining) {
+		int spins = this.spins;
+		if (attempt < spins) {
+			Thread.onSpinWait();
+		} else if (attempt < spins + YIELDS) {
+			Thread.yield();
+		} else {
+			LockSupport.parkNanos(blocker, remaining);
+		}
+	}
+
+	@Override
+	public void waited(int attempts, boolean isAcquired) {
+		int spins = this.spins;
+
+		if (attempts >= spins + YIELDS) {
+			/* Had to park anyway so the spinning was wasted, back off quickly */
+			this.spins = spins >>> 1;
+		} else if (isAcquired && spins < maximumSpins) {
+			/* Spinning paid off, allow a little more of it */
+			this.spins = Math.min(maximumSpins, spins + (spins >>> 3) + 1);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Integer.toString(spins);
+	}
+}
@@ -0,0 +1,116 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * {@link KeyedUpgradeLocks} that hashes keys onto a fixed number of Locks.
+ * Nothing is allocated per key or per acquisition, but two keys that land on
+ * the same Lock block each other (and a {@link Thread} holding both simply
+ * re-enters the one Lock).</br>
+ *
+ * NOTE: Only one {@link Thread} may upgrade a Lock at a time, so upgrading a
+ * plain {@link UpgradableReadLock} can be refused because of an unrelated key,
+ * use {@link #updateLock(Object)} for read-check-then-write.
+ *
+ * @author jeffrey.carter
+ *
+ * @param <K>
+ *            the type of the keys
+ */
+public class StripedKeyedUpgradeLocks<K> implements KeyedUpgradeLocks<K> {
+
+	/**
+	 * Upper bound on the number of Locks
+	 */
+	private static final int MAXIMUM_STRIPES = 1 << 16;
+
+	private ReentreantUpgradeLock[] stripes;
+
+	/**
+	 * Number of Locks minus one, used to mask a hash into an index
+	 */
+	private int mask;
+
+	/**
+	 * Creates four Locks per available processor
+	 */
+	public StripedKeyedUpgradeLocks() {
+		this(Runtime.getRuntime().availableProcessors() * 4);
+	}
+
+	/**
+	 * @param stripes
+	 *            the number of Locks, rounded up to a power of two and capped at
+	 *            {@value #MAXIMUM_STRIPES}
+	 * @throws IllegalArgumentException
+	 *             if `stripes` is not positive
+	 */
+	public StripedKeyedUpgradeLocks(int stripes) {
+		this(stripes, ReentreantUpgradeLock::forVirtualThreads);
+	}
+
+	/**
+	 * @param stripes
+	 *            the number of Locks, rounded up to a power of two and capped at
+	 *            {@value #MAXIMUM_STRIPES}
+	 * @param lockFactory
+	 *            creates each Lock, by default
+	 *            {@link ReentreantUpgradeLock#forVirtualThreads()} so the Locks
+	 *            don't each have a {@link ThreadLocal}
+	 * @throws IllegalArgumentException
+	 *             if `stripes` is not positive
+	 */
+	public StripedKeyedUpgradeLocks(int stripes, @NotNull Supplier<ReentreantUpgradeLock> lockFactory) {
+		if (stripes < 1) {
+			throw new IllegalArgumentException("stripes must be positive");
+		}
+		Objects.requireNonNull(lockFactory, "lockFactory");
+
+		int capped = Math.min(MAXIMUM_STRIPES, stripes);
+		int size = (capped == 1) ? 1 : Integer.highestOneBit(capped - 1) << 1;
+
+		this.stripes = new ReentreantUpgradeLock[size];
+		for (int i = 0; i < size; i++) {
+			this.stripes[i] = Objects.requireNonNull(lockFactory.get(), "lockFactory.get()");
+		}
+		this.mask = size - 1;
+	}
+
+	@NotNull
+	@Override
+	public UpgradableReadLock readLock(@NotNull K key) {
+		return lockFor(key).readLock();
+	}
+
+	@NotNull
+	@Override
+	public DowngradableWriteLock writeLock(@NotNull K key) {
+		return lockFor(key).writeLock();
+	}
+
+	@NotNull
+	@Override
+	public UpdateLock updateLock(@NotNull K key) {
+		return lockFor(key).updateLock();
+	}
+
+	/**
+	 * @param key
+	 *            what to lock
+	 * @return the Lock the key always maps to
+	 */
+	@NotNull
+	public ReentreantUpgradeLock lockFor(@NotNull K key) {
+		/* Spread the high bits down since only the low bits pick the Lock */
+		int hash = key.hashCode() * 0x9E3779B9;
+		return stripes[(hash ^ (hash >>> 16)) & mask];
+	}
+
+	@Override
+	public String toString() {
+		return String.format("stripes: %d", stripes.length);
+	}
+}
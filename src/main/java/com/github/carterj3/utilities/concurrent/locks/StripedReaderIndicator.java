@@ -0,0 +1,118 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link ReaderIndicator} that spreads readers over several counters (similar
+ * to {@link java.util.concurrent.atomic.LongAdder}) so readers on different
+ * cores rarely write to the same cache line. Each counter is padded out to its
+ * own 128 bytes (two cache lines, to also defeat adjacent line
+ * prefetching).</br>
+ * 
+ * A {@link Thread} always maps to the same counter so no counter ever goes
+ * negative, which lets writers stop scanning as soon as they find another
+ * reader.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+public class StripedReaderIndicator implements ReaderIndicator {
+
+	/**
+	 * Number of longs between two used counters
+	 */
+	private static final int PADDING = 16;
+
+	/**
+	 * Upper bound on the number of counters, past this a writer scanning all of
+	 * them costs more than the contention it saves
+	 */
+	private static final int MAXIMUM_STRIPES = 64;
+
+	/**
+	 * The counters, only every {@link #PADDING}th index is used
+	 */
+	private AtomicLongArray cells;
+
+	/**
+	 * Number of counters minus one, used to mask a hash into an index
+	 */
+	private int mask;
+
+	/**
+	 * Creates one counter per available processor (rounded up to a power of two)
+	 */
+	public StripedReaderIndicator() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * @param stripes
+	 *            the number of counters, rounded up to a power of two and capped at
+	 *            {@value #MAXIMUM_STRIPES}
+	 * @throws IllegalArgumentException
+	 *             if `stripes` is not positive
+	 */
+	public StripedReaderIndicator(int stripes) {
+		if (stripes < 1) {
+			throw new IllegalArgumentException("stripes must be positive");
+		}
+
+		int capped = Math.min(MAXIMUM_STRIPES, stripes);
+		int size = (capped == 1) ? 1 : Integer.highestOneBit(capped - 1) << 1;
+
+		this.cells = new AtomicLongArray(size * PADDING);
+		this.mask = size - 1;
+	}
+
+	@Override
+	public int arrive() {
+		int index = indexOf(Thread.currentThread());
+		cells.getAndIncrement(index);
+		return index;
+	}
+
+	@Override
+	public void depart(int slot) {
+		cells.getAndDecrement(slot);
+	}
+
+	@Override
+	public boolean hasOtherReaders(long ownReaders) {
+		long seen = 0;
+		for (int i = 0; i < cells.length(); i += PADDING) {
+			seen += cells.get(i);
+			if (seen > ownReaders) {
+				return true;
+			}
+		}
+
+		return seen != ownReaders;
+	}
+
+	@Override
+	public long sum() {
+		long sum = 0;
+		for (int i = 0; i < cells.length(); i += PADDING) {
+			sum += cells.get(i);
+		}
+
+		return sum;
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(sum());
+	}
+
+	/**
+	 * @param thread
+	 *            the reader
+	 * @return the index of the counter the {@link Thread} always uses
+	 */
+	private int indexOf(Thread thread) {
+		/* Fibonacci hashing so sequential Thread ids land on different counters */
+		long hash = thread.getId() * 0x9E3779B97F4A7C15L;
+		return ((int) (hash >>> 32) & mask) * PADDING;
+	}
+}
@@ -0,0 +1,129 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * The intent-to-write mode of a {@link ReentreantUpgradeLock}. Holding it also
+ * holds the {@link UpgradableReadLock} so plain readers keep coming and going,
+ * but only one {@link Thread} holds it at a time and {@link #upgrade()} never
+ * has to wait on another upgrader.</br>
+ * 
+ * NOTE: A {@link Thread} that already holds the {@link UpgradableReadLock} or
+ * the {@link DowngradableWriteLock} only gets a single attempt at it, waiting
+ * could deadlock with the current owner upgrading.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+public class UpdateLock implements Lock, AutoCloseable {
+
+	/**
+	 * Why waiting without a time limit can still fail
+	 */
+	static final String NOT_ACQUIRED = "Cannot wait for the UpdateLock while holding the Lock, another thread holds it";
+
+	private ReentreantUpgradeLock parent;
+
+	UpdateLock(@NotNull ReentreantUpgradeLock parent) {
+		this.parent = parent;
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} holds the
+	 *             {@link UpgradableReadLock} or the {@link DowngradableWriteLock}
+	 *             and another {@link Thread} holds this Lock
+	 */
+	@Override
+	public void lock() {
+		boolean isAcquired;
+		try {
+			isAcquired = parent.tryLockUpdateLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS, false);
+		} catch (InterruptedException e) {
+			throw new IllegalStateException("Unable to reach as tryLockUpdateLock does not throw when !isInterruptable",
+					e);
+		}
+
+		if (!isAcquired) {
+			throw new IllegalStateException(NOT_ACQUIRED);
+		}
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} holds the
+	 *             {@link UpgradableReadLock} or the {@link DowngradableWriteLock}
+	 *             and another {@link Thread} holds this Lock
+	 */
+	@Override
+	public void lockInterruptibly() throws InterruptedException {
+		if (!parent.tryLockUpdateLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS, true)) {
+			throw new IllegalStateException(NOT_ACQUIRED);
+		}
+	}
+
+	/**
+	 * Not supported, wait on a {@link Condition} of another Lock instead.
+	 * 
+	 * @throws UnsupportedOperationException
+	 *             always
+	 */
+	@Override
+	public Condition newCondition() {
+		throw new UnsupportedOperationException("Conditions are not supported by an UpdateLock");
+	}
+
+	@Override
+	public boolean tryLock() {
+		try {
+			return parent.tryLockUpdateLock(0L, TimeUnit.NANOSECONDS, true);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	@Override
+	public boolean tryLock(long arg0, @NotNull TimeUnit arg1) throws InterruptedException {
+		return parent.tryLockUpdateLock(arg0, arg1, true);
+	}
+
+	@Override
+	public void unlock() {
+		parent.unlockUpdateLock();
+	}
+
+	/**
+	 * Acquires the {@link DowngradableWriteLock}, waiting only for the plain
+	 * readers to drain. Release it with {@link DowngradableWriteLock#unlock()} to
+	 * go back to just holding this Lock.
+	 * 
+	 * @return the {@link DowngradableWriteLock}, now held by the current
+	 *         {@link Thread}
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} does not hold this Lock
+	 * @throws InterruptedException
+	 *             if the current {@link Thread} is interrupted
+	 */
+	@NotNull
+	public DowngradableWriteLock upgrade() throws InterruptedException {
+		parent.upgradeUpdateLock();
+		return parent.writeLock();
+	}
+
+	@NotNull
+	public UpdateLock open() throws InterruptedException {
+		this.lockInterruptibly();
+
+		return this;
+	}
+
+	@Override
+	public void close() {
+		this.unlock();
+	}
+}
@@ -49,9 +49,21 @@ public class UpgradableReadLock implements Lock, AutoCloseable {
 
 	}
 
+	/**
+	 * @return the {@link DowngradableWriteLock}, now held by the current
+	 *         {@link Thread}
+	 * @throws IllegalStateException
+	 *             if another {@link Thread} holds the {@link UpdateLock}, only it
+	 *             may upgrade (use {@link ReentreantUpgradeLock#updateLock()} to
+	 *             wait for a turn instead)
+	 * @throws InterruptedException
+	 *             if the current {@link Thread} is interrupted
+	 */
 	@NotNull
 	public DowngradableWriteLock upgrade() throws InterruptedException {
-		parent.tryLockWriteLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS, true);
+		if (!parent.tryLockWriteLock(Long.MAX_VALUE, TimeUnit.NANOSECONDS, true)) {
+			throw new IllegalStateException("Cannot upgrade while another thread holds the UpdateLock");
+		}
 		return parent.writeLock();
 	}
 
@@ -0,0 +1,776 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * A read-mostly cache built on the read &rarr; check &rarr; upgrade &rarr;
+ * populate pattern of {@link ReentreantUpgradeLock}. Keys are hashed onto
+ * segments, each a map guarded by its own Lock, so a hit only takes a
+ * {@link UpgradableReadLock} and never waits on a hit or a load of another
+ * segment.</br>
+ *
+ * A miss takes the segment's {@link UpdateLock} to check again and, if nobody
+ * is loading the key yet, upgrades just long enough to register a load of it.
+ * The value is then loaded with no Lock held, so readers, writers and loads of
+ * other keys of the segment carry on, while the other {@link Thread}s that miss
+ * the same key wait for that load instead of starting their own. Once loaded
+ * the value is inserted under the {@link DowngradableWriteLock}.</br>
+ *
+ * Each segment holds at most its share of the maximum size and evicts with
+ * CLOCK (second chance), an approximation of LRU: a hit only marks the entry
+ * as referenced, which a reader can do without the write lock, and the
+ * eviction skips (and unmarks) referenced entries once. The shares add up to
+ * exactly the maximum size, so there are never more segments than that.
+ * Entries can also expire a fixed time after they were written.</br>
+ *
+ * NOTE: A loader must not load its own key through the same cache, it would
+ * wait for itself (which throws an {@link IllegalStateException}). Null values
+ * are returned but not cached. A {@link #put(Object, Object)} or an
+ * invalidation during a load wins, the loaded value is returned but not
+ * cached, and a later miss of the key waits for that load to finish before
+ * loading it again.
+ *
+ * @author jeffrey.carter
+ *
+ * @param <K>
+ *            the type of the keys, with a consistent
+ *            {@link Object#hashCode()} & {@link Object#equals(Object)}
+ * @param <V>
+ *            the type of the values
+ */
+public class UpgradeLockCache<K, V> {
+
+	/**
+	 * Upper bound on the number of segments
+	 */
+	private static final int MAXIMUM_SEGMENTS = 1 << 16;
+
+	private Segment<K, V>[] segments;
+
+	/**
+	 * Number of segments minus one, used to mask a hash into an index
+	 */
+	private int mask;
+
+	/**
+	 * How long (in nanos) an entry lives after it was written, 0 if forever
+	 */
+	private long expireAfterWriteNanos;
+
+	private LongSupplier clock;
+
+	private LongAdder hits;
+
+	private LongAdder misses;
+
+	private LongAdder loadSuccesses;
+
+	private LongAdder loadFailures;
+
+	private LongAdder totalLoadNanos;
+
+	private LongAdder evictions;
+
+	private UpgradeLockCache(int segments, long maximumSize, long expireAfterWriteNanos,
+			Supplier<ReentreantUpgradeLock> lockFactory, LongSupplier clock) {
+		int capped = Math.min(MAXIMUM_SEGMENTS, segments);
+		int size = (capped == 1) ? 1 : Integer.highestOneBit(capped - 1) << 1;
+
+		/* Every segment keeps at least one entry */
+		if (size > maximumSize) {
+			size = Integer.highestOneBit((int) maximumSize);
+		}
+
+		/* Equal shares, the remainder is spread one each over the first segments */
+		boolean isBounded = maximumSize != Long.MAX_VALUE;
+		long share = maximumSize / size;
+		long remainder = maximumSize % size;
+
+		this.segments = newSegments(size);
+		for (int i = 0; i < size; i++) {
+			long capacity = !isBounded ? Long.MAX_VALUE : (i < remainder) ? share + 1 : share;
+			this.segments[i] = new Segment<>(Objects.requireNonNull(lockFactory.get(), "lockFactory.get()"),
+					capacity);
+		}
+		this.mask = size - 1;
+		this.expireAfterWriteNanos = expireAfterWriteNanos;
+		this.clock = clock;
+
+		this.hits = new LongAdder();
+		this.misses = new LongAdder();
+		this.loadSuccesses = new LongAdder();
+		this.loadFailures = new LongAdder();
+		this.totalLoadNanos = new LongAdder();
+		this.evictions = new LongAdder();
+	}
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> Segment<K, V>[] newSegments(int size) {
+		return (Segment<K, V>[]) new Segment<?, ?>[size];
+	}
+
+	/**
+	 * @return a {@link Builder} for a cache, unbounded with no expiry by default
+	 */
+	@NotNull
+	public static <K, V> Builder<K, V> builder() {
+		return new Builder<>();
+	}
+
+	/**
+	 * @param key
+	 *            what to look up
+	 * @param loader
+	 *            loads the value on a miss with no Lock held, it is called at
+	 *            most once at a time per key
+	 * @return the cached value, or the one `loader` returned
+	 * @throws RuntimeException
+	 *             whatever `loader` threw (also to the {@link Thread}s waiting
+	 *             for that load), nothing is cached
+	 * @throws IllegalStateException
+	 *             if `loader` loads its own key through this cache
+	 */
+	public V get(@NotNull K key, @NotNull Function<? super K, ? extends V> loader) {
+		Segment<K, V> segment = segmentFor(key);
+
+		/* Fast path, a hit only reads */
+		V value = getIfPresent(segment, key);
+		if (value != null) {
+			return value;
+		}
+
+		for (;;) {
+			Load<V> inFlight;
+			boolean isSuperseded = false;
+			Load<V> registered = null;
+			UpdateLock updateLock = segment.lock.updateLock();
+			updateLock.lock();
+			try {
+				/* Loaded in between */
+				value = getIfPresent(segment, key);
+				if (value != null) {
+					return value;
+				}
+
+				inFlight = segment.loads.get(key);
+				if (inFlight != null) {
+					isSuperseded = inFlight.isSuperseded;
+				} else {
+					registered = new Load<>(Thread.currentThread());
+					try {
+						DowngradableWriteLock writeLock = updateLock.upgrade();
+						try {
+							segment.loads.put(key, registered);
+						} finally {
+							writeLock.unlock();
+						}
+					} catch (InterruptedException e) {
+						/* Still loaded, just not shared or cached */
+						Thread.currentThread().interrupt();
+						registered = null;
+					}
+				}
+			} finally {
+				updateLock.unlock();
+			}
+
+			if (inFlight == null) {
+				return load(segment, key, loader, registered);
+			}
+			if (!isSuperseded) {
+				return await(inFlight);
+			}
+
+			/* Its value is older than the put or invalidation, wait for it to finish and look again */
+			awaitCompletion(inFlight);
+		}
+	}
+
+	/**
+	 * @param key
+	 *            what to look up
+	 * @return the cached value, null if it isn't cached (or has expired)
+	 */
+	public V getIfPresent(@NotNull K key) {
+		V value = getIfPresent(segmentFor(key), key);
+		if (value == null) {
+			misses.increment();
+		}
+
+		return value;
+	}
+
+	/**
+	 * Caches `value`, replacing whatever was cached (or is being loaded) for
+	 * `key`
+	 */
+	public void put(@NotNull K key, @NotNull V value) {
+		Objects.requireNonNull(value, "value");
+
+		Segment<K, V> segment = segmentFor(key);
+		DowngradableWriteLock writeLock = segment.lock.writeLock();
+		writeLock.lock();
+		try {
+			/* A load in progress would overwrite it with an older value */
+			segment.supersede(key);
+			segment.put(key, value, now(), this);
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * @param key
+	 *            what to remove
+	 * @return the value that was cached (even if it had expired), null if none
+	 *         was
+	 */
+	public V invalidate(@NotNull K key) {
+		Segment<K, V> segment = segmentFor(key);
+		DowngradableWriteLock writeLock = segment.lock.writeLock();
+		writeLock.lock();
+		try {
+			segment.supersede(key);
+			Entry<V> entry = segment.entries.remove(key);
+			return (entry == null) ? null : entry.value;
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Removes every entry, one segment at a time
+	 */
+	public void invalidateAll() {
+		for (Segment<K, V> segment : segments) {
+			DowngradableWriteLock writeLock = segment.lock.writeLock();
+			writeLock.lock();
+			try {
+				for (Load<V> load : segment.loads.values()) {
+					load.isSuperseded = true;
+				}
+				segment.entries.clear();
+			} finally {
+				writeLock.unlock();
+			}
+		}
+	}
+
+	/**
+	 * @return the number of cached entries (including expired ones that haven't
+	 *         been removed yet), counted one segment at a time
+	 */
+	public long size() {
+		long size = 0L;
+		for (Segment<K, V> segment : segments) {
+			UpgradableReadLock readLock = segment.lock.readLock();
+			readLock.lock();
+			try {
+				size += segment.entries.size();
+			} finally {
+				readLock.unlock();
+			}
+		}
+
+		return size;
+	}
+
+	/**
+	 * @return a snapshot of the statistics so far
+	 */
+	@NotNull
+	public Stats stats() {
+		return new Stats(hits.sum(), misses.sum(), loadSuccesses.sum(), loadFailures.sum(), totalLoadNanos.sum(),
+				evictions.sum());
+	}
+
+	@Override
+	public String toString() {
+		return String.format("segments: %d, size: %d, %s", segments.length, size(), stats());
+	}
+
+	/**
+	 * Calls `loader` with no Lock held
+	 *
+	 * @param load
+	 *            the {@link Load} registered for `key` to share the value with
+	 *            (and cache it), null if there is none
+	 */
+	private V load(Segment<K, V> segment, K key, Function<? super K, ? extends V> loader, Load<V> load) {
+		misses.increment();
+		long startTime = System.nanoTime();
+
+		V value;
+		try {
+			value = loader.apply(key);
+		} catch (RuntimeException | Error e) {
+			loadFailures.increment();
+			totalLoadNanos.add(System.nanoTime() - startTime);
+			if (load != null) {
+				publish(segment, key, load, null);
+				load.completeExceptionally(e);
+			}
+			throw e;
+		}
+		loadSuccesses.increment();
+		totalLoadNanos.add(System.nanoTime() - startTime);
+
+		if (load != null) {
+			publish(segment, key, load, value);
+			load.complete(value);
+		}
+
+		return value;
+	}
+
+	/**
+	 * Forgets `load` and caches `value`, unless it is null or `load` was
+	 * superseded by a {@link #put(Object, Object)} or an invalidation
+	 */
+	private void publish(Segment<K, V> segment, K key, Load<V> load, V value) {
+		DowngradableWriteLock writeLock = segment.lock.writeLock();
+		writeLock.lock();
+		try {
+			segment.loads.remove(key, load);
+			if (!load.isSuperseded && value != null) {
+				segment.put(key, value, now(), this);
+			}
+		} finally {
+			writeLock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for another {@link Thread}'s load, which counts as a hit
+	 *
+	 * @return the value it loaded
+	 */
+	private V await(Load<V> load) {
+		checkNotLoading(load);
+
+		V value;
+		try {
+			value = load.join();
+		} catch (CompletionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			}
+			if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw e;
+		}
+		hits.increment();
+
+		return value;
+	}
+
+	/**
+	 * Waits for another {@link Thread}'s load to finish, however it ends
+	 */
+	private void awaitCompletion(Load<V> load) {
+		checkNotLoading(load);
+
+		try {
+			load.join();
+		} catch (CompletionException e) {
+			/* Its loader already threw it to that Thread */
+		}
+	}
+
+	/**
+	 * @throws IllegalStateException
+	 *             if the current {@link Thread} is the one calling the loader of
+	 *             `load`, it would wait for itself
+	 */
+	private static void checkNotLoading(Load<?> load) {
+		if (load.thread == Thread.currentThread()) {
+			throw new IllegalStateException("Cannot load a key while loading it");
+		}
+	}
+
+	/**
+	 * Counts a hit, a miss is left to the caller
+	 *
+	 * @return the cached value, null if there isn't a live one
+	 */
+	private V getIfPresent(Segment<K, V> segment, K key) {
+		UpgradableReadLock readLock = segment.lock.readLock();
+		readLock.lock();
+		try {
+			Entry<V> entry = segment.entries.get(key);
+			if (entry == null || isExpired(entry, now())) {
+				return null;
+			}
+
+			/* Only written when it changes, so hot entries don't bounce a cache line */
+			if (!entry.isReferenced) {
+				entry.isReferenced = true;
+			}
+			hits.increment();
+			return entry.value;
+		} finally {
+			readLock.unlock();
+		}
+	}
+
+	/**
+	 * @return the current time (in nanos), 0 if nothing expires
+	 */
+	private long now() {
+		return (expireAfterWriteNanos == 0L) ? 0L : clock.getAsLong();
+	}
+
+	private boolean isExpired(Entry<V> entry, long now) {
+		return expireAfterWriteNanos != 0L && now - entry.writtenAt >= expireAfterWriteNanos;
+	}
+
+	/**
+	 * @param key
+	 *            what to look up
+	 * @return the segment the key always maps to
+	 */
+	private Segment<K, V> segmentFor(K key) {
+		/* Spread the high bits down since only the low bits pick the segment */
+		int hash = key.hashCode() * 0x9E3779B9;
+		return segments[(hash ^ (hash >>> 16)) & mask];
+	}
+
+	/**
+	 * A cached value
+	 */
+	private static final class Entry<V> {
+
+		private V value;
+
+		/**
+		 * When (in nanos) it was written, see {@link UpgradeLockCache#now()}
+		 */
+		private long writtenAt;
+
+		/**
+		 * Set by a hit, cleared when the eviction gives it a second chance
+		 */
+		private volatile boolean isReferenced;
+
+		Entry(V value, long writtenAt) {
+			this.value = value;
+			this.writtenAt = writtenAt;
+			this.isReferenced = false;
+		}
+	}
+
+	/**
+	 * A load in progress, the other {@link Thread}s that miss its key wait for it
+	 */
+	private static final class Load<V> extends CompletableFuture<V> {
+
+		/**
+		 * The {@link Thread} calling the loader
+		 */
+		private Thread thread;
+
+		/**
+		 * Set by a {@link UpgradeLockCache#put(Object, Object)} or an invalidation
+		 * of its key, so its value isn't cached (or handed to later misses). Only
+		 * read under the {@link UpdateLock} and only written under the
+		 * {@link DowngradableWriteLock}.
+		 */
+		private boolean isSuperseded;
+
+		Load(Thread thread) {
+			this.thread = thread;
+			this.isSuperseded = false;
+		}
+	}
+
+	/**
+	 * The entries of one Lock, oldest first. Only read under the
+	 * {@link UpgradableReadLock} and only modified under the
+	 * {@link DowngradableWriteLock}.
+	 */
+	private static final class Segment<K, V> {
+
+		private ReentreantUpgradeLock lock;
+
+		private LinkedHashMap<K, Entry<V>> entries;
+
+		/**
+		 * The loads in progress, read under the {@link UpdateLock}
+		 */
+		private HashMap<K, Load<V>> loads;
+
+		/**
+		 * Maximum number of entries
+		 */
+		private long capacity;
+
+		Segment(ReentreantUpgradeLock lock, long capacity) {
+			this.lock = lock;
+			this.entries = new LinkedHashMap<>();
+			this.loads = new HashMap<>();
+			this.capacity = capacity;
+		}
+
+		/**
+		 * Keeps the load of `key` in progress (if any) from being cached, the
+		 * {@link DowngradableWriteLock} must be held
+		 */
+		void supersede(K key) {
+			Load<V> load = loads.get(key);
+			if (load != null) {
+				load.isSuperseded = true;
+			}
+		}
+
+		/**
+		 * Inserts (or replaces) the entry and evicts down to the {@link #capacity},
+		 * the {@link DowngradableWriteLock} must be held
+		 */
+		void put(K key, V value, long now, UpgradeLockCache<K, V> cache) {
+			/* Replaced entries move to the back, they are new again */
+			Entry<V> inserted = new Entry<>(value, now);
+			entries.remove(key);
+			entries.put(key, inserted);
+
+			long evicted = 0L;
+			Iterator<Map.Entry<K, Entry<V>>> iterator = entries.entrySet().iterator();
+			while (entries.size() > capacity) {
+				if (!iterator.hasNext()) {
+					iterator = entries.entrySet().iterator();
+				}
+
+				/* The entry being inserted is never the one evicted */
+				Entry<V> entry = iterator.next().getValue();
+				if (entry == inserted) {
+					continue;
+				}
+				if (entry.isReferenced && !cache.isExpired(entry, now)) {
+					entry.isReferenced = false;
+					continue;
+				}
+
+				iterator.remove();
+				evicted++;
+			}
+
+			if (evicted > 0L) {
+				cache.evictions.add(evicted);
+			}
+		}
+	}
+
+	/**
+	 * Statistics of an {@link UpgradeLockCache} at one point in time
+	 */
+	public static final class Stats {
+
+		private long hitCount;
+
+		private long missCount;
+
+		private long loadSuccessCount;
+
+		private long loadFailureCount;
+
+		private long totalLoadNanos;
+
+		private long evictionCount;
+
+		Stats(long hitCount, long missCount, long loadSuccessCount, long loadFailureCount, long totalLoadNanos,
+				long evictionCount) {
+			this.hitCount = hitCount;
+			this.missCount = missCount;
+			this.loadSuccessCount = loadSuccessCount;
+			this.loadFailureCount = loadFailureCount;
+			this.totalLoadNanos = totalLoadNanos;
+			this.evictionCount = evictionCount;
+		}
+
+		/**
+		 * @return how many lookups found a live value (or waited for another
+		 *         {@link Thread} to load it)
+		 */
+		public long getHitCount() {
+			return hitCount;
+		}
+
+		/**
+		 * @return how many lookups didn't (each miss of
+		 *         {@link UpgradeLockCache#get(Object, Function)} is one load)
+		 */
+		public long getMissCount() {
+			return missCount;
+		}
+
+		/**
+		 * @return how many loads returned (including null)
+		 */
+		public long getLoadSuccessCount() {
+			return loadSuccessCount;
+		}
+
+		/**
+		 * @return how many loads threw
+		 */
+		public long getLoadFailureCount() {
+			return loadFailureCount;
+		}
+
+		/**
+		 * @return total time spent loading, in nanos
+		 */
+		public long getTotalLoadNanos() {
+			return totalLoadNanos;
+		}
+
+		/**
+		 * @return how many entries were evicted to stay within the maximum size
+		 *         (or because they expired on the way)
+		 */
+		public long getEvictionCount() {
+			return evictionCount;
+		}
+
+		/**
+		 * @return hits / lookups, 1 if there were none
+		 */
+		public double getHitRate() {
+			long lookups = hitCount + missCount;
+			return (lookups == 0L) ? 1.0 : (double) hitCount / lookups;
+		}
+
+		@Override
+		public String toString() {
+			return String.format("hits: %d, misses: %d, loads: %d (%d failed, %dms), evictions: %d", hitCount,
+					missCount, loadSuccessCount + loadFailureCount, loadFailureCount,
+					TimeUnit.NANOSECONDS.toMillis(totalLoadNanos), evictionCount);
+		}
+	}
+
+	/**
+	 * Options of an {@link UpgradeLockCache}
+	 */
+	public static final class Builder<K, V> {
+
+		private int segments;
+
+		private long maximumSize;
+
+		private long expireAfterWriteNanos;
+
+		private Supplier<ReentreantUpgradeLock> lockFactory;
+
+		private LongSupplier clock;
+
+		private Builder() {
+			this.segments = Runtime.getRuntime().availableProcessors() * 4;
+			this.maximumSize = Long.MAX_VALUE;
+			this.expireAfterWriteNanos = 0L;
+			this.lockFactory = ReentreantUpgradeLock::forVirtualThreads;
+			this.clock = System::nanoTime;
+		}
+
+		/**
+		 * @param segments
+		 *            the number of Locks (and maps), rounded up to a power of two
+		 *            and capped at {@value UpgradeLockCache#MAXIMUM_SEGMENTS}, four
+		 *            per available processor by default
+		 * @return this
+		 * @throws IllegalArgumentException
+		 *             if `segments` is not positive
+		 */
+		@NotNull
+		public Builder<K, V> segments(int segments) {
+			if (segments < 1) {
+				throw new IllegalArgumentException("segments must be positive");
+			}
+			this.segments = segments;
+			return this;
+		}
+
+		/**
+		 * @param maximumSize
+		 *            the most entries to keep, split evenly over the segments (so
+		 *            a segment may evict while others still have room), unbounded
+		 *            by default. Also caps the number of segments.
+		 * @return this
+		 * @throws IllegalArgumentException
+		 *             if `maximumSize` is not positive
+		 */
+		@NotNull
+		public Builder<K, V> maximumSize(long maximumSize) {
+			if (maximumSize < 1L) {
+				throw new IllegalArgumentException("maximumSize must be positive");
+			}
+			this.maximumSize = maximumSize;
+			return this;
+		}
+
+		/**
+		 * @param duration
+		 *            how long an entry lives after it was written, forever by
+		 *            default
+		 * @param unit
+		 *            the {@link TimeUnit} of `duration`
+		 * @return this
+		 * @throws IllegalArgumentException
+		 *             if `duration` is not positive
+		 */
+		@NotNull
+		public Builder<K, V> expireAfterWrite(long duration, @NotNull TimeUnit unit) {
+			if (duration < 1L) {
+				throw new IllegalArgumentException("duration must be positive");
+			}
+			this.expireAfterWriteNanos = unit.toNanos(duration);
+			return this;
+		}
+
+		/**
+		 * @param lockFactory
+		 *            creates the Lock of each segment, by default
+		 *            {@link ReentreantUpgradeLock#forVirtualThreads()} so the Locks
+		 *            don't each have a {@link ThreadLocal}
+		 * @return this
+		 */
+		@NotNull
+		public Builder<K, V> lockFactory(@NotNull Supplier<ReentreantUpgradeLock> lockFactory) {
+			this.lockFactory = Objects.requireNonNull(lockFactory, "lockFactory");
+			return this;
+		}
+
+		/**
+		 * @param clock
+		 *            the time in nanos for expiry, {@link System#nanoTime()} by
+		 *            default
+		 * @return this
+		 */
+		@NotNull
+		public Builder<K, V> clock(@NotNull LongSupplier clock) {
+			this.clock = Objects.requireNonNull(clock, "clock");
+			return this;
+		}
+
+		/**
+		 * @return the cache
+		 */
+		@NotNull
+		public UpgradeLockCache<K, V> build() {
+			return new UpgradeLockCache<>(segments, maximumSize, expireAfterWriteNanos, lockFactory, clock);
+		}
+	}
+}
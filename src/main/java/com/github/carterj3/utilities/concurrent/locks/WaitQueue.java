@@ -0,0 +1,512 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * The {@link Thread}s waiting on a single {@link ReentreantUpgradeLock}, in the
+ * order they arrived. Each waiter parks on the status of its own {@link Node}
+ * and is only woken when it is the head of the line (or is handed the
+ * WriteLock directly), so releasing the Lock never wakes a {@link Thread} that
+ * has no chance of acquiring it.</br>
+ *
+ * The links are only changed while holding a tiny spin lock, which is only
+ * ever held for a few pointer updates and is never taken by an uncontended
+ * acquisition.</br>
+ *
+ * A {@link Thread} can only wait on one Lock at a time so every {@link Thread}
+ * reuses the same {@link Node} for every queue, contended acquisitions don't
+ * allocate.</br>
+ *
+ * A cohort queue (see {@link #WaitQueue(ClusterAssignment, int)}) keeps the
+ * WriteLock within the releasing {@link Thread}'s cluster for up to a bounded
+ * number of handoffs in a row, a writer in the same cluster goes before anybody
+ * queued ahead of it, so the data the Lock protects stays in that socket's
+ * caches.
+ *
+ * @author jeffrey.carter
+ *
+ */
+final class WaitQueue {
+
+	/**
+	 * The {@link Node} of every {@link Thread}, shared by all queues
+	 */
+	private static final ThreadLocal<Node> NODES = ThreadLocal.withInitial(Node::new);
+
+	/**
+	 * Guards {@link #head}, {@link #tail} and the links of every queued
+	 * {@link Node}
+	 */
+	private AtomicBoolean queueLock;
+
+	/**
+	 * The next {@link Node} allowed to try to acquire the Lock, volatile so
+	 * {@link #isEmpty()} doesn't need {@link #queueLock}
+	 */
+	private volatile Node head;
+
+	private Node tail;
+
+	/**
+	 * How many {@link Node}s are queued, only written while holding
+	 * {@link #queueLock}
+	 */
+	private volatile int size;
+
+	/**
+	 * How many readers woken by {@link #release(AtomicReference, FairnessPolicy)}
+	 * are still queued, only written while holding {@link #queueLock}
+	 */
+	private volatile int admitting;
+
+	/**
+	 * The cluster of every waiter, null if this isn't a cohort queue
+	 */
+	private ClusterAssignment clusters;
+
+	/**
+	 * How many times in a row the WriteLock may be handed to a writer in the same
+	 * cluster before it goes to whoever is next in line
+	 */
+	private int maxLocalHandoffs;
+
+	/**
+	 * How many times in a row the WriteLock was handed to a writer in the same
+	 * cluster, only touched while holding {@link #queueLock}
+	 */
+	private int localHandoffs;
+
+	WaitQueue() {
+		this(null, 0);
+	}
+
+	/**
+	 * @param clusters
+	 *            the cluster of every waiter, null to always go in line
+	 * @param maxLocalHandoffs
+	 *            how many times in a row the WriteLock may stay in the releasing
+	 *            {@link Thread}'s cluster
+	 */
+	WaitQueue(ClusterAssignment clusters, int maxLocalHandoffs) {
+		this.queueLock = new AtomicBoolean(false);
+		this.clusters = clusters;
+		this.maxLocalHandoffs = maxLocalHandoffs;
+		this.localHandoffs = 0;
+	}
+
+	/**
+	 * @return true if no {@link Thread} is waiting
+	 */
+	boolean isEmpty() {
+		return head == null;
+	}
+
+	/**
+	 * @return how many {@link Thread}s are waiting
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return true if readers that were woken together when the WriteLock was
+	 *         released haven't all left the queue yet, the next writer lets them
+	 *         in before it starts writing
+	 */
+	boolean isAdmitting() {
+		return admitting > 0;
+	}
+
+	/**
+	 * Adds the current {@link Thread} to the queue. A {@link Node} that becomes
+	 * the head is already {@link Node#SIGNALLED} so it tries to acquire the Lock
+	 * straight away.
+	 *
+	 * @param isRead
+	 *            true if the {@link Thread} is waiting for a ReadLock
+	 * @param isFirst
+	 *            true to cut to the front of the line
+	 * @return the current {@link Thread}'s {@link Node}
+	 */
+	@NotNull
+	Node enqueue(boolean isRead, boolean isFirst) {
+		Node node = NODES.get();
+		node.isRead = isRead;
+		node.status = Node.WAITING;
+		node.cluster = currentCluster();
+
+		lock();
+		try {
+			if (head == null) {
+				tail = node;
+			} else if (isFirst) {
+				node.next = head;
+				head.prev = node;
+			} else {
+				node.prev = tail;
+				tail.next = node;
+				tail = node;
+			}
+
+			if (node.prev == null) {
+				node.status = Node.SIGNALLED;
+				head = node;
+			}
+			node.isQueued = true;
+			size++;
+		} finally {
+			unlock();
+		}
+
+		return node;
+	}
+
+	/**
+	 * Removes a {@link Node} whose {@link Thread} acquired the Lock by itself. A
+	 * reader lets the next {@link Thread} try as well so a run of waiting readers
+	 * are all admitted together.
+	 *
+	 * @param node
+	 *            the current {@link Thread}'s {@link Node}
+	 */
+	void acquired(@NotNull Node node) {
+		Thread next = null;
+
+		lock();
+		try {
+			unlink(node);
+			if (node.isRead) {
+				next = signal(head);
+			}
+		} finally {
+			unlock();
+		}
+
+		LockSupport.unpark(next);
+	}
+
+	/**
+	 * Removes a {@link Node} whose {@link Thread} stopped waiting, passing on the
+	 * wakeup it may have consumed.
+	 *
+	 * @param node
+	 *            the current {@link Thread}'s {@link Node}
+	 * @return true if the WriteLock had already been handed to the {@link Thread}
+	 *         (so it has to either keep or release it)
+	 */
+	boolean cancel(@NotNull Node node) {
+		Thread next = null;
+
+		lock();
+		try {
+			if (node.status == Node.GRANTED) {
+				return true;
+			}
+
+			boolean wasHead = (node == head);
+			unlink(node);
+			if (wasHead) {
+				next = signal(head);
+			}
+		} finally {
+			unlock();
+		}
+
+		LockSupport.unpark(next);
+		return false;
+	}
+
+	/**
+	 * Releases the WriteLock in {@link FairnessPolicy#FIFO} order
+	 *
+	 * @param owner
+	 *            the owner of the WriteLock, currently the calling {@link Thread}
+	 */
+	void release(@NotNull AtomicReference<Thread> owner) {
+		release(owner, FairnessPolicy.FIFO);
+	}
+
+	/**
+	 * Releases the WriteLock. If the `policy` picks a waiting writer it becomes
+	 * the owner directly (so nobody can barge in between), otherwise the owner is
+	 * cleared and the head is woken to try for itself.</br>
+	 *
+	 * NOTE: Policies that admit readers while the next writer drains wake every
+	 * waiting reader here, while still holding {@link #queueLock}, so the whole
+	 * batch gets going at once.</br>
+	 *
+	 * NOTE: A cohort queue hands the WriteLock to the first writer in the
+	 * releasing {@link Thread}'s cluster ahead of the `policy` until it has done
+	 * so {@link #maxLocalHandoffs} times in a row.
+	 *
+	 * @param owner
+	 *            the owner of the WriteLock, currently the calling {@link Thread}
+	 * @param policy
+	 *            who goes next
+	 */
+	void release(@NotNull AtomicReference<Thread> owner, @NotNull FairnessPolicy policy) {
+		Thread next = null;
+		int cluster = currentCluster();
+
+		lock();
+		try {
+			Node first = head;
+			Node writer = (localHandoffs < maxLocalHandoffs) ? firstWriter(first, cluster) : null;
+			if (writer != null) {
+				localHandoffs++;
+			} else if (policy == FairnessPolicy.FIFO) {
+				localHandoffs = 0;
+				writer = (first != null && !first.isRead) ? first : null;
+			} else {
+				localHandoffs = 0;
+				writer = firstWriter(first);
+			}
+
+			if (policy.isAdmittingWhileDraining()) {
+				signalReaders(first);
+			}
+
+			if (writer != null) {
+				owner.set(writer.thread);
+				unlink(writer);
+				writer.status = Node.GRANTED;
+				next = writer.thread;
+			} else {
+				owner.set(null);
+				next = signal(head);
+			}
+		} finally {
+			unlock();
+		}
+
+		LockSupport.unpark(next);
+	}
+
+	@Override
+	public String toString() {
+		List<Thread> threads = new ArrayList<>();
+
+		lock();
+		try {
+			for (Node node = head; node != null; node = node.next) {
+				threads.add(node.thread);
+			}
+		} finally {
+			unlock();
+		}
+
+		return threads.toString();
+	}
+
+	/**
+	 * NOTE: Must hold {@link #queueLock}
+	 *
+	 * @param node
+	 *            the {@link Node} to wake, may be null
+	 * @return the {@link Thread} to unpark once {@link #queueLock} is released
+	 */
+	private Thread signal(Node node) {
+		if (node == null) {
+			return null;
+		}
+
+		Node.STATUS.compareAndSet(node, Node.WAITING, Node.SIGNALLED);
+		return node.thread;
+	}
+
+	/**
+	 * NOTE: Must hold {@link #queueLock}
+	 *
+	 * @param node
+	 *            where to start looking, may be null
+	 * @return the first {@link Node} waiting for the WriteLock, or null
+	 */
+	private Node firstWriter(Node node) {
+		while (node != null && node.isRead) {
+			node = node.next;
+		}
+
+		return node;
+	}
+
+	/**
+	 * NOTE: Must hold {@link #queueLock}
+	 *
+	 * @param node
+	 *            where to start looking, may be null
+	 * @param cluster
+	 *            the cluster the writer has to be in
+	 * @return the first {@link Node} in the cluster waiting for the WriteLock, or
+	 *         null
+	 */
+	private Node firstWriter(Node node, int cluster) {
+		while (node != null && (node.isRead || node.cluster != cluster)) {
+			node = node.next;
+		}
+
+		return node;
+	}
+
+	/**
+	 * @return the current {@link Thread}'s cluster, 0 if this isn't a cohort
+	 *         queue
+	 */
+	private int currentCluster() {
+		return (clusters == null) ? 0 : clusters.currentCluster();
+	}
+
+	/**
+	 * Wakes every {@link Node} waiting for a ReadLock and counts them in
+	 * {@link #admitting} until they leave the queue.</br>
+	 *
+	 * NOTE: Must hold {@link #queueLock}
+	 *
+	 * @param node
+	 *            where to start, may be null
+	 */
+	private void signalReaders(Node node) {
+		for (; node != null; node = node.next) {
+			if (!node.isRead) {
+				continue;
+			}
+
+			if (!node.isAdmitting) {
+				node.isAdmitting = true;
+				admitting++;
+			}
+
+			if (Node.STATUS.compareAndSet(node, Node.WAITING, Node.SIGNALLED)) {
+				LockSupport.unpark(node.thread);
+			}
+		}
+	}
+
+	/**
+	 * NOTE: Must hold {@link #queueLock}
+	 *
+	 * @param node
+	 *            the {@link Node} to remove, does nothing if it isn't queued
+	 */
+	private void unlink(Node node) {
+		if (!node.isQueued) {
+			return;
+		}
+
+		if (node.prev == null) {
+			head = node.next;
+		} else {
+			node.prev.next = node.next;
+		}
+
+		if (node.next == null) {
+			tail = node.prev;
+		} else {
+			node.next.prev = node.prev;
+		}
+
+		node.prev = null;
+		node.next = null;
+		node.isQueued = false;
+		size--;
+
+		if (node.isAdmitting) {
+			node.isAdmitting = false;
+			admitting--;
+		}
+	}
+
+	private void lock() {
+		while (!queueLock.compareAndSet(false, true)) {
+			Thread.onSpinWait();
+		}
+	}
+
+	private void unlock() {
+		queueLock.set(false);
+	}
+
+	/**
+	 * A waiting {@link Thread}. The links are guarded by the
+	 * {@link WaitQueue#queueLock} of whichever queue it is in, the status is only
+	 * changed under that lock except for the owner clearing its own signal.
+	 */
+	static final class Node {
+
+		/**
+		 * Parked until it is signalled or granted
+		 */
+		static final int WAITING = 0;
+
+		/**
+		 * At the head of the line and should try to acquire the Lock
+		 */
+		static final int SIGNALLED = 1;
+
+		/**
+		 * Was handed the WriteLock and already removed from the queue
+		 */
+		static final int GRANTED = 2;
+
+		/**
+		 * {@link #status}, so it can be compare-and-set without an extra object
+		 * per {@link Node}
+		 */
+		private static final VarHandle STATUS;
+		static {
+			try {
+				STATUS = MethodHandles.lookup().findVarHandle(Node.class, "status", int.class);
+			} catch (ReflectiveOperationException e) {
+				throw new ExceptionInInitializerError(e);
+			}
+		}
+
+		private final Thread thread = Thread.currentThread();
+
+		private volatile int status;
+
+		private boolean isRead;
+
+		private boolean isQueued;
+
+		/**
+		 * The cluster of the {@link Thread} when it was queued, see
+		 * {@link WaitQueue#clusters}
+		 */
+		private int cluster;
+
+		/**
+		 * Counted in {@link WaitQueue#admitting}
+		 */
+		private boolean isAdmitting;
+
+		private Node prev;
+
+		private Node next;
+
+		/**
+		 * @return true if the WriteLock was handed to this {@link Node}'s
+		 *         {@link Thread}
+		 */
+		boolean isGranted() {
+			return status == GRANTED;
+		}
+
+		/**
+		 * Consumes a signal, clearing it before trying to acquire the Lock means a
+		 * signal sent after a failed attempt is never lost
+		 *
+		 * @return true if this {@link Node} was signalled
+		 */
+		boolean tryClearSignal() {
+			return (status == SIGNALLED) && STATUS.compareAndSet(this, SIGNALLED, WAITING);
+		}
+	}
+}
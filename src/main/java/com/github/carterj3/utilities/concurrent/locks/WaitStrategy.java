@@ -0,0 +1,42 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+/**
+ * Decides how a {@link Thread} waits for a {@link ReentreantUpgradeLock} it
+ * could not acquire straight away, e.g. whether it spins before parking.</br>
+ * 
+ * The waiting {@link Thread} calls {@link #pause(Object, int, long)} every time
+ * the Lock is still unavailable and re-checks it afterwards, once it stops
+ * waiting it reports how it went with {@link #waited(int, boolean)} so the
+ * strategy can adapt.</br>
+ * 
+ * NOTE: An instance belongs to exactly one Lock, don't share them.
+ * 
+ * @author jeffrey.carter
+ *
+ */
+public interface WaitStrategy {
+
+	/**
+	 * Waits a little before the Lock is checked again. Returning early is always
+	 * allowed, the caller simply checks again.
+	 * 
+	 * @param blocker
+	 *            the object to park on (see {@link java.util.concurrent.locks.LockSupport#parkNanos(Object, long)})
+	 * @param attempt
+	 *            how many times the current {@link Thread} has already paused
+	 *            during this wait
+	 * @param remaining
+	 *            the nanos left before the current {@link Thread} gives up, always
+	 *            positive
+	 */
+	void pause(Object blocker, int attempt, long remaining);
+
+	/**
+	 * @param attempts
+	 *            how many times the current {@link Thread} paused
+	 * @param isAcquired
+	 *            true if the wait ended with the Lock acquired, false if it timed
+	 *            out or was interrupted
+	 */
+	void waited(int attempts, boolean isAcquired);
+}
@@ -1,5 +1,11 @@
 package com.github.carterj3.utilities;
 
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -20,4 +26,126 @@ public class NumberUtilsTest {
 		Assert.assertEquals(2L, NumberUtils.INSTANCE.addWithDefault(0L, 1, 1));
 	}
 
+	@Test
+	public void testSaturatingAdd() {
+		NumberUtils utils = NumberUtils.INSTANCE;
+		Assert.assertEquals(Long.MAX_VALUE, utils.saturatingAdd(Long.MAX_VALUE, 1L));
+		Assert.assertEquals(Long.MIN_VALUE, utils.saturatingAdd(Long.MIN_VALUE, -1L));
+		Assert.assertEquals(-1L, utils.saturatingAdd(Long.MAX_VALUE, Long.MIN_VALUE));
+		Assert.assertEquals(Integer.MAX_VALUE, utils.saturatingAdd(Integer.MAX_VALUE, 1));
+		Assert.assertEquals(Integer.MIN_VALUE, utils.saturatingAdd(Integer.MIN_VALUE, Integer.MIN_VALUE));
+
+		long[] x = randomLongs(200_000, 1L);
+		long[] y = randomLongs(200_000, 2L);
+		long[] sums = new long[x.length];
+		utils.saturatingAdd(x, y, sums);
+		for (int i = 0; i < x.length; i++) {
+			Assert.assertEquals(clamp(BigInteger.valueOf(x[i]).add(BigInteger.valueOf(y[i]))), sums[i]);
+		}
+
+		LongBuffer direct = ByteBuffer.allocateDirect(x.length * Long.BYTES).asLongBuffer();
+		utils.saturatingAdd(LongBuffer.wrap(x), LongBuffer.wrap(y), direct);
+		Assert.assertEquals(LongBuffer.wrap(sums), direct);
+
+		int[] ints = { Integer.MAX_VALUE, -5, Integer.MIN_VALUE };
+		utils.saturatingAdd(ints, new int[] { 1, 2, -1 }, ints);
+		Assert.assertArrayEquals(new int[] { Integer.MAX_VALUE, -3, Integer.MIN_VALUE }, ints);
+	}
+
+	@Test
+	public void testSaturatingSum() {
+		NumberUtils utils = NumberUtils.INSTANCE;
+
+		/* Exact, only the result is clamped */
+		Assert.assertEquals(Long.MAX_VALUE, utils.saturatingSum(new long[] { Long.MAX_VALUE, 1L, -1L }));
+		Assert.assertEquals(Long.MAX_VALUE, utils.saturatingSum(new long[] { Long.MAX_VALUE, Long.MAX_VALUE }));
+		Assert.assertEquals(Long.MIN_VALUE, utils.saturatingSum(new long[] { Long.MIN_VALUE, -1L }));
+		Assert.assertEquals(0L, utils.saturatingSum(new long[0]));
+		Assert.assertEquals(3L, utils.saturatingSum(new long[] { 9L, 1L, 2L, 9L }, 1, 3));
+		Assert.assertEquals(Integer.MAX_VALUE, utils.saturatingSum(new int[] { Integer.MAX_VALUE, 1 }));
+		Assert.assertEquals(0, utils.saturatingSum(new int[] { Integer.MAX_VALUE, 1, Integer.MIN_VALUE }));
+
+		/* Large enough to be split, both in range and saturated */
+		for (long seed = 0L; seed < 3L; seed++) {
+			long[] values = randomLongs(1_000_003, seed);
+			BigInteger expected = BigInteger.ZERO;
+			for (long value : values) {
+				expected = expected.add(BigInteger.valueOf(value));
+			}
+			Assert.assertEquals(clamp(expected), utils.saturatingSum(values));
+
+			LongBuffer direct = ByteBuffer.allocateDirect(values.length * Long.BYTES).asLongBuffer();
+			direct.put(values).flip();
+			Assert.assertEquals(clamp(expected), utils.saturatingSum(direct));
+			Assert.assertEquals(0, direct.position());
+		}
+
+		long[] small = new long[1_000_003];
+		Arrays.fill(small, 3L);
+		Assert.assertEquals(3L * small.length, utils.saturatingSum(small));
+
+		int[] ints = new int[1_000_003];
+		Arrays.fill(ints, -7);
+		Assert.assertEquals(-7 * ints.length, utils.saturatingSum(ints));
+	}
+
+	@Test
+	public void testPrefixSum() {
+		NumberUtils utils = NumberUtils.INSTANCE;
+
+		long[] values = { 1L, 2L, Long.MAX_VALUE, -10L, 3L };
+		long[] sums = new long[values.length];
+		Assert.assertEquals(2, utils.prefixSum(values, sums));
+		Assert.assertArrayEquals(new long[] { 1L, 3L, Long.MAX_VALUE, Long.MAX_VALUE - 7L, Long.MAX_VALUE - 4L }, sums);
+
+		int[] ints = { 1, 2, 3 };
+		Assert.assertEquals(-1, utils.prefixSum(ints, ints));
+		Assert.assertArrayEquals(new int[] { 1, 3, 6 }, ints);
+
+		/* Large enough to be split, overflowing part way through */
+		long[] large = new long[500_000];
+		Arrays.fill(large, Long.MAX_VALUE / 300_000L);
+		large[400_000] = -Long.MAX_VALUE;
+		long[] expected = new long[large.length];
+		BigInteger sum = BigInteger.ZERO;
+		int firstOverflow = -1;
+		for (int i = 0; i < large.length; i++) {
+			sum = sum.add(BigInteger.valueOf(large[i]));
+			expected[i] = clamp(sum);
+			if (firstOverflow < 0 && expected[i] != sum.longValue()) {
+				firstOverflow = i;
+			}
+		}
+		Assert.assertTrue(firstOverflow > 0);
+
+		long[] actual = new long[large.length];
+		Assert.assertEquals(firstOverflow, utils.prefixSum(large, actual));
+		Assert.assertArrayEquals(expected, actual);
+
+		LongBuffer direct = ByteBuffer.allocateDirect(large.length * Long.BYTES).asLongBuffer();
+		Assert.assertEquals(firstOverflow, utils.prefixSum(LongBuffer.wrap(large), direct));
+		Assert.assertEquals(LongBuffer.wrap(expected), direct);
+
+		int[] largeInts = new int[500_000];
+		Arrays.fill(largeInts, 5_000);
+		int[] intSums = new int[largeInts.length];
+		Assert.assertEquals(Integer.MAX_VALUE / 5_000, utils.prefixSum(largeInts, intSums));
+		Assert.assertEquals(5_000 * 1_000, intSums[999]);
+		Assert.assertEquals(Integer.MAX_VALUE, intSums[intSums.length - 1]);
+	}
+
+	private static long[] randomLongs(int length, long seed) {
+		Random random = new Random(seed);
+		long[] values = new long[length];
+		for (int i = 0; i < length; i++) {
+			/* Mostly huge so overflows are common */
+			values[i] = (i % 4 == 0) ? random.nextInt() : random.nextLong();
+		}
+
+		return values;
+	}
+
+	private static long clamp(BigInteger value) {
+		return value.max(BigInteger.valueOf(Long.MIN_VALUE)).min(BigInteger.valueOf(Long.MAX_VALUE)).longValue();
+	}
 }
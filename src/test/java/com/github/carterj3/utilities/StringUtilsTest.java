@@ -0,0 +1,210 @@
+package com.github.carterj3.utilities;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.math.BigInteger;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.IllegalFormatException;
+import java.util.Locale;
+import java.util.MissingFormatArgumentException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class StringUtilsTest {
+
+	@Test
+	public void testFormat() {
+		Object[][] cases = { //
+				{ "plain text" }, //
+				{ "%s and %s", "a", null }, //
+				{ "[%5s|%-5s|%.2s]", "ab", "cd", "efgh" }, //
+				{ "%b %b %b %5b", true, null, "x", false }, //
+				{ "%d %d %d %d", 0, -1, Long.MIN_VALUE, Long.MAX_VALUE }, //
+				{ "[%5d|%-5d|%05d|%05d]", 42, 42, 42, -42 }, //
+				{ "%x %X %x %x %08x", 255, 255L, -1, -1L, 0xBEEF }, //
+				{ "%d %x", (byte) -1, (short) -1 }, //
+				{ "%d %s", BigInteger.TEN.pow(30), new StringBuilder("sb") }, //
+				{ "%2$s %1$s %<s %s", "one", "two" }, //
+				{ "%,d %+d %(d %.3f %e %c %o %h", 1234567, 5, -5, Math.PI, 1e10, 'c', 8, "h" }, //
+				{ "100%% %n%-3%|", }, //
+				{ "%tY", new Date(0L) }, //
+				{ "%s", (Object) null }, //
+		};
+
+		for (Object[] c : cases) {
+			String format = (String) c[0];
+			Object[] args = new Object[c.length - 1];
+			System.arraycopy(c, 1, args, 0, args.length);
+
+			String expected = String.format(format, args);
+			Assert.assertEquals(format, expected, StringUtils.format(format, args));
+			Assert.assertEquals(format, expected, StringUtils.format(format, args));
+			Assert.assertEquals(format, expected,
+					StringUtils.compile(format).appendTo(new StringBuilder("> "), args).substring(2));
+		}
+
+		Assert.assertEquals(String.format(Locale.GERMANY, "%,d %.2f", 1234567, 1.5),
+				StringUtils.compile("%,d %.2f", Locale.GERMANY).format(1234567, 1.5));
+		Assert.assertEquals(String.format("%s", (Object[]) null), StringUtils.format("%s", (Object[]) null));
+	}
+
+	@Test
+	public void testPrimitives() {
+		FormatTemplate one = StringUtils.compile("[%5d|%x|%s]");
+		Assert.assertEquals(3, one.getArgumentCount());
+
+		FormatTemplate template = StringUtils.compile("%d-%08X");
+		StringBuilder builder = new StringBuilder();
+		for (long value : new long[] { 0L, 1L, -1L, Long.MIN_VALUE, Long.MAX_VALUE, 0xCAFEL }) {
+			builder.setLength(0);
+			Assert.assertEquals(String.format("%d-%08X", value, value),
+					template.appendLong(builder, value, value).toString());
+		}
+
+		Assert.assertEquals(String.format("%d|%s|%c", 7L, 7L, 'A'),
+				StringUtils.compile("%d|%s|%c").format(7L, 7L, 'A'));
+		Assert.assertEquals("7 7", StringUtils.compile("%d %<s").appendLong(new StringBuilder(), 7L).toString());
+
+		/* Boxed arguments are formatted as themselves, not widened to a long */
+		Assert.assertEquals("ffffffff", StringUtils.compile("%x").appendTo(new StringBuilder(), Integer.valueOf(-1))
+				.toString());
+		Assert.assertEquals("a a", StringUtils.compile("%s %<c").appendTo(new StringBuilder(), Character.valueOf('a'))
+				.toString());
+		ByteBuffer buffer = ByteBuffer.allocate(16);
+		Assert.assertEquals(1, StringUtils.compile("%c").appendTo(buffer, Character.valueOf('a')));
+		Assert.assertEquals(8, StringUtils.compile("%x").appendTo(buffer, Integer.valueOf(-1)));
+		Assert.assertEquals("affffffff", new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testLazy() {
+		StringBuilder mutable = new StringBuilder("before");
+		LazyFormat lazy = StringUtils.lazy("%s: %d", mutable, 1);
+		Assert.assertFalse(lazy.isFormatted());
+
+		/* Formatted with the arguments as they are when it is first used */
+		mutable.setLength(0);
+		mutable.append("after");
+		Assert.assertEquals("after: 1", lazy.toString());
+		Assert.assertTrue(lazy.isFormatted());
+
+		mutable.setLength(0);
+		Assert.assertSame(lazy.get(), lazy.toString());
+		Assert.assertEquals('a', lazy.charAt(0));
+		Assert.assertEquals("after", lazy.subSequence(0, 5).toString());
+		Assert.assertEquals(8, lazy.length());
+
+		Assert.assertEquals("100%", StringUtils.lazy("100%%").get());
+		Assert.assertEquals("a", StringUtils.lazy("%s", "a").get());
+		Assert.assertEquals("a b c", StringUtils.lazy("%s %s %s", "a", "b", "c").get());
+		Assert.assertEquals("a b c d", StringUtils.lazy("%s %s %s %s", "a", "b", "c", "d").get());
+		Assert.assertEquals("-1 ff", StringUtils.lazy("%d %x", -1L, 255L).get());
+		Assert.assertEquals("7", StringUtils.lazy("%s", 7).get());
+
+		/* Arguments keep their own type, as with String.format */
+		Assert.assertEquals(String.format("%x", -1), StringUtils.lazy("%x", -1).get());
+		Assert.assertEquals("a", StringUtils.lazy("%c", 'a').get());
+		Assert.assertEquals("ff a", StringUtils.lazy("%x %c", (byte) -1, 'a').get());
+
+		/* Invalid formats only fail once used */
+		LazyFormat invalid = StringUtils.lazy("%q", 1);
+		try {
+			invalid.get();
+			Assert.fail();
+		} catch (IllegalFormatException e) {
+			/* Expected */
+		}
+	}
+
+	@Test
+	public void testFormatTo() throws IOException {
+		Object[][] cases = { //
+				{ "plain text, caf\u00e9 \u20ac \uD83D\uDE00" }, //
+				{ "%s|%5s|%-5s", "\u00e9\uD83D\uDE00", "ab", "\u20ac" }, //
+				{ "%d %d %d %05d %-5d|", 0, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, -7 }, //
+				{ "%x %08X %b %.2f %s", -1, 0xBEEF, null, Math.E, "\uD83D" }, //
+		};
+
+		for (Object[] c : cases) {
+			String format = (String) c[0];
+			Object[] args = new Object[c.length - 1];
+			System.arraycopy(c, 1, args, 0, args.length);
+
+			String expected = String.format(format, args);
+			Assert.assertEquals(format, expected, StringUtils.formatTo(new StringWriter(), format, args).toString());
+
+			byte[] utf8 = expected.getBytes(StandardCharsets.UTF_8);
+			for (ByteBuffer buffer : new ByteBuffer[] { ByteBuffer.allocate(256), ByteBuffer.allocateDirect(256) }) {
+				buffer.put((byte) 1);
+				Assert.assertEquals(format, utf8.length, StringUtils.formatTo(buffer, format, args));
+				buffer.flip();
+				buffer.get();
+				byte[] written = new byte[buffer.remaining()];
+				buffer.get(written);
+				Assert.assertArrayEquals(format, utf8, written);
+			}
+		}
+
+		FormatTemplate template = StringUtils.compile("%d-%d");
+		StringWriter writer = new StringWriter();
+		Assert.assertEquals("-12-34", template.appendLong(writer, -12L, 34L).toString());
+
+		/* Doesn't fit, the position is left where it was */
+		ByteBuffer small = ByteBuffer.allocate(8);
+		small.put((byte) 1);
+		try {
+			template.appendLong(small, 123_456L, 789L);
+			Assert.fail();
+		} catch (BufferOverflowException e) {
+			Assert.assertEquals(1, small.position());
+		}
+		Assert.assertEquals(3, template.appendLong(small, 1L, 2L));
+
+		/* Grows and keeps what was already written */
+		ByteBuffer direct = ByteBuffer.allocateDirect(4);
+		direct.put((byte) 'x');
+		ByteBuffer grown = template.appendToGrowing(direct, Long.MIN_VALUE, Long.MAX_VALUE);
+		Assert.assertTrue(grown.isDirect());
+		grown.flip();
+		byte[] written = new byte[grown.remaining()];
+		grown.get(written);
+		Assert.assertEquals("x" + Long.MIN_VALUE + "-" + Long.MAX_VALUE, new String(written, StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testInvalid() {
+		for (String format : new String[] { "%", "abc %q", "%-d", "%0s", "%#s", "%<s", "%0$s", "%.2d" }) {
+			try {
+				StringUtils.compile(format);
+				Assert.fail(format);
+			} catch (IllegalArgumentException e) {
+				/* Expected */
+			}
+		}
+
+		try {
+			StringUtils.format("%s %s", "one");
+			Assert.fail();
+		} catch (MissingFormatArgumentException e) {
+			Assert.assertEquals("%s", e.getFormatSpecifier());
+		}
+
+		try {
+			StringUtils.compile("%d %d").appendLong(new StringBuilder(), 1L);
+			Assert.fail();
+		} catch (MissingFormatArgumentException e) {
+			/* Expected */
+		}
+
+		try {
+			StringUtils.format("%d", "not a number");
+			Assert.fail();
+		} catch (IllegalFormatException e) {
+			/* Expected */
+		}
+	}
+}
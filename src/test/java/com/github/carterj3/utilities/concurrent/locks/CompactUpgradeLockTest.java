@@ -0,0 +1,211 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CompactUpgradeLockTest {
+
+	private ExecutorService executorService;
+
+	@BeforeEach
+	public void setup() {
+		executorService = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		executorService.shutdown();
+	}
+
+	@Test
+	public void test_thin() throws Throwable {
+		CompactUpgradeLock lock = new CompactUpgradeLock();
+		Assert.assertEquals("thin: free, waiting: false", lock.toString());
+
+		lock.lockRead();
+		Assert.assertEquals("thin: read, waiting: false", lock.toString());
+		Assert.assertFalse(executorService.submit(() -> lock.tryLockWrite()).get());
+
+		/* Nobody else can hold it, so upgrading & downgrading never wait */
+		lock.upgrade();
+		Assert.assertEquals("thin: write, waiting: false", lock.toString());
+		Assert.assertFalse(executorService.submit(() -> lock.tryLockRead()).get());
+		lock.unlockWrite();
+		Assert.assertEquals("thin: read, waiting: false", lock.toString());
+		lock.unlockRead();
+
+		Assert.assertTrue(lock.tryLockWrite());
+		lock.downgrade();
+		Assert.assertEquals("thin: read, waiting: false", lock.toString());
+		lock.unlockRead();
+		Assert.assertFalse(lock.isInflated());
+
+		try {
+			lock.unlockRead();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			/* Expected */
+		}
+
+		lock.lockWrite();
+		Assert.assertFalse(executorService.submit(() -> {
+			try {
+				lock.unlockWrite();
+				return true;
+			} catch (IllegalStateException e) {
+				return false;
+			}
+		}).get());
+		lock.unlockWrite();
+		Assert.assertFalse(lock.isInflated());
+	}
+
+	@Test
+	public void test_inflateOnReentrancy() throws Throwable {
+		CompactUpgradeLock lock = new CompactUpgradeLock();
+
+		lock.lockWrite();
+		lock.lockRead();
+		Assert.assertTrue(lock.isInflated());
+
+		/* The thin WriteLock carried over */
+		Assert.assertFalse(executorService.submit(() -> lock.tryLockRead()).get());
+		lock.unlockWrite();
+		Assert.assertFalse(executorService.submit(() -> lock.tryLockWrite()).get());
+		lock.upgrade();
+		lock.unlockWrite();
+		lock.unlockRead();
+
+		/* Downgrading an upgraded thin hold needs a second ReadLock hold */
+		CompactUpgradeLock upgraded = new CompactUpgradeLock();
+		upgraded.lockRead();
+		upgraded.upgrade();
+		upgraded.downgrade();
+		Assert.assertTrue(upgraded.isInflated());
+		upgraded.unlockRead();
+		Assert.assertFalse(executorService.submit(() -> upgraded.tryLockWrite()).get());
+		upgraded.unlockRead();
+
+		Assert.assertTrue(executorService.submit(() -> {
+			if (!lock.tryLockWrite()) {
+				return false;
+			}
+			lock.unlockWrite();
+			return true;
+		}).get());
+	}
+
+	@Test
+	public void test_inflateOnContention() throws Throwable {
+		CompactUpgradeLock lock = new CompactUpgradeLock();
+
+		lock.lockRead();
+		Future<Boolean> writer = executorService.submit(() -> {
+			lock.lockWrite();
+			lock.unlockWrite();
+			return true;
+		});
+
+		/* Wait for the other Thread to be waiting */
+		while (!lock.toString().equals("thin: read, waiting: true")) {
+			Thread.sleep(1L);
+		}
+		Assert.assertFalse(lock.isInflated());
+
+		lock.unlockRead();
+		Assert.assertTrue(writer.get());
+		Assert.assertTrue(lock.isInflated());
+		Assert.assertTrue(lock.toString().startsWith("inflated: "));
+	}
+
+	@Test
+	public void test_timedOutWaiterLeavesLockThin() throws Throwable {
+		CompactUpgradeLock lock = new CompactUpgradeLock();
+
+		lock.lockRead();
+		Assert.assertFalse(executorService.submit(() -> lock.tryLockWrite(10, TimeUnit.MILLISECONDS)).get());
+		Assert.assertEquals("thin: read, waiting: false", lock.toString());
+
+		/* An interrupted waiter gives up the same way */
+		CountDownLatch isWaiting = new CountDownLatch(1);
+		Future<Boolean> interrupted = executorService.submit(() -> {
+			isWaiting.countDown();
+			try {
+				lock.lockWriteInterruptibly();
+				return false;
+			} catch (InterruptedException e) {
+				return true;
+			}
+		});
+		isWaiting.await();
+		while (!lock.toString().equals("thin: read, waiting: true")) {
+			Thread.sleep(1L);
+		}
+		interrupted.cancel(true);
+		while (!lock.toString().equals("thin: read, waiting: false")) {
+			Thread.sleep(1L);
+		}
+
+		/* Nobody is waiting, so releasing doesn't inflate */
+		lock.unlockRead();
+		Assert.assertFalse(lock.isInflated());
+		Assert.assertEquals("thin: free, waiting: false", lock.toString());
+
+		Assert.assertTrue(lock.tryLockWrite());
+		lock.unlockWrite();
+		Assert.assertFalse(lock.isInflated());
+	}
+
+	@Test
+	public void test_multipleThreads() throws Throwable {
+		int numThreads = 8;
+		int cycles = 20_000;
+		long[] counter = new long[1];
+
+		CompactUpgradeLock lock = new CompactUpgradeLock();
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			futures.add(executorService.submit(() -> {
+				for (int j = 0; j < cycles; j++) {
+					lock.lockRead();
+					try {
+						long seen = counter[0];
+						lock.upgrade();
+						try {
+							counter[0] = seen + 1;
+						} finally {
+							lock.unlockWrite();
+						}
+					} catch (IllegalStateException e) {
+						/* Another Thread is upgrading, write without reading first */
+						lock.unlockRead();
+						lock.lockWrite();
+						try {
+							counter[0]++;
+						} finally {
+							lock.unlockWrite();
+						}
+						continue;
+					}
+					lock.unlockRead();
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+
+		Assert.assertEquals((long) numThreads * cycles, counter[0]);
+	}
+}
@@ -0,0 +1,195 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.locks.Lock;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class KeyedUpgradeLocksTest {
+
+	private ExecutorService executorService;
+
+	@BeforeEach
+	public void setup() {
+		executorService = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		executorService.shutdown();
+	}
+
+	@Test
+	public void test_striped() throws Throwable {
+		StripedKeyedUpgradeLocks<String> locks = new StripedKeyedUpgradeLocks<>(16);
+		Assert.assertEquals("stripes: 16", locks.toString());
+		Assert.assertSame(locks.lockFor("a"), locks.lockFor(new String("a")));
+
+		/* Sequential keys are spread over the stripes */
+		List<ReentreantUpgradeLock> seen = new ArrayList<>();
+		for (int i = 0; i < 64; i++) {
+			ReentreantUpgradeLock lock = locks.lockFor(Integer.toString(i));
+			if (!seen.contains(lock)) {
+				seen.add(lock);
+			}
+		}
+		Assert.assertTrue(seen.size() > 8);
+
+		UpgradableReadLock rl = locks.readLock("a");
+		rl.lock();
+		Assert.assertFalse(executorService.submit(() -> locks.writeLock("a").tryLock()).get());
+		rl.upgrade().downgrade();
+		rl.unlock();
+		rl.unlock();
+		Assert.assertTrue(executorService.submit(() -> {
+			if (!locks.writeLock("a").tryLock()) {
+				return false;
+			}
+			locks.writeLock("a").unlock();
+			return true;
+		}).get());
+	}
+
+	@Test
+	public void test_pooled() throws Throwable {
+		PooledKeyedUpgradeLocks<String> locks = new PooledKeyedUpgradeLocks<>(4);
+		Assert.assertEquals("keys: 0, pooled: 0", locks.toString());
+
+		/* Only the same key blocks */
+		UpgradableReadLock rl = locks.readLock("a");
+		rl.lock();
+		Assert.assertEquals(1, locks.size());
+		Assert.assertFalse(executorService.submit(() -> locks.writeLock("a").tryLock()).get());
+		Assert.assertTrue(executorService.submit(() -> {
+			try (DowngradableWriteLock wl = locks.writeLock("b").open()) {
+				return true;
+			}
+		}).get());
+
+		/* Upgrading and downgrading keep the key's Lock until the last hold */
+		DowngradableWriteLock wl = rl.upgrade();
+		UpgradableReadLock downgraded = wl.downgrade();
+		rl.unlock();
+		Assert.assertEquals(1, locks.size());
+		downgraded.unlock();
+		Assert.assertEquals("keys: 0, pooled: 2", locks.toString());
+
+		try (UpdateLock ul = locks.updateLock("a").open()) {
+			Assert.assertFalse(executorService.submit(() -> locks.updateLock("a").tryLock()).get());
+			Assert.assertTrue(executorService.submit(() -> {
+				if (!locks.readLock("a").tryLock(1, TimeUnit.SECONDS)) {
+					return false;
+				}
+				locks.readLock("a").unlock();
+				return true;
+			}).get());
+			ul.upgrade().unlock();
+
+			/* A reader of the key can't wait for it */
+			Assert.assertTrue(executorService.submit(() -> {
+				UpgradableReadLock reader = locks.readLock("a");
+				reader.lock();
+				try {
+					locks.updateLock("a").lock();
+					return false;
+				} catch (IllegalStateException e) {
+					return true;
+				} finally {
+					reader.unlock();
+				}
+			}).get());
+		}
+		Assert.assertEquals("keys: 0, pooled: 2", locks.toString());
+
+		try {
+			locks.readLock("a").unlock();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			/* Expected */
+		}
+	}
+
+	@Test
+	public void test_pooled_multipleThreads() throws Throwable {
+		PooledKeyedUpgradeLocks<Integer> locks = new PooledKeyedUpgradeLocks<>(2);
+
+		int keys = 8;
+		int numThreads = 16;
+		int cycles = 20_000;
+		long[] counters = new long[keys];
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			futures.add(executorService.submit(() -> {
+				for (int j = 0; j < cycles; j++) {
+					int key = ThreadLocalRandom.current().nextInt(keys);
+					DowngradableWriteLock wl = locks.writeLock(key);
+					wl.lock();
+					try {
+						counters[key]++;
+					} finally {
+						wl.unlock();
+					}
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+
+		long total = 0;
+		for (int i = 0; i < keys; i++) {
+			locks.readLock(i).lock();
+			total += counters[i];
+			locks.readLock(i).unlock();
+		}
+		Assert.assertEquals((long) numThreads * cycles, total);
+		Assert.assertEquals(0, locks.size());
+	}
+
+	@Test
+	public void test_pooled_mutualExclusion() throws Throwable {
+		/* A tiny pool so the Locks of a few keys are recycled between them all the time */
+		PooledKeyedUpgradeLocks<Integer> locks = new PooledKeyedUpgradeLocks<>(1);
+
+		int keys = 3;
+		int numThreads = 12;
+		int cycles = 20_000;
+		AtomicIntegerArray holders = new AtomicIntegerArray(keys);
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			futures.add(executorService.submit(() -> {
+				for (int j = 0; j < cycles; j++) {
+					int key = ThreadLocalRandom.current().nextInt(keys);
+					Lock lock = ((j & 1) == 0) ? locks.writeLock(key) : locks.updateLock(key);
+					lock.lock();
+					try {
+						Assert.assertEquals(1, holders.incrementAndGet(key));
+						Thread.yield();
+						Assert.assertEquals(0, holders.decrementAndGet(key));
+					} finally {
+						lock.unlock();
+					}
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get(60, TimeUnit.SECONDS);
+		}
+
+		Assert.assertEquals(0, locks.size());
+	}
+}
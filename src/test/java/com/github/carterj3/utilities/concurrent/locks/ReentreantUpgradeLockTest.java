@@ -1,11 +1,16 @@
 package com.github.carterj3.utilities.concurrent.locks;
 
+import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -13,6 +18,7 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.junit.Assert;
 import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
@@ -132,6 +138,73 @@ public class ReentreantUpgradeLockTest {
 		}
 	}
 
+	@Test
+	void test_readlock_allocations() throws Throwable {
+		java.lang.management.ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+		Assumptions.assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+		com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threadMXBean;
+		Assumptions.assumeTrue(allocations.isThreadAllocatedMemorySupported());
+		allocations.setThreadAllocatedMemoryEnabled(true);
+
+		ReentreantUpgradeLock rul = new ReentreantUpgradeLock();
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+		long threadId = Thread.currentThread().getId();
+
+		/*
+		 * Hold depths well past the Long cache (-128 to 127) would have boxed a new
+		 * Long on every lock & unlock. Early rounds warm up the ThreadLocal, the JIT
+		 * and the measuring itself so only require that the steady state is free.
+		 */
+		int depth = 1_000;
+		long allocated = -1L;
+		for (int round = 0; round < 10 && allocated != 0L; round++) {
+			long before = allocations.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < depth; i++) {
+				rl.lock();
+			}
+			for (int i = 0; i < depth; i++) {
+				rl.unlock();
+			}
+			allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+		}
+		Assert.assertEquals(0L, allocated);
+
+		/* Nested inside a WriteLock, both counters are reentrant */
+		Assert.assertTrue(wl.tryLock());
+		allocated = -1L;
+		for (int round = 0; round < 10 && allocated != 0L; round++) {
+			long before = allocations.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < depth; i++) {
+				rl.lock();
+				Assert.assertTrue(wl.tryLock());
+			}
+			for (int i = 0; i < depth; i++) {
+				wl.unlock();
+				rl.unlock();
+			}
+			allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+		}
+		wl.unlock();
+
+		Assert.assertEquals(0L, allocated);
+
+		/* Timed acquisitions work out their deadline without allocating either */
+		allocated = -1L;
+		for (int round = 0; round < 10 && allocated != 0L; round++) {
+			long before = allocations.getThreadAllocatedBytes(threadId);
+			for (int i = 0; i < depth; i++) {
+				Assert.assertTrue(rl.tryLock(1, TimeUnit.SECONDS));
+				rl.unlock();
+				Assert.assertTrue(wl.tryLock(1, TimeUnit.SECONDS));
+				wl.unlock();
+			}
+			allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+		}
+
+		Assert.assertEquals(0L, allocated);
+	}
+
 	@Test
 	void test_readlock_multipleThreads() throws Throwable {
 		int numThreads = 100;
@@ -167,6 +240,797 @@ public class ReentreantUpgradeLockTest {
 		}
 	}
 
+	@Test
+	void test_readlock_waitingWriterBlocksNewReaders() throws Throwable {
+		ReentreantUpgradeLock rul = new ReentreantUpgradeLock();
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+
+		rl.lock();
+
+		/* Other readers don't wait on each other */
+		Assert.assertTrue(executorService.submit(() -> {
+			boolean isLocked = rl.tryLock();
+			rl.unlock();
+			return isLocked;
+		}).get());
+
+		CountDownLatch writeLocked = new CountDownLatch(1);
+		Future<Boolean> writer = executorService.submit(() -> {
+			boolean isLocked = wl.tryLock(10, TimeUnit.SECONDS);
+			writeLocked.countDown();
+			wl.unlock();
+			return isLocked;
+		});
+
+		/* Once the writer is waiting new readers are turned away but reentrant ones aren't */
+		while (!rul.isWriteLocked()) {
+			Thread.sleep(1L);
+		}
+		Assert.assertFalse(executorService.submit(() -> rl.tryLock()).get());
+		Assert.assertTrue(rl.tryLock());
+		rl.unlock();
+
+		Assert.assertEquals(1L, writeLocked.getCount());
+		rl.unlock();
+
+		Assert.assertTrue(writer.get());
+		Assert.assertTrue(executorService.submit(() -> {
+			boolean isLocked = rl.tryLock(1, TimeUnit.SECONDS);
+			rl.unlock();
+			return isLocked;
+		}).get());
+	}
+
+	@Test
+	public void test_optimisticRead() throws Throwable {
+		ReentreantUpgradeLock rul = new ReentreantUpgradeLock();
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+
+		/* Readers don't invalidate stamps */
+		long stamp = rul.tryOptimisticRead();
+		Assert.assertNotEquals(0L, stamp);
+		rl.lock();
+		Assert.assertTrue(rul.validate(stamp));
+		rl.unlock();
+
+		/* Writers do, and no stamp is handed out while one is writing */
+		Assert.assertTrue(wl.tryLock());
+		Assert.assertFalse(rul.validate(stamp));
+		Assert.assertEquals(0L, rul.tryOptimisticRead());
+		Assert.assertFalse(rul.validate(0L));
+		wl.unlock();
+		Assert.assertFalse(rul.validate(stamp));
+
+		/* A failed attempt to write leaves stamps valid */
+		stamp = rul.tryOptimisticRead();
+		Assert.assertTrue(rul.validate(stamp));
+		rl.lock();
+		Assert.assertFalse(executorService.submit(() -> wl.tryLock()).get());
+		rl.unlock();
+		Assert.assertTrue(rul.validate(stamp));
+
+		/* Converting only works while the stamp is valid */
+		Assert.assertTrue(rul.tryConvertToWriteLock(stamp));
+		Assert.assertEquals(0L, executorService.submit(() -> rul.tryOptimisticRead()).get().longValue());
+		wl.unlock();
+		Assert.assertFalse(rul.tryConvertToWriteLock(stamp));
+		Assert.assertFalse(executorService.submit(() -> rul.toString().contains("Thread")).get());
+	}
+
+	@Test
+	public void test_stripedReaderIndicator() throws Throwable {
+		int numThreads = 64;
+		CountDownLatch latch = new CountDownLatch(numThreads);
+
+		ReentreantUpgradeLock rul = new ReentreantUpgradeLock(new StripedReaderIndicator(8));
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			futures.add(executorService.submit(() -> {
+				rl.lock();
+				try {
+					latch.countDown();
+					latch.await();
+				} finally {
+					rl.unlock();
+				}
+				return null;
+			}));
+		}
+
+		latch.await();
+
+		/* The writer has to wait for all of the readers to drain */
+		Assert.assertTrue(wl.tryLock(10, TimeUnit.SECONDS));
+		Assert.assertTrue(rul.toString().startsWith("rlOwners: 0 "));
+		for (int i = 0; i < numThreads; i++) {
+			futures.get(i).get();
+		}
+
+		/* Upgrading only waits on the other readers */
+		wl.unlock();
+		rl.lock();
+		Assert.assertTrue(rl.upgrade().tryLock());
+		wl.unlock();
+		wl.unlock();
+		rl.unlock();
+		Assert.assertFalse(executorService.submit(() -> rul.toString().contains("Thread")).get());
+	}
+
+	@Test
+	public void test_writelock_handoff() throws Throwable {
+		ReentreantUpgradeLock rul = new ReentreantUpgradeLock();
+		DowngradableWriteLock wl = rul.writeLock();
+
+		Assert.assertTrue(wl.tryLock());
+
+		CountDownLatch releasedLatch = new CountDownLatch(1);
+		Future<Boolean> waiter = executorService.submit(() -> {
+			wl.lock();
+			try {
+				releasedLatch.await();
+				return true;
+			} finally {
+				wl.unlock();
+			}
+		});
+
+		/* Wait for the other Thread to be queued */
+		while (rul.getQueueLength() < 1) {
+			Thread.sleep(1L);
+		}
+
+		/* The waiting writer owns the Lock as soon as it is released, nobody can barge */
+		wl.unlock();
+		Assert.assertFalse(wl.tryLock());
+		Assert.assertFalse(rul.readLock().tryLock());
+
+		releasedLatch.countDown();
+		Assert.assertTrue(waiter.get());
+		Assert.assertTrue(wl.tryLock());
+		wl.unlock();
+	}
+
+	@Test
+	public void test_spinningWaitStrategy() throws Throwable {
+		SpinningWaitStrategy waitStrategy = new SpinningWaitStrategy(1_000);
+		ReentreantUpgradeLock rul = new ReentreantUpgradeLock(new CentralReaderIndicator(), waitStrategy);
+		DowngradableWriteLock wl = rul.writeLock();
+
+		int numThreads = 8;
+		int increments = 10_000;
+		long[] counter = new long[1];
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			futures.add(executorService.submit(() -> {
+				for (int j = 0; j < increments; j++) {
+					wl.lock();
+					try {
+						counter[0]++;
+					} finally {
+						wl.unlock();
+					}
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+		Assert.assertEquals(numThreads * increments, counter[0]);
+
+		/* A waiter that ends up parking anyway shrinks the spin budget */
+		int spins = Integer.parseInt(waitStrategy.toString());
+		Assert.assertTrue(wl.tryLock());
+		Future<Boolean> waiter = executorService.submit(() -> {
+			if (!wl.tryLock(10, TimeUnit.SECONDS)) {
+				return false;
+			}
+			wl.unlock();
+			return true;
+		});
+		Thread.sleep(100L);
+		wl.unlock();
+		Assert.assertTrue(waiter.get());
+		Assert.assertTrue(Integer.parseInt(waitStrategy.toString()) <= spins / 2);
+	}
+
+	@Test
+	public void test_forVirtualThreads() throws Throwable {
+		/* More Locks than the initial shared counters so they have to grow */
+		List<ReentreantUpgradeLock> ruls = new ArrayList<>();
+		for (int i = 0; i < 10; i++) {
+			ruls.add(ReentreantUpgradeLock.forVirtualThreads());
+		}
+
+		for (ReentreantUpgradeLock rul : ruls) {
+			rul.readLock().lock();
+			rul.readLock().lock();
+		}
+
+		/* Holds are counted per Lock even though the counters are shared */
+		ReentreantUpgradeLock first = ruls.get(0);
+		Assert.assertTrue(first.toString().startsWith("rlOwners: 1 (2)"));
+		Assert.assertFalse(executorService.submit(() -> first.writeLock().tryLock()).get());
+
+		for (ReentreantUpgradeLock rul : ruls) {
+			rul.readLock().unlock();
+			DowngradableWriteLock wl = rul.readLock().upgrade();
+			wl.unlock();
+			rul.readLock().unlock();
+		}
+
+		try {
+			first.readLock().unlock();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("Cannot release Lock that is not owned by the thread", e.getLocalizedMessage());
+		}
+
+		/* Idle counters are reused by other Locks */
+		Assert.assertTrue(executorService.submit(() -> {
+			if (!first.writeLock().tryLock()) {
+				return false;
+			}
+			first.writeLock().unlock();
+			return true;
+		}).get());
+		for (ReentreantUpgradeLock rul : ruls.subList(1, ruls.size())) {
+			Assert.assertTrue(rul.readLock().tryLock());
+			Assert.assertTrue(rul.toString().startsWith("rlOwners: 1 (1)"));
+			rul.readLock().unlock();
+		}
+	}
+
+	@Test
+	public void test_metrics() throws Throwable {
+		LockMetrics metrics = new LockMetrics("test");
+		ReentreantUpgradeLock rul = ReentreantUpgradeLock.builder().metrics(metrics).build();
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+
+		/* Reentrant acquisitions are only counted once */
+		rl.lock();
+		rl.lock();
+		rl.unlock();
+		DowngradableWriteLock upgraded = rl.upgrade();
+		upgraded.downgrade();
+		rl.unlock();
+		rl.unlock();
+
+		/* A writer that has to wait behind a reader, and one that gives up */
+		rl.lock();
+		Future<Boolean> waiter = executorService.submit(() -> {
+			if (!wl.tryLock(10, TimeUnit.SECONDS)) {
+				return false;
+			}
+			wl.unlock();
+			return true;
+		});
+		while (!rul.isWriteLocked()) {
+			Thread.sleep(1L);
+		}
+		Assert.assertFalse(executorService.submit(() -> wl.tryLock()).get());
+
+		/* A reader that has to wait in line behind the writer */
+		Future<Boolean> reader = executorService.submit(() -> {
+			if (!rl.tryLock(10, TimeUnit.SECONDS)) {
+				return false;
+			}
+			rl.unlock();
+			return true;
+		});
+		while (metrics.snapshot().getQueueDepths().getCount() == 0) {
+			Thread.sleep(1L);
+		}
+
+		Thread.sleep(10L);
+		rl.unlock();
+		Assert.assertTrue(waiter.get());
+		Assert.assertTrue(reader.get());
+
+		LockMetrics.Snapshot snapshot = metrics.snapshot();
+		Assert.assertEquals(3L, snapshot.getWaitTimes(LockMetrics.Mode.READ).getCount());
+		Assert.assertEquals(1L, snapshot.getWaitTimes(LockMetrics.Mode.WRITE).getCount());
+		Assert.assertTrue(snapshot.getWaitTimes(LockMetrics.Mode.WRITE).getMaximum() >= 10_000_000L);
+		Assert.assertEquals(1L, snapshot.getUpgrades());
+		Assert.assertEquals(1L, snapshot.getDowngrades());
+		Assert.assertEquals(3L, snapshot.getReadHoldTimes().getCount());
+		Assert.assertEquals(2L, snapshot.getWriteHoldTimes().getCount());
+		Assert.assertEquals(1L, snapshot.getQueueDepths().getCount());
+		Assert.assertEquals(1L, snapshot.getTimeouts());
+		Assert.assertEquals(0L, snapshot.getInterrupts());
+		Assert.assertTrue(metrics.toString().startsWith("test: readWait: [count: 3"));
+	}
+
+	@Test
+	public void test_updateLock() throws Throwable {
+		ReentreantUpgradeLock rul = new ReentreantUpgradeLock();
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+		UpdateLock ul = rul.updateLock();
+
+		/* Excludes other updaters but not readers, plain upgrades are refused */
+		ul.lock();
+		ul.lock();
+		Assert.assertFalse(executorService.submit(() -> ul.tryLock()).get());
+		Assert.assertTrue(executorService.submit(() -> {
+			rl.lock();
+			try {
+				rl.upgrade();
+				return false;
+			} catch (IllegalStateException e) {
+				return true;
+			} finally {
+				rl.unlock();
+			}
+		}).get());
+
+		/* A reader can't wait for it, so it is refused instead of returning without it */
+		Assert.assertTrue(executorService.submit(() -> {
+			rl.lock();
+			try {
+				ul.lock();
+				ul.unlock();
+				return false;
+			} catch (IllegalStateException e) {
+				return true;
+			} finally {
+				rl.unlock();
+			}
+		}).get());
+		Assert.assertTrue(executorService.submit(() -> {
+			rl.lock();
+			try {
+				ul.lockInterruptibly();
+				ul.unlock();
+				return false;
+			} catch (IllegalStateException e) {
+				return true;
+			} finally {
+				rl.unlock();
+			}
+		}).get());
+		ul.unlock();
+		ul.unlock();
+
+		/* A writer that is waiting for the updater's ReadLock doesn't stop the upgrade */
+		CountDownLatch readingLatch = new CountDownLatch(1);
+		CountDownLatch writingLatch = new CountDownLatch(1);
+		Future<Boolean> upgrader = executorService.submit(() -> {
+			try (UpdateLock sameLock = ul.open()) {
+				readingLatch.countDown();
+				writingLatch.await();
+
+				ul.upgrade().unlock();
+			}
+			return true;
+		});
+		readingLatch.await();
+
+		Future<Boolean> writer = executorService.submit(() -> {
+			if (!wl.tryLock(10, TimeUnit.SECONDS)) {
+				return false;
+			}
+			wl.unlock();
+			return true;
+		});
+		while (!rul.isWriteLocked()) {
+			Thread.sleep(1L);
+		}
+		writingLatch.countDown();
+
+		Assert.assertTrue(upgrader.get(5, TimeUnit.SECONDS));
+		Assert.assertTrue(writer.get());
+
+		/* The UpdateLock is free again */
+		Assert.assertTrue(ul.tryLock());
+		ul.unlock();
+		Assert.assertTrue(rul.toString().startsWith("rlOwners: 0 (0), wlOwners: null (0)"));
+		Assert.assertTrue(rul.toString().endsWith("ulOwner: null (0)"));
+	}
+
+	@Test
+	public void test_fairnessPolicy() throws Throwable {
+		for (FairnessPolicy fairnessPolicy : FairnessPolicy.values()) {
+			ReentreantUpgradeLock rul = ReentreantUpgradeLock.builder().fairnessPolicy(fairnessPolicy).build();
+			UpgradableReadLock rl = rul.readLock();
+			DowngradableWriteLock wl = rul.writeLock();
+
+			/* Only reader preference lets a new reader past a writer waiting on the readers */
+			rl.lock();
+			Future<Boolean> drainingWriter = executorService.submit(() -> {
+				if (!wl.tryLock(10, TimeUnit.SECONDS)) {
+					return false;
+				}
+				wl.unlock();
+				return true;
+			});
+			while (!rul.isWriteLocked()) {
+				Thread.sleep(1L);
+			}
+			boolean isReaderAdmitted = executorService.submit(() -> {
+				if (!rl.tryLock()) {
+					return false;
+				}
+				rl.unlock();
+				return true;
+			}).get();
+			Assert.assertEquals(fairnessPolicy.toString(), fairnessPolicy == FairnessPolicy.READER_PREFERRING,
+					isReaderAdmitted);
+			rl.unlock();
+			Assert.assertTrue(drainingWriter.get());
+
+			/* A writer holds the Lock, then a second writer and a reader wait in that order */
+			CountDownLatch readLatch = new CountDownLatch(1);
+			CountDownLatch writeLatch = new CountDownLatch(1);
+			CountDownLatch releaseLatch = new CountDownLatch(1);
+			wl.lock();
+			Future<Boolean> writer = executorService.submit(() -> {
+				if (!wl.tryLock(10, TimeUnit.SECONDS)) {
+					return false;
+				}
+				writeLatch.countDown();
+				releaseLatch.await();
+				wl.unlock();
+				return true;
+			});
+			while (rul.getQueueLength() < 1) {
+				Thread.sleep(1L);
+			}
+			Future<Boolean> reader = executorService.submit(() -> {
+				if (!rl.tryLock(10, TimeUnit.SECONDS)) {
+					return false;
+				}
+				readLatch.countDown();
+				releaseLatch.await();
+				rl.unlock();
+				return true;
+			});
+			while (rul.getQueueLength() < 2) {
+				Thread.sleep(1L);
+			}
+			wl.unlock();
+
+			/* Writer preference and FIFO let the writer go first, the others the queued reader */
+			boolean isReaderFirst = (fairnessPolicy == FairnessPolicy.READER_PREFERRING
+					|| fairnessPolicy == FairnessPolicy.PHASE_FAIR);
+			Assert.assertTrue(fairnessPolicy.toString(),
+					(isReaderFirst ? readLatch : writeLatch).await(10, TimeUnit.SECONDS));
+			Thread.sleep(10L);
+			Assert.assertEquals(fairnessPolicy.toString(), 1L, readLatch.getCount() + writeLatch.getCount());
+
+			releaseLatch.countDown();
+			Assert.assertTrue(writer.get());
+			Assert.assertTrue(reader.get());
+			Assert.assertTrue(rul.toString().startsWith("rlOwners: 0 (0), wlOwners: null (0), waiters: []"));
+		}
+	}
+
+	@Test
+	public void test_biasedReaderIndicator() throws Throwable {
+		BiasedReaderIndicator indicator = new BiasedReaderIndicator();
+		ReentreantUpgradeLock rul = new ReentreantUpgradeLock(indicator);
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+		Assert.assertTrue(indicator.isBiased());
+		Assert.assertEquals(0L, indicator.getInhibitedNanos());
+
+		/* Readers in the table still hold off a writer, which revokes the bias */
+		CountDownLatch readLatch = new CountDownLatch(1);
+		CountDownLatch releaseLatch = new CountDownLatch(1);
+		Future<?> reader = executorService.submit(() -> {
+			rl.lock();
+			try {
+				readLatch.countDown();
+				releaseLatch.await();
+			} finally {
+				rl.unlock();
+			}
+			return null;
+		});
+		readLatch.await();
+		Assert.assertTrue(rul.toString().startsWith("rlOwners: 1 "));
+		Future<Boolean> writer = executorService.submit(() -> {
+			if (!wl.tryLock(10, TimeUnit.SECONDS)) {
+				return false;
+			}
+			wl.unlock();
+			return true;
+		});
+		while (indicator.isBiased()) {
+			Thread.sleep(1L);
+		}
+		Assert.assertFalse(writer.isDone());
+		releaseLatch.countDown();
+		reader.get();
+		Assert.assertTrue(writer.get());
+
+		/* The next reader once the revocation stops inhibiting it restores the bias */
+		while (indicator.getInhibitedNanos() > 0L) {
+			Thread.sleep(1L);
+		}
+		rl.lock();
+		rl.unlock();
+		Assert.assertTrue(indicator.isBiased());
+
+		/* Upgrading from the table only waits on the other readers */
+		rl.lock();
+		Assert.assertTrue(rl.upgrade().tryLock());
+		Assert.assertFalse(indicator.isBiased());
+		wl.unlock();
+		wl.unlock();
+		rl.unlock();
+		Assert.assertTrue(rul.toString().startsWith("rlOwners: 0 (0), wlOwners: null (0), waiters: []"));
+
+		/* The upgrader's own slot kept the table from draining until it left */
+		while (indicator.getInhibitedNanos() > 0L) {
+			Thread.sleep(1L);
+		}
+		rl.lock();
+		rl.unlock();
+		Assert.assertTrue(indicator.isBiased());
+	}
+
+	@Test
+	public void test_cohort() throws Throwable {
+		ThreadLocal<Integer> cluster = ThreadLocal.withInitial(() -> 0);
+		ClusterAssignment clusters = ClusterAssignment.of(2, thread -> cluster.get());
+		ReentreantUpgradeLock rul = ReentreantUpgradeLock.builder().cohort(clusters, 1).build();
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+
+		/* Readers are counted by their own cluster */
+		CountDownLatch readLatch = new CountDownLatch(1);
+		rl.lock();
+		Future<?> reader = executorService.submit(() -> {
+			cluster.set(1);
+			rl.lock();
+			try {
+				readLatch.await();
+			} finally {
+				rl.unlock();
+			}
+			return null;
+		});
+		while (rul.getReadLockCount() < 2L) {
+			Thread.sleep(1L);
+		}
+		Assert.assertFalse(executorService.submit(() -> wl.tryLock()).get());
+		readLatch.countDown();
+		reader.get();
+		rl.unlock();
+
+		/* A remote writer and then two local writers queue up behind a local writer */
+		List<String> order = new ArrayList<>();
+		wl.lock();
+		List<Future<?>> writers = new ArrayList<>();
+		String[] names = { "remote", "local", "local2" };
+		for (int i = 0; i < names.length; i++) {
+			String name = names[i];
+			writers.add(executorService.submit(() -> {
+				cluster.set(name.equals("remote") ? 1 : 0);
+				wl.lock();
+				try {
+					order.add(name);
+				} finally {
+					wl.unlock();
+				}
+				return null;
+			}));
+
+			while (rul.getQueueLength() < i + 1) {
+				Thread.sleep(1L);
+			}
+		}
+		wl.unlock();
+
+		/* One local handoff skips the remote writer, then it is passed on in line */
+		for (Future<?> writer : writers) {
+			writer.get();
+		}
+		Assert.assertEquals(List.of("local", "remote", "local2"), order);
+		Assert.assertTrue(rul.toString().startsWith("rlOwners: 0 (0), wlOwners: null (0), waiters: []"));
+	}
+
+	@Test
+	public void test_cohort_movingReader() throws Throwable {
+		/* Every lookup moves the Thread to the other cluster */
+		ThreadLocal<Integer> cluster = ThreadLocal.withInitial(() -> 0);
+		ClusterAssignment clusters = ClusterAssignment.of(2, thread -> {
+			int current = cluster.get();
+			cluster.set(current ^ 1);
+			return current;
+		});
+		ClusteredReaderIndicator indicator = new ClusteredReaderIndicator(clusters);
+		ReentreantUpgradeLock rul = ReentreantUpgradeLock.builder().readerIndicator(indicator).build();
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+
+		/* A reader leaves the counter it arrived at */
+		for (int i = 0; i < 3; i++) {
+			rl.lock();
+			Assert.assertEquals(1L, indicator.sum());
+			rl.unlock();
+			Assert.assertEquals(0L, indicator.sum(0));
+			Assert.assertEquals(0L, indicator.sum(1));
+		}
+
+		/* So writers are still kept out while it reads */
+		rl.lock();
+		Assert.assertFalse(executorService.submit(() -> wl.tryLock()).get());
+		rl.unlock();
+		Assert.assertTrue(executorService.submit(() -> {
+			if (!wl.tryLock()) {
+				return false;
+			}
+			wl.unlock();
+			return true;
+		}).get());
+	}
+
+	@Test
+	public void test_combine() throws Throwable {
+		ReentreantUpgradeLock rul = new ReentreantUpgradeLock();
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+		List<Thread> values = new ArrayList<>();
+
+		/* Published while another Thread writes, applied by it before it releases */
+		wl.lock();
+		Future<?> combined = executorService.submit(() -> rul.combine(values, v -> v.add(Thread.currentThread())));
+		while (rul.getQueueLength() < 1) {
+			Thread.sleep(1L);
+		}
+		Assert.assertTrue(values.isEmpty());
+		rul.combine(values, v -> v.add(null));
+		Assert.assertEquals(1, values.size());
+		wl.unlock();
+		combined.get();
+		Assert.assertEquals(2, values.size());
+		Assert.assertSame(Thread.currentThread(), values.get(1));
+
+		/* Failures go back to the publisher */
+		try {
+			rul.combine(values, v -> {
+				throw new UnsupportedOperationException();
+			});
+			Assert.fail();
+		} catch (UnsupportedOperationException e) {
+			/* Expected */
+		}
+
+		rl.lock();
+		try {
+			rul.combine(values, v -> v.add(null));
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			/* Expected */
+		}
+		rl.unlock();
+
+		int numThreads = 8;
+		int cycles = 20_000;
+		long[] counter = new long[1];
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			futures.add(executorService.submit(() -> {
+				for (int j = 0; j < cycles; j++) {
+					if ((j & 7) == 0) {
+						wl.lock();
+						counter[0]++;
+						wl.unlock();
+					} else {
+						rul.combine(counter, c -> c[0]++);
+					}
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+
+		Assert.assertEquals((long) numThreads * cycles, counter[0]);
+		Assert.assertTrue(rul.toString().startsWith("rlOwners: 0 (0), wlOwners: null (0), waiters: []"));
+	}
+
+	@Test
+	public void test_async() throws Throwable {
+		ReentreantUpgradeLock rul = new ReentreantUpgradeLock();
+		UpgradableReadLock rl = rul.readLock();
+		DowngradableWriteLock wl = rul.writeLock();
+
+		/* Granted in order, a waiting writer holds back later readers */
+		AsyncLockHandle read = rul.readLockAsync(executorService).get();
+		Assert.assertFalse(read.isWrite());
+		Assert.assertFalse(executorService.submit(() -> wl.tryLock()).get());
+		CompletableFuture<AsyncLockHandle> write = rul.writeLockAsync(executorService);
+		CompletableFuture<AsyncLockHandle> nextRead = rul.readLockAsync(executorService);
+		Thread.sleep(10L);
+		Assert.assertFalse(write.isDone());
+		Assert.assertFalse(executorService.submit(() -> rl.tryLock()).get());
+
+		/* Released from another Thread */
+		executorService.submit(() -> read.unlock()).get();
+		AsyncLockHandle writeHandle = write.get(10, TimeUnit.SECONDS);
+		Assert.assertTrue(writeHandle.isWrite());
+		Assert.assertFalse(nextRead.isDone());
+		writeHandle.unlock();
+		nextRead.get(10, TimeUnit.SECONDS).unlock();
+
+		try {
+			writeHandle.unlock();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			/* Expected */
+		}
+
+		/* Upgrading waits for the other readers, Threads included */
+		AsyncLockHandle upgradable = rul.readLockAsync(executorService).get();
+		rl.lock();
+		CompletableFuture<AsyncLockHandle> upgraded = upgradable.upgradeAsync(executorService);
+		Thread.sleep(10L);
+		Assert.assertFalse(upgraded.isDone());
+		rl.unlock();
+		AsyncLockHandle downgraded = upgraded.get(10, TimeUnit.SECONDS).downgrade();
+		upgradable.unlock();
+		Assert.assertFalse(executorService.submit(() -> wl.tryLock()).get());
+		downgraded.unlock();
+
+		/* Timing out or cancelling gives up the place in line */
+		wl.lock();
+		try {
+			rul.writeLockAsync(10, TimeUnit.MILLISECONDS, executorService).get();
+			Assert.fail();
+		} catch (ExecutionException e) {
+			Assert.assertTrue(e.getCause() instanceof TimeoutException);
+		}
+		rul.readLockAsync(executorService).cancel(false);
+		wl.unlock();
+		Assert.assertTrue(executorService.submit(() -> {
+			if (!wl.tryLock()) {
+				return false;
+			}
+			wl.unlock();
+			return true;
+		}).get());
+		Assert.assertTrue(rul.toString().startsWith("rlOwners: 0 (0), wlOwners: null (0), waiters: []"));
+
+		/* Asynchronous and blocking writers exclude each other */
+		int numThreads = 8;
+		int cycles = 5_000;
+		long[] counter = new long[1];
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			boolean isAsync = (i % 2 == 0);
+			futures.add(executorService.submit(() -> {
+				for (int j = 0; j < cycles; j++) {
+					if (isAsync) {
+						AsyncLockHandle handle = rul.writeLockAsync(Runnable::run).get();
+						counter[0]++;
+						handle.unlock();
+					} else {
+						wl.lock();
+						counter[0]++;
+						wl.unlock();
+					}
+				}
+				return null;
+			}));
+		}
+		for (Future<?> future : futures) {
+			future.get();
+		}
+
+		Assert.assertEquals((long) numThreads * cycles, counter[0]);
+		Assert.assertTrue(rul.toString().startsWith("rlOwners: 0 (0), wlOwners: null (0), waiters: []"));
+	}
+
 	@Test
 	public void test_writelock() throws Throwable {
 		ReentreantUpgradeLock rul = new ReentreantUpgradeLock();
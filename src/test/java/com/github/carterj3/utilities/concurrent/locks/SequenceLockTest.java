@@ -0,0 +1,178 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class SequenceLockTest {
+
+	private ExecutorService executorService;
+
+	@BeforeEach
+	public void setup() {
+		executorService = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		executorService.shutdown();
+	}
+
+	/**
+	 * Written as a pair, a reader must never see one without the other
+	 */
+	private static final class Pair {
+
+		long first;
+
+		long second;
+	}
+
+	@Test
+	public void test_sequenceLock() throws Throwable {
+		SequenceLock lock = new SequenceLock();
+		Pair pair = new Pair();
+
+		SequenceLock.Reader reader = lock.reader();
+		try (SequenceLock.Reader read = reader.open()) {
+			Assert.assertEquals(0L, pair.first);
+		}
+		Assert.assertTrue(reader.isConsistent());
+
+		/* A write in between means it has to be read again */
+		long stamp = lock.beginRead();
+		try (SequenceLock write = lock.open()) {
+			Assert.assertTrue(lock.isWriting());
+			pair.first = 1L;
+			pair.second = 1L;
+		}
+		Assert.assertFalse(lock.isWriting());
+		Assert.assertFalse(lock.validate(stamp));
+		Assert.assertTrue(lock.validate(lock.beginRead()));
+
+		try {
+			lock.endWrite();
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			/* Expected */
+		}
+
+		AtomicBoolean isDone = new AtomicBoolean(false);
+		List<Future<Long>> readers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			readers.add(executorService.submit(() -> {
+				SequenceLock.Reader threadReader = lock.reader();
+				long reads = 0L;
+				while (!isDone.get()) {
+					long first;
+					long second;
+					do {
+						try (SequenceLock.Reader read = threadReader.open()) {
+							first = pair.first;
+							second = pair.second;
+						}
+					} while (!threadReader.isConsistent());
+
+					Assert.assertEquals(first, second);
+					reads++;
+				}
+				return reads;
+			}));
+		}
+
+		for (long i = 2L; i < 200_000L; i++) {
+			try (SequenceLock write = lock.open()) {
+				pair.first = i;
+				pair.second = i;
+			}
+		}
+		isDone.set(true);
+
+		for (Future<Long> future : readers) {
+			Assert.assertTrue(future.get(10, TimeUnit.SECONDS) > 0L);
+		}
+
+		/* A long write makes a reader and another writer park instead of spinning */
+		lock.beginWrite();
+		Thread waitingReader = new Thread(lock::beginRead);
+		Thread waitingWriter = new Thread(() -> {
+			lock.beginWrite();
+			lock.endWrite();
+		});
+		waitingReader.start();
+		waitingWriter.start();
+		while (waitingReader.getState() != Thread.State.TIMED_WAITING
+				|| waitingWriter.getState() != Thread.State.TIMED_WAITING) {
+			Thread.sleep(1L);
+		}
+		lock.endWrite();
+		waitingReader.join(TimeUnit.SECONDS.toMillis(10));
+		waitingWriter.join(TimeUnit.SECONDS.toMillis(10));
+		Assert.assertFalse(waitingReader.isAlive() || waitingWriter.isAlive());
+		Assert.assertFalse(lock.isWriting());
+	}
+
+	@Test
+	public void test_sequenceLocked() throws Throwable {
+		SequenceLocked<Pair> locked = new SequenceLocked<>(Pair::new, (from, into) -> {
+			into.first = from.first;
+			into.second = from.second;
+		});
+
+		AtomicBoolean isDone = new AtomicBoolean(false);
+		List<Future<?>> readers = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			readers.add(executorService.submit(() -> {
+				Pair copy = new Pair();
+				while (!isDone.get()) {
+					locked.read(copy);
+					Assert.assertEquals(copy.first, -copy.second);
+					Assert.assertEquals(0L, locked.readLong(p -> p.first + p.second));
+				}
+				return null;
+			}));
+		}
+
+		/* Several writers take turns */
+		List<Future<?>> writers = new ArrayList<>();
+		for (int i = 0; i < 2; i++) {
+			writers.add(executorService.submit(() -> {
+				for (int j = 0; j < 100_000; j++) {
+					locked.write(p -> {
+						p.first++;
+						p.second--;
+					});
+				}
+			}));
+		}
+		for (Future<?> future : writers) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		isDone.set(true);
+
+		for (Future<?> future : readers) {
+			future.get(10, TimeUnit.SECONDS);
+		}
+		Assert.assertEquals(200_000L, locked.read().first);
+		Assert.assertFalse(locked.getLock().isWriting());
+
+		/* A consistent read that throws isn't retried */
+		try {
+			locked.readLong(p -> {
+				throw new IllegalStateException();
+			});
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			/* Expected */
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package com.github.carterj3.utilities.concurrent.locks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class UpgradeLockCacheTest {
+
+	private ExecutorService executorService;
+
+	@BeforeEach
+	public void setup() {
+		executorService = Executors.newCachedThreadPool();
+	}
+
+	@AfterEach
+	public void tearDown() {
+		executorService.shutdown();
+	}
+
+	@Test
+	public void test_loadOnce() throws Throwable {
+		UpgradeLockCache<String, String> cache = UpgradeLockCache.<String, String> builder().segments(4).build();
+
+		int numThreads = 16;
+		AtomicInteger loads = new AtomicInteger();
+		CountDownLatch started = new CountDownLatch(numThreads);
+		List<Future<String>> futures = new ArrayList<>();
+		for (int i = 0; i < numThreads; i++) {
+			futures.add(executorService.submit(() -> {
+				started.countDown();
+				started.await();
+				return cache.get("key", k -> {
+					loads.incrementAndGet();
+					try {
+						Thread.sleep(50L);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+					return k + "-value";
+				});
+			}));
+		}
+
+		for (Future<String> future : futures) {
+			Assert.assertEquals("key-value", future.get(10, TimeUnit.SECONDS));
+		}
+		Assert.assertEquals(1, loads.get());
+
+		UpgradeLockCache.Stats stats = cache.stats();
+		Assert.assertEquals(1L, stats.getMissCount());
+		Assert.assertEquals(numThreads - 1L, stats.getHitCount());
+		Assert.assertEquals(1L, stats.getLoadSuccessCount());
+		Assert.assertTrue(stats.getTotalLoadNanos() >= TimeUnit.MILLISECONDS.toNanos(50L));
+
+		/* Failed and null loads aren't cached */
+		try {
+			cache.get("failing", k -> {
+				throw new IllegalStateException(k);
+			});
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			Assert.assertEquals("failing", e.getMessage());
+		}
+		Assert.assertNull(cache.get("null", k -> null));
+		Assert.assertNull(cache.getIfPresent("null"));
+		Assert.assertEquals(1L, cache.stats().getLoadFailureCount());
+		Assert.assertEquals(1L, cache.size());
+
+		/* Readers aren't blocked by a load in the same segment */
+		UpgradeLockCache<Integer, Integer> single = UpgradeLockCache.<Integer, Integer> builder().segments(1).build();
+		single.put(1, 1);
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<Integer> slow = executorService.submit(() -> single.get(2, k -> {
+			loading.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return k;
+		}));
+		loading.await();
+		Assert.assertEquals(Integer.valueOf(1), executorService.submit(() -> single.getIfPresent(1)).get(10,
+				TimeUnit.SECONDS));
+		release.countDown();
+		Assert.assertEquals(Integer.valueOf(2), slow.get(10, TimeUnit.SECONDS));
+		Assert.assertEquals(Integer.valueOf(2), single.getIfPresent(2));
+	}
+
+	@Test
+	public void test_loadWithoutLock() throws Throwable {
+		UpgradeLockCache<Integer, Integer> cache = UpgradeLockCache.<Integer, Integer> builder().segments(1).build();
+
+		CountDownLatch loading = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		Future<Integer> slow = executorService.submit(() -> cache.get(1, k -> {
+			loading.countDown();
+			try {
+				release.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return k;
+		}));
+		loading.await();
+
+		/* Writers and loads of other keys of the segment don't wait for it */
+		executorService.submit(() -> cache.put(2, 2)).get(10, TimeUnit.SECONDS);
+		Assert.assertEquals(Integer.valueOf(3), executorService.submit(() -> cache.get(3, k -> k)).get(10,
+				TimeUnit.SECONDS));
+		Assert.assertEquals(Integer.valueOf(2), cache.getIfPresent(2));
+
+		/* A put during the load wins */
+		cache.put(1, 100);
+		release.countDown();
+		Assert.assertEquals(Integer.valueOf(1), slow.get(10, TimeUnit.SECONDS));
+		Assert.assertEquals(Integer.valueOf(100), cache.getIfPresent(1));
+
+		/* So does an invalidation, and a new miss waits for the load before loading again */
+		AtomicBoolean isLoading = new AtomicBoolean();
+		CountDownLatch loading2 = new CountDownLatch(1);
+		CountDownLatch release2 = new CountDownLatch(1);
+		Future<Integer> slow2 = executorService.submit(() -> cache.get(7, k -> {
+			isLoading.set(true);
+			loading2.countDown();
+			try {
+				release2.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			isLoading.set(false);
+			return k;
+		}));
+		loading2.await();
+		Assert.assertNull(cache.invalidate(7));
+		Future<Integer> next = executorService.submit(() -> cache.get(7, k -> isLoading.get() ? -1 : 70));
+		try {
+			next.get(100L, TimeUnit.MILLISECONDS);
+			Assert.fail();
+		} catch (TimeoutException e) {
+			/* Expected */
+		}
+		release2.countDown();
+		Assert.assertEquals(Integer.valueOf(7), slow2.get(10, TimeUnit.SECONDS));
+		Assert.assertEquals(Integer.valueOf(70), next.get(10, TimeUnit.SECONDS));
+		Assert.assertEquals(Integer.valueOf(70), cache.getIfPresent(7));
+
+		/* A loader can load other keys, but not its own */
+		Assert.assertEquals(Integer.valueOf(5), cache.get(4, k -> cache.get(k + 1, j -> j)));
+		try {
+			cache.get(6, k -> cache.get(k, j -> j));
+			Assert.fail();
+		} catch (IllegalStateException e) {
+			/* Expected */
+		}
+		Assert.assertNull(cache.getIfPresent(6));
+		Assert.assertEquals(Integer.valueOf(6), cache.get(6, k -> k));
+	}
+
+	@Test
+	public void test_eviction() throws Throwable {
+		UpgradeLockCache<Integer, Integer> cache = UpgradeLockCache.<Integer, Integer> builder().segments(1)
+				.maximumSize(3).build();
+
+		for (int i = 0; i < 3; i++) {
+			cache.put(i, i);
+		}
+
+		/* 0 was used recently, so 1 (the oldest unused) goes first */
+		Assert.assertEquals(Integer.valueOf(0), cache.getIfPresent(0));
+		cache.put(3, 3);
+		Assert.assertEquals(3L, cache.size());
+		Assert.assertNull(cache.getIfPresent(1));
+		Assert.assertEquals(Integer.valueOf(0), cache.getIfPresent(0));
+		Assert.assertEquals(Integer.valueOf(3), cache.get(3, k -> -1));
+
+		/* The entry being inserted survives even when every other one was used */
+		Assert.assertEquals(Integer.valueOf(2), cache.getIfPresent(2));
+		Assert.assertEquals(Integer.valueOf(4), cache.get(4, k -> k));
+		Assert.assertEquals(Integer.valueOf(4), cache.getIfPresent(4));
+		Assert.assertEquals(3L, cache.size());
+		Assert.assertEquals(2L, cache.stats().getEvictionCount());
+
+		Assert.assertEquals(Integer.valueOf(4), cache.invalidate(4));
+		Assert.assertNull(cache.invalidate(4));
+		cache.invalidateAll();
+		Assert.assertEquals(0L, cache.size());
+	}
+
+	@Test
+	public void test_eviction_segments() throws Throwable {
+		/* The shares add up to the maximum size, with no more segments than entries */
+		UpgradeLockCache<Integer, Integer> capped = UpgradeLockCache.<Integer, Integer> builder().segments(64)
+				.maximumSize(10).build();
+		UpgradeLockCache<Integer, Integer> uneven = UpgradeLockCache.<Integer, Integer> builder().segments(4)
+				.maximumSize(10).build();
+		for (int i = 0; i < 10_000; i++) {
+			capped.put(i, i);
+			uneven.put(i, i);
+		}
+
+		Assert.assertTrue(capped.toString().startsWith("segments: 8, size: 10,"));
+		Assert.assertEquals(10L, uneven.size());
+		Assert.assertEquals(9_990L, uneven.stats().getEvictionCount());
+	}
+
+	@Test
+	public void test_expireAfterWrite() throws Throwable {
+		AtomicLong now = new AtomicLong();
+		UpgradeLockCache<String, String> cache = UpgradeLockCache.<String, String> builder()
+				.expireAfterWrite(10L, TimeUnit.SECONDS).clock(now::get).build();
+
+		AtomicInteger loads = new AtomicInteger();
+		Assert.assertEquals("1", cache.get("a", k -> Integer.toString(loads.incrementAndGet())));
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(9L));
+		Assert.assertEquals("1", cache.get("a", k -> Integer.toString(loads.incrementAndGet())));
+
+		now.addAndGet(TimeUnit.SECONDS.toNanos(1L));
+		Assert.assertNull(cache.getIfPresent("a"));
+		Assert.assertEquals("2", cache.get("a", k -> Integer.toString(loads.incrementAndGet())));
+		Assert.assertEquals(0.25, cache.stats().getHitRate(), 0.0);
+
+		try {
+			UpgradeLockCache.builder().expireAfterWrite(0L, TimeUnit.SECONDS);
+			Assert.fail();
+		} catch (IllegalArgumentException e) {
+			/* Expected */
+		}
+	}
+}